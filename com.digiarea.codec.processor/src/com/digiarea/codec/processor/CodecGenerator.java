@@ -0,0 +1,650 @@
+/*******************************************************************************
+ * Copyright (c) 2011 - 2014 DigiArea, Inc. and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     DigiArea, Inc. - initial API and implementation
+ *******************************************************************************/
+package com.digiarea.codec.processor;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map.Entry;
+import java.util.Set;
+
+/**
+ * Generates the codec of a packet: a final class with static {@code encode},
+ * {@code decode} and {@code sizeOf} methods made of straight-line
+ * {@code ZippyBuffer} calls, one tag constant per sector and no reflection.
+ * <p>
+ * A packet made only of fixed-width and boolean sectors always takes the
+ * same number of bytes: its codec gets a {@code SIZE} constant and, when the
+ * buffer has room for the whole packet, encodes it with a single reservation
+ * followed by plain stores into the storage. Only a segmented writer reaching
+ * the end of a segment falls back to writing sector by sector.
+ * <p>
+ * Relays keep the sectors of a newer schema through the {@code decode} and
+ * {@code encode} overloads taking a {@code ZippyUnknownSectors}, which holds
+ * them as ranges of the input written back verbatim.
+ * <p>
+ * A codec only gets the encoder and the sizer of a packet its side sends and
+ * the decoders of a packet its side receives.
+ */
+final class CodecGenerator extends SourceGenerator {
+
+	/** The names of the generated variables sector locals must not take. */
+	private static final Set<String> RESERVED = new HashSet<>(
+			Arrays.asList("value", "buffer", "limit", "tag", "handle", "end",
+					"item", "size", "unknown", "start"));
+
+	/** The packet. */
+	private PacketModel packet;
+
+	/**
+	 * Generates the codec of a packet.
+	 * 
+	 * @param model
+	 *            the packet
+	 * @param out
+	 *            the output stream of the codec source file
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	void generate(final PacketModel model, final OutputStream out)
+			throws IOException {
+		packet = model;
+		begin(out);
+		if (!packet.getPackageName().isEmpty()) {
+			line("package " + packet.getPackageName() + ";");
+			line();
+		}
+		line("import java.io.IOException;");
+		line();
+		line("import com.digiarea.zippy.ZippyBuffer;");
+		if (packet.isEncoded()) {
+			if (packet.getFixedSize() >= 0) {
+				line("import com.digiarea.zippy.ZippyStorage;");
+			} else if (packet.hasNestedValues()) {
+				line("import com.digiarea.zippy.ZippySizes;");
+			}
+		}
+		line("import com.digiarea.zippy.ZippyUnknownSectors;");
+		line();
+		line("/**");
+		line(" * The codec of {@link " + packet.getTypeName() + "}.");
+		line(" * <p>");
+		line(" * Generated by the codec processor, do not edit.");
+		line(" */");
+		open("public final class " + packet.getCodecName());
+		line();
+		printConstants();
+		line("/**");
+		line(" * Instantiates a new codec.");
+		line(" */");
+		open("private " + packet.getCodecName() + "()");
+		line("super();");
+		close();
+		line();
+		if (packet.isEncoded()) {
+			printEncode();
+			printSizeOf();
+			printPassThrough();
+		}
+		if (packet.isDecoded()) {
+			printDecode();
+			printEnums();
+		}
+		unindent();
+		line("}");
+	}
+
+	/**
+	 * Prints the tag constants and the enum constants by ordinal.
+	 * 
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	private void printConstants() throws IOException {
+		if (packet.getFixedSize() >= 0) {
+			line("/** The size of every encoded packet. */");
+			line("public static final int SIZE = " + packet.getFixedSize()
+					+ ";");
+			line();
+		}
+		for (final SectorModel sector : packet.getSectors()) {
+			line("/** The tag of sector " + sector.getId() + ", "
+					+ sector.getName() + ". */");
+			line("private static final int " + getTagName(sector) + " = "
+					+ sector.getTag() + ";");
+			line();
+		}
+		if (!packet.isDecoded()) {
+			return;
+		}
+		for (final Entry<String, String> entry : packet.getEnums().entrySet()) {
+			line("/** The constants of {@link " + entry.getKey()
+					+ "} by ordinal. */");
+			line("private static final " + entry.getKey() + "[] "
+					+ getValuesName(entry.getValue()) + " = " + entry.getKey()
+					+ ".values();");
+			line();
+		}
+	}
+
+	/**
+	 * Prints the encoder.
+	 * 
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	private void printEncode() throws IOException {
+		line("/**");
+		line(" * Encodes a packet.");
+		line(" * ");
+		line(" * @param value");
+		line(" *            the packet");
+		line(" * @param buffer");
+		line(" *            the buffer");
+		line(" * @throws IOException");
+		line(" *             Signals that an I/O exception has occurred.");
+		line(" */");
+		open("public static void encode(final " + packet.getTypeName()
+				+ " value, final ZippyBuffer buffer) throws IOException");
+		if (packet.getFixedSize() >= 0) {
+			open("if (buffer.remaining() >= SIZE)");
+			printFixedEncode();
+			line("return;");
+			close();
+		}
+		for (final SectorModel sector : packet.getSectors()) {
+			if (!sector.isNullable()) {
+				printWrite(sector, sector.getGetter());
+				continue;
+			}
+			final String local = getLocalName(sector);
+			line("final " + sector.getType() + " " + local + " = "
+					+ sector.getGetter() + ";");
+			open("if (" + local + " != null)");
+			if (sector.isRepeated()) {
+				open("for (final " + sector.getItemType() + " item : " + local
+						+ ")");
+				printWrite(sector, "item");
+				close();
+			} else {
+				printWrite(sector, local);
+			}
+			close();
+		}
+		close();
+		line();
+	}
+
+	/**
+	 * Prints the statements storing a packet of a fixed size at once, once the
+	 * room is checked: the tags are stored as constant bytes and the values as
+	 * little-endian words.
+	 * 
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	private void printFixedEncode() throws IOException {
+		line("final int index = buffer.reserve(SIZE);");
+		line("final ZippyStorage storage = buffer.getStorage();");
+		int offset = 0;
+		for (final SectorModel sector : packet.getSectors()) {
+			final String tag = getTagName(sector);
+			final int tagSize = sector.getTagSize();
+			for (int i = 0; i < tagSize; i++) {
+				final String shifted = i == 0 ? tag : "(" + tag + " >>> "
+						+ (7 * i) + ")";
+				line("storage.put(" + getIndex(offset++) + ", (byte) "
+						+ (i < tagSize - 1 ? "(" + shifted + " | 0x80)"
+								: shifted) + ");");
+			}
+			final String value = sector.getGetter();
+			final String index = getIndex(offset);
+			if ("Float".equals(sector.getMethod())) {
+				line("storage.putIntLE(" + index + ", Float.floatToRawIntBits("
+						+ value + "));");
+			} else if ("Double".equals(sector.getMethod())) {
+				line("storage.putLongLE(" + index
+						+ ", Double.doubleToRawLongBits(" + value + "));");
+			} else if (sector.getWireType() == SectorModel.WIRE_FIXED32) {
+				line("storage.putIntLE(" + index + ", " + value + ");");
+			} else if (sector.getWireType() == SectorModel.WIRE_FIXED64) {
+				line("storage.putLongLE(" + index + ", " + value + ");");
+			} else {
+				line("storage.put(" + index + ", (byte) (" + value
+						+ " ? 1 : 0));");
+			}
+			offset += sector.getFixedSize();
+		}
+	}
+
+	/**
+	 * Gets the expression of the storage index at an offset from the reserved
+	 * index.
+	 * 
+	 * @param offset
+	 *            the offset
+	 * @return the index expression
+	 */
+	private static String getIndex(final int offset) {
+		return offset == 0 ? "index" : "index + " + offset;
+	}
+
+	/**
+	 * Prints the statements writing one item of a sector with its tag.
+	 * 
+	 * @param sector
+	 *            the sector
+	 * @param value
+	 *            the item expression
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	private void printWrite(final SectorModel sector, final String value)
+			throws IOException {
+		line("buffer.writeRawVarInt(" + getTagName(sector) + ");");
+		switch (sector.getKind()) {
+		case SCALAR:
+			line("buffer.write" + sector.getMethod() + "(" + value + ");");
+			break;
+		case ENUM:
+			line("buffer.writeUnsignedInt(" + value + ".ordinal());");
+			break;
+		case PACKED:
+			line("final int handle = buffer.beginLengthPrefixed();");
+			line("buffer.write" + sector.getMethod() + "(" + value + ");");
+			line("buffer.endLengthPrefixed(handle);");
+			break;
+		case PACKET:
+			line("final int handle = buffer.beginLengthPrefixed();");
+			line(sector.getCodec() + ".encode(" + value + ", buffer);");
+			line("buffer.endLengthPrefixed(handle);");
+			break;
+		}
+	}
+
+	/**
+	 * Prints the sizer.
+	 * 
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	private void printSizeOf() throws IOException {
+		line("/**");
+		line(" * Computes the number of bytes needed to encode a packet.");
+		printSizeNote(packet);
+		line(" * ");
+		line(" * @param value");
+		line(" *            the packet");
+		line(" * @return the size");
+		line(" */");
+		open("public static int sizeOf(final " + packet.getTypeName()
+				+ " value)");
+		if (packet.getFixedSize() >= 0) {
+			line("return SIZE;");
+			close();
+			line();
+			return;
+		}
+		int tags = 0;
+		for (final SectorModel sector : packet.getSectors()) {
+			if (!sector.isNullable()) {
+				tags += sector.getTagSize();
+			}
+		}
+		line("int size = " + tags + ";");
+		for (final SectorModel sector : packet.getSectors()) {
+			if (!sector.isNullable()) {
+				line("size += " + getSize(sector, sector.getGetter()) + ";");
+				continue;
+			}
+			final String local = getLocalName(sector);
+			line("final " + sector.getType() + " " + local + " = "
+					+ sector.getGetter() + ";");
+			open("if (" + local + " != null)");
+			if (sector.isRepeated()) {
+				open("for (final " + sector.getItemType() + " item : " + local
+						+ ")");
+				line("size += " + sector.getTagSize() + " + "
+						+ getSize(sector, "item") + ";");
+				close();
+			} else {
+				line("size += " + sector.getTagSize() + " + "
+						+ getSize(sector, local) + ";");
+			}
+			close();
+		}
+		line("return size;");
+		close();
+		line();
+	}
+
+	/**
+	 * Prints the encoder and the sizer writing back the unknown sectors of a
+	 * decoded packet after its own.
+	 * 
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	private void printPassThrough() throws IOException {
+		final String type = packet.getTypeName();
+		line("/**");
+		line(" * Encodes a packet followed by the unknown sectors it was");
+		line(" * decoded with, written back verbatim.");
+		line(" * ");
+		line(" * @param value");
+		line(" *            the packet");
+		line(" * @param unknown");
+		line(" *            the unknown sectors, may be null");
+		line(" * @param buffer");
+		line(" *            the buffer");
+		line(" * @throws IOException");
+		line(" *             Signals that an I/O exception has occurred.");
+		line(" */");
+		open("public static void encode(final " + type
+				+ " value, final ZippyUnknownSectors unknown, "
+				+ "final ZippyBuffer buffer) throws IOException");
+		line("encode(value, buffer);");
+		open("if (unknown != null)");
+		line("unknown.writeTo(buffer);");
+		close();
+		close();
+		line();
+		line("/**");
+		line(" * Computes the number of bytes needed to encode a packet");
+		line(" * followed by its unknown sectors.");
+		printSizeNote(packet);
+		line(" * ");
+		line(" * @param value");
+		line(" *            the packet");
+		line(" * @param unknown");
+		line(" *            the unknown sectors, may be null");
+		line(" * @return the size");
+		line(" */");
+		open("public static int sizeOf(final " + type
+				+ " value, final ZippyUnknownSectors unknown)");
+		line("return unknown == null ? sizeOf(value) : sizeOf(value)"
+				+ " + unknown.getSize();");
+		close();
+		line();
+	}
+
+	/**
+	 * Gets the expression computing the size of one item of a sector, tag
+	 * excluded.
+	 * 
+	 * @param sector
+	 *            the sector
+	 * @param value
+	 *            the item expression
+	 * @return the size expression
+	 */
+	private static String getSize(final SectorModel sector,
+			final String value) {
+		switch (sector.getKind()) {
+		case ENUM:
+			return "ZippyBuffer.sizeOfUnsignedInt(" + value + ".ordinal())";
+		case PACKED:
+			return "ZippySizes.sizeOfLengthPrefixed(ZippyBuffer.sizeOf"
+					+ sector.getMethod() + "(" + value + "))";
+		case PACKET:
+			return "ZippySizes.sizeOfLengthPrefixed(" + sector.getCodec()
+					+ ".sizeOf(" + value + "))";
+		default:
+			return "ZippyBuffer.sizeOf" + sector.getMethod() + "(" + value
+					+ ")";
+		}
+	}
+
+	/**
+	 * Prints the decoders.
+	 * 
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	private void printDecode() throws IOException {
+		final String type = packet.getTypeName();
+		line("/**");
+		line(" * Decodes a packet taking all the bytes up to the buffer");
+		line(" * limit.");
+		line(" * ");
+		line(" * @param buffer");
+		line(" *            the buffer");
+		line(" * @return the packet");
+		line(" * @throws IOException");
+		line(" *             Signals that an I/O exception has occurred.");
+		line(" */");
+		open("public static " + type
+				+ " decode(final ZippyBuffer buffer) throws IOException");
+		line("return decode(buffer, buffer.limit());");
+		close();
+		line();
+		line("/**");
+		line(" * Decodes a packet taking all the bytes up to a limit. Unknown");
+		line(" * sectors are skipped.");
+		line(" * ");
+		line(" * @param buffer");
+		line(" *            the buffer");
+		line(" * @param limit");
+		line(" *            the index the packet ends at");
+		line(" * @return the packet");
+		line(" * @throws IOException");
+		line(" *             Signals that an I/O exception has occurred.");
+		line(" */");
+		open("public static " + type + " decode(final ZippyBuffer buffer, "
+				+ "final int limit) throws IOException");
+		line("return decode(buffer, limit, null);");
+		close();
+		line();
+		line("/**");
+		line(" * Decodes a packet taking all the bytes up to a limit. Unknown");
+		line(" * sectors are skipped and, if a holder is given, kept there as");
+		line(" * ranges of the buffer storage, which must outlive them.");
+		line(" * ");
+		line(" * @param buffer");
+		line(" *            the buffer");
+		line(" * @param limit");
+		line(" *            the index the packet ends at");
+		line(" * @param unknown");
+		line(" *            the holder of the unknown sectors, may be null");
+		line(" * @return the packet");
+		line(" * @throws IOException");
+		line(" *             Signals that an I/O exception has occurred.");
+		line(" */");
+		open("public static " + type + " decode(final ZippyBuffer buffer, "
+				+ "final int limit, final ZippyUnknownSectors unknown) "
+				+ "throws IOException");
+		for (final SectorModel sector : packet.getSectors()) {
+			line(sector.getType() + " " + getLocalName(sector) + " = "
+					+ getDefault(sector) + ";");
+		}
+		open("while (buffer.position() < limit)");
+		line("final int start = buffer.position();");
+		line("final int tag = buffer.readTag();");
+		line("switch (tag) {");
+		for (final SectorModel sector : packet.getSectors()) {
+			printRead(sector);
+		}
+		line("default:");
+		indent();
+		line("buffer.skipSector(tag);");
+		open("if (unknown != null)");
+		line("unknown.add(buffer.getStorage(), start, buffer.position() "
+				+ "- start);");
+		close();
+		unindent();
+		line("}");
+		close();
+		open("if (buffer.position() != limit)");
+		line("throw new IOException(\"" + packet.getCodecName()
+				+ " encountered a malformed packet.\");");
+		close();
+		final StringBuilder arguments = new StringBuilder();
+		for (final SectorModel sector : packet.getArguments()) {
+			if (arguments.length() > 0) {
+				arguments.append(", ");
+			}
+			arguments.append(getLocalName(sector));
+		}
+		line("final " + type + " value = " + packet.getFactory() + "("
+				+ arguments + ");");
+		for (final SectorModel sector : packet.getSectors()) {
+			if (sector.getParameter() >= 0) {
+				continue;
+			}
+			final String local = getLocalName(sector);
+			if (sector.isNullable()) {
+				open("if (" + local + " != null)");
+				line(String.format(sector.getSetter(), local));
+				close();
+			} else {
+				line(String.format(sector.getSetter(), local));
+			}
+		}
+		line("return value;");
+		close();
+		line();
+	}
+
+	/**
+	 * Prints the case reading one item of a sector.
+	 * 
+	 * @param sector
+	 *            the sector
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	private void printRead(final SectorModel sector) throws IOException {
+		final String local = getLocalName(sector);
+		// Cases declaring locals get a block of their own.
+		final boolean block = sector.getKind() == SectorKind.PACKED;
+		line("case " + getTagName(sector) + (block ? ": {" : ":"));
+		indent();
+		String target = local + " = %s;";
+		if (sector.isRepeated()) {
+			open("if (" + local + " == null)");
+			line(local + " = new java.util.ArrayList<" + sector.getItemType()
+					+ ">();");
+			close();
+			target = local + ".add(%s);";
+		}
+		switch (sector.getKind()) {
+		case SCALAR:
+			line(String.format(target,
+					sector.getCast() + "buffer.read" + sector.getMethod()
+							+ "()"));
+			break;
+		case ENUM:
+			line(String.format(target, sector.getCodec()
+					+ "(buffer.readUnsignedInt())"));
+			break;
+		case PACKED:
+			line("final int end = buffer.readLimit();");
+			line(String.format(target, "buffer.read" + sector.getMethod()
+					+ "()"));
+			open("if (buffer.position() != end)");
+			line("throw new IOException(\"" + packet.getCodecName()
+					+ " encountered a malformed sector " + sector.getName()
+					+ ".\");");
+			close();
+			break;
+		case PACKET:
+			line(String.format(target, sector.getCodec()
+					+ ".decode(buffer, buffer.readLimit())"));
+			break;
+		}
+		line("break;");
+		unindent();
+		if (block) {
+			line("}");
+		}
+	}
+
+	/**
+	 * Prints the helpers turning ordinals into enum constants.
+	 * 
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	private void printEnums() throws IOException {
+		for (final Entry<String, String> entry : packet.getEnums().entrySet()) {
+			final String values = getValuesName(entry.getValue());
+			line("/**");
+			line(" * Gets the constant of an ordinal.");
+			line(" * ");
+			line(" * @param ordinal");
+			line(" *            the ordinal");
+			line(" * @return the constant");
+			line(" * @throws IOException");
+			line(" *             if the ordinal is out of range.");
+			line(" */");
+			open("private static " + entry.getKey() + " " + entry.getValue()
+					+ "(final int ordinal) throws IOException");
+			open("if (ordinal < 0 || ordinal >= " + values + ".length)");
+			line("throw new IOException(\"" + packet.getCodecName()
+					+ " encountered an unknown " + entry.getKey()
+					+ " constant.\");");
+			close();
+			line("return " + values + "[ordinal];");
+			close();
+			line();
+		}
+	}
+
+	/**
+	 * Gets the default value of the local holding a sector.
+	 * 
+	 * @param sector
+	 *            the sector
+	 * @return the default value
+	 */
+	private static String getDefault(final SectorModel sector) {
+		if (sector.isNullable()) {
+			return "null";
+		}
+		return "boolean".equals(sector.getType()) ? "false" : "0";
+	}
+
+	/**
+	 * Gets the name of the local holding a sector.
+	 * 
+	 * @param sector
+	 *            the sector
+	 * @return the local name
+	 */
+	private static String getLocalName(final SectorModel sector) {
+		final String name = sector.getName();
+		return RESERVED.contains(name) ? name + "Sector" : name;
+	}
+
+	/**
+	 * Gets the name of the tag constant of a sector.
+	 * 
+	 * @param sector
+	 *            the sector
+	 * @return the tag name
+	 */
+	static String getTagName(final SectorModel sector) {
+		return "TAG_" + toConstantName(sector.getName());
+	}
+
+	/**
+	 * Gets the name of the constants array of an enum helper.
+	 * 
+	 * @param helper
+	 *            the helper name
+	 * @return the array name
+	 */
+	private static String getValuesName(final String helper) {
+		return toConstantName(helper.substring(2)) + "_VALUES";
+	}
+
+}
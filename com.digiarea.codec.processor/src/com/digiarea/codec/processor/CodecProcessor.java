@@ -0,0 +1,379 @@
+/*******************************************************************************
+ * Copyright (c) 2011 - 2014 DigiArea, Inc. and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     DigiArea, Inc. - initial API and implementation
+ *******************************************************************************/
+package com.digiarea.codec.processor;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.annotation.processing.SupportedOptions;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.TypeElement;
+import javax.tools.Diagnostic.Kind;
+
+import com.digiarea.codec.annotations.Packet;
+
+/**
+ * The annotation processor generating a codec for every {@link Packet} type,
+ * e.g. {@code FooCodec} for {@code Foo} in the same package, with static
+ * reflection-free {@code encode}, {@code decode} and {@code sizeOf} methods
+ * over a {@code com.digiarea.zippy.ZippyBuffer}.
+ * <p>
+ * A packet is encoded as its sectors, each one a tag made of the sector id
+ * and the wire type of its value followed by the value: integral values as
+ * plain, ZigZag or unsigned VarInts or fixed-width little-endian values
+ * depending on {@code Sector.signed} and {@code Sector.fixed}, booleans as
+ * VarInts, floating point values as fixed-width values, enum constants as
+ * their ordinal, strings and byte arrays length-prefixed, primitive arrays as
+ * length-prefixed packed arrays and nested packets length-prefixed. Null
+ * values are left out, lists are written as one sector per item. Sectors
+ * without an id are numbered by declaration order from one. A packet made
+ * only of primitive fixed-width and boolean sectors always takes the same
+ * number of bytes, exposed by the {@code SIZE} constant of its codec.
+ * <p>
+ * Decoded packets are created by the {@code Factory} constructor or static
+ * method, whose parameters take the sectors of the same id or name, or else by
+ * the no-argument constructor; the other sectors are set through their
+ * non-private fields or setters.
+ * <p>
+ * The packets of a package with a non-zero {@code Packet.id} are also
+ * dispatched by id: a {@code CodecHandler} interface gets one {@code on<Name>}
+ * method per packet and a {@code CodecDispatcher} class writes messages made
+ * of the VarInt packet id and the packet, and reads them back through a
+ * {@code switch} over the ids going straight to the packet codec and the
+ * handler method. The ids must be positive, unique and dense, i.e. cover at
+ * least half of the range between the lowest and the highest one, so that the
+ * {@code switch} compiles to a table; anything else is a compile error.
+ * <p>
+ * By default every codec encodes and decodes its packet. Generating for one
+ * side, e.g. {@code -Acodec.side=CLIENT}, keeps the encoders of the packets
+ * owned by this side or by anyone and the decoders of the packets owned by
+ * the other side or by anyone, the codecs of the packets nested in them
+ * following; packets with neither get no codec at all. Generating for
+ * {@code -Acodec.scope=EXTERNAL} leaves out the {@code INTERNAL} packets,
+ * which external packets must not nest.
+ */
+@SupportedAnnotationTypes({ "com.digiarea.codec.annotations.Packet",
+		"com.digiarea.codec.annotations.Sector",
+		"com.digiarea.codec.annotations.Factory",
+		"com.digiarea.codec.annotations.Codec" })
+@SupportedOptions({ CodecProcessor.SIDE, CodecProcessor.SCOPE })
+public class CodecProcessor extends AbstractProcessor {
+
+	/** The option naming the side to generate for, CLIENT or SERVER. */
+	public static final String SIDE = "codec.side";
+
+	/** The option naming the scope to generate for, EXTERNAL or INTERNAL. */
+	public static final String SCOPE = "codec.scope";
+
+	/** The side to generate for, null for both. */
+	private Packet.Owner side;
+
+	/** Whether the internal packets are left out. */
+	private boolean external;
+
+	@Override
+	public synchronized void init(final ProcessingEnvironment processingEnv) {
+		super.init(processingEnv);
+		side = getOption(SIDE, Packet.Owner.class);
+		if (side == Packet.Owner.ANYONE) {
+			side = null;
+		}
+		external = getOption(SCOPE, Packet.Scope.class)
+				== Packet.Scope.EXTERNAL;
+	}
+
+	@Override
+	public SourceVersion getSupportedSourceVersion() {
+		return SourceVersion.latestSupported();
+	}
+
+	@Override
+	public boolean process(final Set<? extends TypeElement> annotations,
+			final RoundEnvironment roundEnv) {
+		final PacketScanner scanner = new PacketScanner(processingEnv);
+		final Map<String, PacketModel> models = new LinkedHashMap<>();
+		for (final Element element : roundEnv
+				.getElementsAnnotatedWith(Packet.class)) {
+			final PacketModel model = scanner.scan((TypeElement) element);
+			if (model != null) {
+				models.put(model.getCodecQualifiedName(), model);
+			}
+		}
+		final Map<String, List<PacketModel>> dispatched = new LinkedHashMap<>();
+		for (final PacketModel model : models.values()) {
+			if (model.getId() != 0) {
+				List<PacketModel> packets = dispatched.get(model
+						.getPackageName());
+				if (packets == null) {
+					packets = new ArrayList<>();
+					dispatched.put(model.getPackageName(), packets);
+				}
+				packets.add(model);
+			}
+		}
+		if (external) {
+			removeInternal(models);
+		}
+		if (side != null) {
+			setSides(models);
+		}
+		for (final PacketModel model : models.values()) {
+			if (model.isEncoded() || model.isDecoded()) {
+				generate(model);
+			}
+		}
+		for (final Map.Entry<String, List<PacketModel>> entry : dispatched
+				.entrySet()) {
+			// the ids are checked whatever the side and the scope
+			if (checkIds(entry.getValue())) {
+				entry.getValue().retainAll(models.values());
+				if (!entry.getValue().isEmpty()) {
+					generateDispatch(entry.getKey(), entry.getValue());
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Removes the internal packets, reporting the external packets nesting
+	 * them.
+	 * 
+	 * @param models
+	 *            the packets by codec
+	 */
+	private void removeInternal(final Map<String, PacketModel> models) {
+		for (final PacketModel model : models.values()) {
+			if (model.getScope() == Packet.Scope.INTERNAL) {
+				continue;
+			}
+			for (final SectorModel sector : model.getSectors()) {
+				final PacketModel nested = getNested(models, sector);
+				if (nested != null
+						&& nested.getScope() == Packet.Scope.INTERNAL) {
+					processingEnv.getMessager().printMessage(
+							Kind.ERROR,
+							"External packet " + model.getTypeName()
+									+ " must not nest internal packet "
+									+ nested.getTypeName() + ".",
+							sector.getElement());
+				}
+			}
+		}
+		final Iterator<PacketModel> iterator = models.values().iterator();
+		while (iterator.hasNext()) {
+			if (iterator.next().getScope() == Packet.Scope.INTERNAL) {
+				iterator.remove();
+			}
+		}
+	}
+
+	/**
+	 * Keeps the encoders of the packets this side sends and the decoders of
+	 * the packets it receives, then the ones of the packets they nest.
+	 * 
+	 * @param models
+	 *            the packets by codec
+	 */
+	private void setSides(final Map<String, PacketModel> models) {
+		for (final PacketModel model : models.values()) {
+			final Packet.Owner owner = model.getOwner();
+			model.setSent(owner == side || owner == Packet.Owner.ANYONE);
+			model.setReceived(owner != side);
+			model.setEncoded(model.isSent());
+			model.setDecoded(model.isReceived());
+		}
+		boolean changed = true;
+		while (changed) {
+			changed = false;
+			for (final PacketModel model : models.values()) {
+				for (final SectorModel sector : model.getSectors()) {
+					final PacketModel nested = getNested(models, sector);
+					if (nested == null) {
+						continue;
+					}
+					if (model.isEncoded() && !nested.isEncoded()) {
+						nested.setEncoded(true);
+						changed = true;
+					}
+					if (model.isDecoded() && !nested.isDecoded()) {
+						nested.setDecoded(true);
+						changed = true;
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Gets the packet of a sector among the packets of this round.
+	 * 
+	 * @param models
+	 *            the packets by codec
+	 * @param sector
+	 *            the sector
+	 * @return the packet or null if the sector is not a packet of this round
+	 */
+	private static PacketModel getNested(final Map<String, PacketModel> models,
+			final SectorModel sector) {
+		return sector.getKind() == SectorKind.PACKET ? models.get(sector
+				.getCodec()) : null;
+	}
+
+	/**
+	 * Sorts the packets of a package by id and checks that the ids are
+	 * positive, unique and dense.
+	 * 
+	 * @param packets
+	 *            the packets
+	 * @return true, if the ids are valid
+	 */
+	private boolean checkIds(final List<PacketModel> packets) {
+		Collections.sort(packets, new Comparator<PacketModel>() {
+
+			@Override
+			public int compare(final PacketModel o1, final PacketModel o2) {
+				return Integer.compare(o1.getId(), o2.getId());
+			}
+
+		});
+		boolean valid = true;
+		PacketModel previous = null;
+		for (final PacketModel packet : packets) {
+			if (packet.getId() < 0) {
+				error("Packet id " + packet.getId() + " is negative.", packet);
+				valid = false;
+			} else if (previous != null && previous.getId() == packet.getId()) {
+				error("Packet id " + packet.getId() + " is already used by "
+						+ previous.getTypeName() + ".", packet);
+				valid = false;
+			}
+			previous = packet;
+		}
+		final long range = (long) packets.get(packets.size() - 1).getId()
+				- packets.get(0).getId() + 1;
+		if (valid && range > 2L * packets.size()) {
+			for (final PacketModel packet : packets) {
+				error("Packet ids of " + packet.getPackageName()
+						+ " are too sparse: " + packets.size()
+						+ " ids span " + range + " values.", packet);
+			}
+			valid = false;
+		}
+		return valid;
+	}
+
+	/**
+	 * Generates the handler and the dispatcher of the packets of a package.
+	 * 
+	 * @param packageName
+	 *            the package name
+	 * @param packets
+	 *            the packets ordered by id
+	 */
+	private void generateDispatch(final String packageName,
+			final List<PacketModel> packets) {
+		final Element[] elements = new Element[packets.size()];
+		for (int i = 0; i < elements.length; i++) {
+			elements[i] = packets.get(i).getType();
+		}
+		final String prefix = packageName.isEmpty() ? "" : packageName + ".";
+		final DispatchGenerator generator = new DispatchGenerator();
+		try {
+			if (DispatchGenerator.isReceived(packets)) {
+				try (OutputStream out = processingEnv.getFiler()
+						.createSourceFile(prefix + DispatchGenerator.HANDLER,
+								elements).openOutputStream()) {
+					generator.generateHandler(packageName, packets, out);
+				}
+			}
+			try (OutputStream out = processingEnv.getFiler()
+					.createSourceFile(prefix + DispatchGenerator.DISPATCHER,
+							elements).openOutputStream()) {
+				generator.generateDispatcher(packageName, packets, out);
+			}
+		} catch (final IOException e) {
+			error("Can not write the dispatcher of " + packageName + ": "
+					+ e.getMessage(), packets.get(0));
+		}
+	}
+
+	/**
+	 * Gets the value of an option naming an enum constant.
+	 * 
+	 * @param <E>
+	 *            the enum type
+	 * @param name
+	 *            the option name
+	 * @param type
+	 *            the enum type
+	 * @return the constant or null if the option is not set or invalid
+	 */
+	private <E extends Enum<E>> E getOption(final String name,
+			final Class<E> type) {
+		final String value = processingEnv.getOptions().get(name);
+		if (value == null) {
+			return null;
+		}
+		try {
+			return Enum.valueOf(type, value.trim().toUpperCase(Locale.ENGLISH));
+		} catch (final IllegalArgumentException e) {
+			processingEnv.getMessager().printMessage(Kind.ERROR,
+					"Invalid option " + name + "=" + value + ".");
+			return null;
+		}
+	}
+
+	/**
+	 * Reports an error on a packet.
+	 * 
+	 * @param message
+	 *            the message
+	 * @param packet
+	 *            the packet
+	 */
+	private void error(final String message, final PacketModel packet) {
+		processingEnv.getMessager().printMessage(Kind.ERROR, message,
+				packet.getType());
+	}
+
+	/**
+	 * Generates the codec of a packet.
+	 * 
+	 * @param model
+	 *            the packet
+	 */
+	private void generate(final PacketModel model) {
+		try (OutputStream out = processingEnv.getFiler()
+				.createSourceFile(model.getCodecQualifiedName(),
+						model.getType()).openOutputStream()) {
+			new CodecGenerator().generate(model, out);
+		} catch (final IOException e) {
+			error("Can not write " + model.getCodecQualifiedName() + ": "
+					+ e.getMessage(), model);
+		}
+	}
+
+}
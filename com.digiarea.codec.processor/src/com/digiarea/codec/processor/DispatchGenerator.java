@@ -0,0 +1,314 @@
+/*******************************************************************************
+ * Copyright (c) 2011 - 2014 DigiArea, Inc. and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     DigiArea, Inc. - initial API and implementation
+ *******************************************************************************/
+package com.digiarea.codec.processor;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+
+/**
+ * Generates the dispatch of the packets of a package by {@code Packet.id}:
+ * the {@code CodecHandler} interface with one method per packet and the
+ * {@code CodecDispatcher} class whose {@code switch} over the dense ids is
+ * compiled to a {@code tableswitch} going straight to the packet codec and
+ * handler method.
+ * <p>
+ * Only the packets the side receives are handled and dispatched, the ids of
+ * the others share the {@code default} branch so that the table stays dense,
+ * and only the packets the side sends are encoded.
+ */
+final class DispatchGenerator extends SourceGenerator {
+
+	/** The simple name of the generated handler. */
+	static final String HANDLER = "CodecHandler";
+
+	/** The simple name of the generated dispatcher. */
+	static final String DISPATCHER = "CodecDispatcher";
+
+	/**
+	 * Generates the handler interface, provided some packet is received.
+	 * 
+	 * @param packageName
+	 *            the package name
+	 * @param packets
+	 *            the packets ordered by id
+	 * @param out
+	 *            the output stream of the handler source file
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	void generateHandler(final String packageName,
+			final List<PacketModel> packets, final OutputStream out)
+			throws IOException {
+		begin(out);
+		printHeader(packageName, false);
+		line("/**");
+		line(" * The handler of the packets dispatched by {@link " + DISPATCHER
+				+ "}.");
+		line(" * <p>");
+		line(" * Generated by the codec processor, do not edit.");
+		line(" */");
+		open("public interface " + HANDLER);
+		line();
+		for (final PacketModel packet : packets) {
+			if (!packet.isReceived()) {
+				continue;
+			}
+			line("/**");
+			line(" * Handles a {@link " + packet.getTypeName() + "}.");
+			line(" * ");
+			line(" * @param packet");
+			line(" *            the packet");
+			line(" * @throws IOException");
+			line(" *             Signals that an I/O exception has occurred.");
+			line(" */");
+			line("void " + getHandlerMethod(packet) + "("
+					+ packet.getTypeName() + " packet) throws IOException;");
+			line();
+		}
+		unindent();
+		line("}");
+	}
+
+	/**
+	 * Generates the dispatcher class.
+	 * 
+	 * @param packageName
+	 *            the package name
+	 * @param packets
+	 *            the packets ordered by id
+	 * @param out
+	 *            the output stream of the dispatcher source file
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	void generateDispatcher(final String packageName,
+			final List<PacketModel> packets, final OutputStream out)
+			throws IOException {
+		begin(out);
+		printHeader(packageName, true);
+		line("/**");
+		if (isReceived(packets)) {
+			line(" * Dispatches packets by id to a {@link " + HANDLER
+					+ "}. A message is the");
+		} else {
+			line(" * Encodes packets with their id. A message is the");
+		}
+		line(" * VarInt packet id followed by the packet.");
+		line(" * <p>");
+		line(" * Generated by the codec processor, do not edit.");
+		line(" */");
+		open("public final class " + DISPATCHER);
+		line();
+		for (final PacketModel packet : packets) {
+			line("/** The id of {@link " + packet.getTypeName() + "}. */");
+			line("public static final int " + getIdName(packet) + " = "
+					+ packet.getId() + ";");
+			line();
+		}
+		line("/**");
+		line(" * Instantiates a new dispatcher.");
+		line(" */");
+		open("private " + DISPATCHER + "()");
+		line("super();");
+		close();
+		line();
+		if (isReceived(packets)) {
+			printDispatch(packets);
+		}
+		for (final PacketModel packet : packets) {
+			if (packet.isSent()) {
+				printEncode(packet);
+			}
+		}
+		unindent();
+		line("}");
+	}
+
+	/**
+	 * Prints the dispatch methods.
+	 * 
+	 * @param packets
+	 *            the packets ordered by id
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	private void printDispatch(final List<PacketModel> packets)
+			throws IOException {
+		line("/**");
+		line(" * Reads a message taking all the bytes up to the buffer limit");
+		line(" * and hands its packet to the handler.");
+		line(" * ");
+		line(" * @param buffer");
+		line(" *            the buffer");
+		line(" * @param handler");
+		line(" *            the handler");
+		line(" * @return true, if the packet id is known");
+		line(" * @throws IOException");
+		line(" *             Signals that an I/O exception has occurred.");
+		line(" */");
+		open("public static boolean dispatch(final ZippyBuffer buffer, final "
+				+ HANDLER + " handler) throws IOException");
+		line("final int id = buffer.readRawVarInt();");
+		line("return dispatch(id, buffer, buffer.limit(), handler);");
+		close();
+		line();
+		line("/**");
+		line(" * Decodes the packet of an id taking all the bytes up to a");
+		line(" * limit and hands it to the handler. Nothing is read if the");
+		line(" * id is unknown.");
+		line(" * ");
+		line(" * @param id");
+		line(" *            the packet id");
+		line(" * @param buffer");
+		line(" *            the buffer");
+		line(" * @param limit");
+		line(" *            the index the packet ends at");
+		line(" * @param handler");
+		line(" *            the handler");
+		line(" * @return true, if the packet id is known");
+		line(" * @throws IOException");
+		line(" *             Signals that an I/O exception has occurred.");
+		line(" */");
+		open("public static boolean dispatch(final int id, "
+				+ "final ZippyBuffer buffer, final int limit, final "
+				+ HANDLER + " handler) throws IOException");
+		line("switch (id) {");
+		for (final PacketModel packet : packets) {
+			if (!packet.isReceived()) {
+				continue;
+			}
+			line("case " + getIdName(packet) + ":");
+			indent();
+			line("handler." + getHandlerMethod(packet) + "("
+					+ packet.getCodecQualifiedName()
+					+ ".decode(buffer, limit));");
+			line("return true;");
+			unindent();
+		}
+		for (final PacketModel packet : packets) {
+			if (!packet.isReceived()) {
+				line("case " + getIdName(packet) + ":");
+			}
+		}
+		line("default:");
+		indent();
+		line("return false;");
+		unindent();
+		line("}");
+		close();
+		line();
+	}
+
+	/**
+	 * Prints the encoder and the sizer of a message.
+	 * 
+	 * @param packet
+	 *            the packet
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	private void printEncode(final PacketModel packet) throws IOException {
+		line("/**");
+		line(" * Encodes a message: the packet id and the packet.");
+		line(" * ");
+		line(" * @param packet");
+		line(" *            the packet");
+		line(" * @param buffer");
+		line(" *            the buffer");
+		line(" * @throws IOException");
+		line(" *             Signals that an I/O exception has occurred.");
+		line(" */");
+		open("public static void encode(final " + packet.getTypeName()
+				+ " packet, final ZippyBuffer buffer) throws IOException");
+		line("buffer.writeRawVarInt(" + getIdName(packet) + ");");
+		line(packet.getCodecQualifiedName() + ".encode(packet, buffer);");
+		close();
+		line();
+		line("/**");
+		line(" * Computes the number of bytes needed to encode a message.");
+		printSizeNote(packet);
+		line(" * ");
+		line(" * @param packet");
+		line(" *            the packet");
+		line(" * @return the size");
+		line(" */");
+		open("public static int sizeOf(final " + packet.getTypeName()
+				+ " packet)");
+		line("return ZippyBuffer.sizeOfRawVarInt(" + getIdName(packet)
+				+ ") + " + packet.getCodecQualifiedName() + ".sizeOf(packet);");
+		close();
+		line();
+	}
+
+	/**
+	 * Prints the package and the imports.
+	 * 
+	 * @param packageName
+	 *            the package name
+	 * @param buffer
+	 *            whether {@code ZippyBuffer} is imported
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	private void printHeader(final String packageName, final boolean buffer)
+			throws IOException {
+		if (!packageName.isEmpty()) {
+			line("package " + packageName + ";");
+			line();
+		}
+		line("import java.io.IOException;");
+		line();
+		if (buffer) {
+			line("import com.digiarea.zippy.ZippyBuffer;");
+			line();
+		}
+	}
+
+	/**
+	 * Checks if some packet is received.
+	 * 
+	 * @param packets
+	 *            the packets
+	 * @return true, if some packet is received
+	 */
+	static boolean isReceived(final List<PacketModel> packets) {
+		for (final PacketModel packet : packets) {
+			if (packet.isReceived()) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Gets the name of the handler method of a packet.
+	 * 
+	 * @param packet
+	 *            the packet
+	 * @return the method name
+	 */
+	private static String getHandlerMethod(final PacketModel packet) {
+		return "on" + packet.getBaseName();
+	}
+
+	/**
+	 * Gets the name of the id constant of a packet.
+	 * 
+	 * @param packet
+	 *            the packet
+	 * @return the constant name
+	 */
+	private static String getIdName(final PacketModel packet) {
+		return toConstantName(packet.getBaseName());
+	}
+
+}
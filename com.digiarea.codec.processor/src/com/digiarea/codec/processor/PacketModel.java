@@ -0,0 +1,337 @@
+/*******************************************************************************
+ * Copyright (c) 2011 - 2014 DigiArea, Inc. and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     DigiArea, Inc. - initial API and implementation
+ *******************************************************************************/
+package com.digiarea.codec.processor;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.lang.model.element.TypeElement;
+
+import com.digiarea.codec.annotations.Packet;
+
+/**
+ * A packet as seen by the generator: its sectors in declaration order and the
+ * way decoded packets are created.
+ */
+final class PacketModel {
+
+	/** The packet type. */
+	private final TypeElement type;
+
+	/** The package name. */
+	private final String packageName;
+
+	/** The simple name of the codec. */
+	private final String codecName;
+
+	/** The sectors. */
+	private final List<SectorModel> sectors = new ArrayList<>();
+
+	/** The enum helpers by enum type. */
+	private final Map<String, String> enums = new LinkedHashMap<>();
+
+	/**
+	 * The expression creating a packet, prefix of its argument list, e.g.
+	 * {@code new Foo} or {@code Foo.create}.
+	 */
+	private String factory;
+
+	/** The sectors passed to the factory, in parameter order. */
+	private final List<SectorModel> arguments = new ArrayList<>();
+
+	/** Whether the codec encodes the packet. */
+	private boolean encoded = true;
+
+	/** Whether the codec decodes the packet. */
+	private boolean decoded = true;
+
+	/** Whether this side sends the packet itself, not only nested. */
+	private boolean sent = true;
+
+	/** Whether this side receives the packet itself, not only nested. */
+	private boolean received = true;
+
+	/**
+	 * Instantiates a new packet model.
+	 * 
+	 * @param type
+	 *            the packet type
+	 * @param packageName
+	 *            the package name
+	 * @param codecName
+	 *            the simple name of the codec
+	 */
+	PacketModel(final TypeElement type, final String packageName,
+			final String codecName) {
+		super();
+		this.type = type;
+		this.packageName = packageName;
+		this.codecName = codecName;
+	}
+
+	/**
+	 * Gets the packet type.
+	 * 
+	 * @return the type
+	 */
+	TypeElement getType() {
+		return type;
+	}
+
+	/**
+	 * Gets the qualified name of the packet type.
+	 * 
+	 * @return the type name
+	 */
+	String getTypeName() {
+		return type.getQualifiedName().toString();
+	}
+
+	/**
+	 * Gets the simple name of the packet type.
+	 * 
+	 * @return the simple name
+	 */
+	String getSimpleName() {
+		return type.getSimpleName().toString();
+	}
+
+	/**
+	 * Gets the packet id, zero if the packet is not dispatched by id.
+	 * 
+	 * @return the id
+	 */
+	int getId() {
+		return type.getAnnotation(Packet.class).id();
+	}
+
+	/**
+	 * Gets the side sending the packet.
+	 * 
+	 * @return the owner
+	 */
+	Packet.Owner getOwner() {
+		return type.getAnnotation(Packet.class).owner();
+	}
+
+	/**
+	 * Gets the scope of the packet.
+	 * 
+	 * @return the scope
+	 */
+	Packet.Scope getScope() {
+		return type.getAnnotation(Packet.class).scope();
+	}
+
+	/**
+	 * Checks if the codec encodes the packet.
+	 * 
+	 * @return true, if encoded
+	 */
+	boolean isEncoded() {
+		return encoded;
+	}
+
+	/**
+	 * Sets whether the codec encodes the packet.
+	 * 
+	 * @param encoded
+	 *            the new encoded
+	 */
+	void setEncoded(final boolean encoded) {
+		this.encoded = encoded;
+	}
+
+	/**
+	 * Checks if the codec decodes the packet.
+	 * 
+	 * @return true, if decoded
+	 */
+	boolean isDecoded() {
+		return decoded;
+	}
+
+	/**
+	 * Sets whether the codec decodes the packet.
+	 * 
+	 * @param decoded
+	 *            the new decoded
+	 */
+	void setDecoded(final boolean decoded) {
+		this.decoded = decoded;
+	}
+
+	/**
+	 * Checks if this side sends the packet on its own, so that the
+	 * dispatcher encodes it with its id.
+	 * 
+	 * @return true, if sent
+	 */
+	boolean isSent() {
+		return sent;
+	}
+
+	/**
+	 * Sets whether this side sends the packet on its own.
+	 * 
+	 * @param sent
+	 *            the new sent
+	 */
+	void setSent(final boolean sent) {
+		this.sent = sent;
+	}
+
+	/**
+	 * Checks if this side receives the packet on its own, so that the
+	 * dispatcher decodes it by its id.
+	 * 
+	 * @return true, if received
+	 */
+	boolean isReceived() {
+		return received;
+	}
+
+	/**
+	 * Sets whether this side receives the packet on its own.
+	 * 
+	 * @param received
+	 *            the new received
+	 */
+	void setReceived(final boolean received) {
+		this.received = received;
+	}
+
+	/**
+	 * Gets the name of the packet without the {@code Codec} suffix of its
+	 * codec, e.g. {@code OuterInner} for {@code Outer.Inner}.
+	 * 
+	 * @return the base name
+	 */
+	String getBaseName() {
+		return codecName.substring(0, codecName.length() - "Codec".length());
+	}
+
+	/**
+	 * Gets the package name.
+	 * 
+	 * @return the package name
+	 */
+	String getPackageName() {
+		return packageName;
+	}
+
+	/**
+	 * Gets the simple name of the codec.
+	 * 
+	 * @return the codec name
+	 */
+	String getCodecName() {
+		return codecName;
+	}
+
+	/**
+	 * Gets the qualified name of the codec.
+	 * 
+	 * @return the codec qualified name
+	 */
+	String getCodecQualifiedName() {
+		return packageName.isEmpty() ? codecName : packageName + "."
+				+ codecName;
+	}
+
+	/**
+	 * Gets the sectors.
+	 * 
+	 * @return the sectors
+	 */
+	List<SectorModel> getSectors() {
+		return sectors;
+	}
+
+	/**
+	 * Checks if the packet has length-prefixed values whose prefix is only
+	 * filled in once the value is written, i.e. packed arrays or nested
+	 * packets.
+	 * 
+	 * @return true, if some sector is packed or a packet
+	 */
+	boolean hasNestedValues() {
+		for (final SectorModel sector : sectors) {
+			if (sector.getKind() == SectorKind.PACKED
+					|| sector.getKind() == SectorKind.PACKET) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Gets the size of a packet whose sectors are all of a fixed size, tags
+	 * included.
+	 * 
+	 * @return the size, or -1 if the size depends on the packet
+	 */
+	int getFixedSize() {
+		if (sectors.isEmpty()) {
+			return -1;
+		}
+		int size = 0;
+		for (final SectorModel sector : sectors) {
+			final int fixed = sector.getFixedSize();
+			if (fixed < 0) {
+				return -1;
+			}
+			size += sector.getTagSize() + fixed;
+		}
+		return size;
+	}
+
+	/**
+	 * Gets the enum helpers, the name of the method turning an ordinal into
+	 * a constant by enum type.
+	 * 
+	 * @return the enums
+	 */
+	Map<String, String> getEnums() {
+		return enums;
+	}
+
+	/**
+	 * Gets the factory.
+	 * 
+	 * @return the factory
+	 */
+	String getFactory() {
+		return factory;
+	}
+
+	/**
+	 * Sets the factory.
+	 * 
+	 * @param factory
+	 *            the new factory
+	 */
+	void setFactory(final String factory) {
+		this.factory = factory;
+	}
+
+	/**
+	 * Gets the sectors passed to the factory, in parameter order.
+	 * 
+	 * @return the arguments
+	 */
+	List<SectorModel> getArguments() {
+		return arguments;
+	}
+
+}
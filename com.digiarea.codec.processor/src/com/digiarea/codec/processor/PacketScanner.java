@@ -0,0 +1,802 @@
+/*******************************************************************************
+ * Copyright (c) 2011 - 2014 DigiArea, Inc. and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     DigiArea, Inc. - initial API and implementation
+ *******************************************************************************/
+package com.digiarea.codec.processor;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.processing.Messager;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic.Kind;
+
+import com.digiarea.codec.annotations.Factory;
+import com.digiarea.codec.annotations.Packet;
+import com.digiarea.codec.annotations.Sector;
+import com.digiarea.codec.annotations.Sector.Signed;
+
+/**
+ * Builds the {@link PacketModel} of a {@link Packet} type, reporting every
+ * sector or factory the generator can not handle as a compilation error.
+ */
+final class PacketScanner {
+
+	/** The largest sector id whose tag fits a positive int. */
+	static final int MAX_SECTOR_ID = (1 << 28) - 1;
+
+	/** The messager. */
+	private final Messager messager;
+
+	/** The element utils. */
+	private final Elements elements;
+
+	/** The type utils. */
+	private final Types types;
+
+	/** The sector types of the packet being scanned. */
+	private final Map<SectorModel, TypeMirror> sectorTypes = new HashMap<>();
+
+	/** Whether an error has been reported for the packet being scanned. */
+	private boolean failed;
+
+	/**
+	 * Instantiates a new packet scanner.
+	 * 
+	 * @param env
+	 *            the processing environment
+	 */
+	PacketScanner(final ProcessingEnvironment env) {
+		super();
+		messager = env.getMessager();
+		elements = env.getElementUtils();
+		types = env.getTypeUtils();
+	}
+
+	/**
+	 * Gets the simple name of the codec of a packet type: the names of the
+	 * type and of its enclosing types followed by {@code Codec}, e.g.
+	 * {@code OuterInnerCodec} for {@code Outer.Inner}.
+	 * 
+	 * @param type
+	 *            the packet type
+	 * @return the codec name
+	 */
+	static String getCodecName(final TypeElement type) {
+		final StringBuilder builder = new StringBuilder(type.getSimpleName());
+		Element enclosing = type.getEnclosingElement();
+		while (enclosing.getKind().isClass()
+				|| enclosing.getKind().isInterface()) {
+			builder.insert(0, enclosing.getSimpleName());
+			enclosing = enclosing.getEnclosingElement();
+		}
+		return builder.append("Codec").toString();
+	}
+
+	/**
+	 * Scans a packet type.
+	 * 
+	 * @param type
+	 *            the packet type
+	 * @return the packet model or null if an error has been reported
+	 */
+	PacketModel scan(final TypeElement type) {
+		failed = false;
+		sectorTypes.clear();
+		final PacketModel model = new PacketModel(type, elements
+				.getPackageOf(type).getQualifiedName().toString(),
+				getCodecName(type));
+		if (type.getKind() != ElementKind.CLASS) {
+			error(type, "@Packet %s must be a class.", type);
+			return null;
+		}
+		if (!type.getTypeParameters().isEmpty()) {
+			error(type, "@Packet %s must not be generic.", type);
+		}
+		if (type.getModifiers().contains(Modifier.PRIVATE)
+				|| type.getNestingKind() == NestingKind.MEMBER
+				&& !type.getModifiers().contains(Modifier.STATIC)) {
+			error(type, "@Packet %s must be a non-private static class.", type);
+		}
+		for (final Element member : type.getEnclosedElements()) {
+			if (member.getAnnotation(Sector.class) == null) {
+				continue;
+			}
+			if (member.getKind() == ElementKind.FIELD) {
+				scanField(model, (VariableElement) member);
+			} else if (member.getKind() == ElementKind.METHOD) {
+				scanGetter(model, (ExecutableElement) member);
+			}
+		}
+		numberSectors(model);
+		scanFactory(model);
+		for (final SectorModel sector : model.getSectors()) {
+			if (sector.getParameter() < 0 && sector.getSetter() == null) {
+				error(sector.getElement(), "Sector %s of %s can not be set: "
+						+ "pass it to the @Factory, add a setter "
+						+ "or make the field non-private and non-final.",
+						sector.getName(), type);
+			}
+		}
+		return failed ? null : model;
+	}
+
+	/**
+	 * Scans a sector field.
+	 * 
+	 * @param model
+	 *            the model
+	 * @param field
+	 *            the field
+	 */
+	private void scanField(final PacketModel model,
+			final VariableElement field) {
+		final String name = field.getSimpleName().toString();
+		final SectorModel sector = new SectorModel(field, name, field
+				.getAnnotation(Sector.class).id());
+		if (field.getModifiers().contains(Modifier.STATIC)) {
+			error(field, "Sector %s of %s must not be static.", name,
+					model.getType());
+			return;
+		}
+		final TypeMirror type = field.asType();
+		final boolean accessible = !field.getModifiers().contains(
+				Modifier.PRIVATE);
+		if (accessible) {
+			sector.setGetter("value." + name);
+		} else {
+			final ExecutableElement getter = findGetter(model.getType(), name,
+					type);
+			if (getter == null) {
+				error(field, "Sector %s of %s is private and has no getter.",
+						name, model.getType());
+				return;
+			}
+			sector.setGetter("value." + getter.getSimpleName() + "()");
+		}
+		if (accessible && !field.getModifiers().contains(Modifier.FINAL)) {
+			sector.setSetter("value." + name + " = %s;");
+		} else {
+			sector.setSetter(findSetter(model.getType(), name, type));
+		}
+		addSector(model, sector, type);
+	}
+
+	/**
+	 * Scans a sector getter.
+	 * 
+	 * @param model
+	 *            the model
+	 * @param getter
+	 *            the getter
+	 */
+	private void scanGetter(final PacketModel model,
+			final ExecutableElement getter) {
+		final String method = getter.getSimpleName().toString();
+		if (getter.getModifiers().contains(Modifier.STATIC)
+				|| getter.getModifiers().contains(Modifier.PRIVATE)
+				|| !getter.getParameters().isEmpty()
+				|| getter.getReturnType().getKind() == TypeKind.VOID) {
+			error(getter, "Sector %s of %s must be a non-private getter.",
+					method, model.getType());
+			return;
+		}
+		final String name = getPropertyName(method);
+		final SectorModel sector = new SectorModel(getter, name, getter
+				.getAnnotation(Sector.class).id());
+		sector.setGetter("value." + method + "()");
+		sector.setSetter(findSetter(model.getType(), name,
+				getter.getReturnType()));
+		addSector(model, sector, getter.getReturnType());
+	}
+
+	/**
+	 * Works out the encoding of a sector and adds it to the model.
+	 * 
+	 * @param model
+	 *            the model
+	 * @param sector
+	 *            the sector
+	 * @param type
+	 *            the sector type
+	 */
+	private void addSector(final PacketModel model, final SectorModel sector,
+			final TypeMirror type) {
+		for (final SectorModel other : model.getSectors()) {
+			if (other.getName().equals(sector.getName())) {
+				error(sector.getElement(), "Sector %s of %s is declared twice.",
+						sector.getName(), model.getType());
+				return;
+			}
+		}
+		final Sector annotation = sector.getElement().getAnnotation(
+				Sector.class);
+		TypeMirror item = type;
+		if (isList(type)) {
+			item = ((DeclaredType) type).getTypeArguments().get(0);
+			sector.setRepeatedType(type.toString(), item.toString());
+			if (!setEncoding(model, sector, item, annotation)
+					|| sector.getKind() == SectorKind.PACKED
+					|| item.getKind() != TypeKind.DECLARED
+					&& item.getKind() != TypeKind.ARRAY) {
+				error(sector.getElement(),
+						"Sector %s of %s is a list of unsupported items %s.",
+						sector.getName(), model.getType(), item);
+				return;
+			}
+		} else {
+			sector.setType(type.toString(), !type.getKind().isPrimitive());
+			if (!setEncoding(model, sector, type, annotation)) {
+				error(sector.getElement(),
+						"Sector %s of %s has an unsupported type %s.",
+						sector.getName(), model.getType(), type);
+				return;
+			}
+		}
+		if (annotation.signed() != Signed.DEFAULT || annotation.fixed()) {
+			if (!isIntegral(item)) {
+				messager.printMessage(Kind.WARNING, String.format(
+						"Sector %s of %s is not integral, "
+								+ "signed and fixed are ignored.",
+						sector.getName(), model.getType()), sector
+						.getElement());
+			}
+		}
+		sectorTypes.put(sector, type);
+		model.getSectors().add(sector);
+	}
+
+	/**
+	 * Sets the encoding of a single value.
+	 * 
+	 * @param model
+	 *            the model
+	 * @param sector
+	 *            the sector
+	 * @param type
+	 *            the value type
+	 * @param annotation
+	 *            the sector annotation
+	 * @return true, if the type is supported
+	 */
+	private boolean setEncoding(final PacketModel model,
+			final SectorModel sector, final TypeMirror type,
+			final Sector annotation) {
+		switch (type.getKind()) {
+		case BOOLEAN:
+			sector.setEncoding(SectorKind.SCALAR, SectorModel.WIRE_VARINT,
+					"Boolean");
+			return true;
+		case BYTE:
+		case SHORT:
+		case CHAR:
+			sector.setCast("(" + type + ") ");
+			setIntegral(sector, "Int", annotation);
+			return true;
+		case INT:
+			setIntegral(sector, "Int", annotation);
+			return true;
+		case LONG:
+			setIntegral(sector, "Long", annotation);
+			return true;
+		case FLOAT:
+			sector.setEncoding(SectorKind.SCALAR, SectorModel.WIRE_FIXED32,
+					"Float");
+			return true;
+		case DOUBLE:
+			sector.setEncoding(SectorKind.SCALAR, SectorModel.WIRE_FIXED64,
+					"Double");
+			return true;
+		case ARRAY:
+			return setArrayEncoding(sector,
+					((ArrayType) type).getComponentType(), annotation);
+		case DECLARED:
+			return setDeclaredEncoding(model, sector, type, annotation);
+		default:
+			return false;
+		}
+	}
+
+	/**
+	 * Sets the encoding of an integral value.
+	 * 
+	 * @param sector
+	 *            the sector
+	 * @param type
+	 *            the method suffix of the type, {@code Int} or {@code Long}
+	 * @param annotation
+	 *            the sector annotation
+	 */
+	private static void setIntegral(final SectorModel sector,
+			final String type, final Sector annotation) {
+		if (annotation.fixed()) {
+			sector.setEncoding(SectorKind.SCALAR,
+					"Int".equals(type) ? SectorModel.WIRE_FIXED32
+							: SectorModel.WIRE_FIXED64,
+					(annotation.signed() == Signed.FALSE ? "UnsignedFixed"
+							: "SignedFixed") + type);
+		} else {
+			sector.setEncoding(SectorKind.SCALAR, SectorModel.WIRE_VARINT,
+					(annotation.signed() == Signed.TRUE ? "Signed"
+							: annotation.signed() == Signed.FALSE ? "Unsigned"
+									: "") + type);
+		}
+	}
+
+	/**
+	 * Sets the encoding of an array: bytes or a packed array.
+	 * 
+	 * @param sector
+	 *            the sector
+	 * @param component
+	 *            the component type
+	 * @param annotation
+	 *            the sector annotation
+	 * @return true, if the type is supported
+	 */
+	private static boolean setArrayEncoding(final SectorModel sector,
+			final TypeMirror component, final Sector annotation) {
+		final String method;
+		switch (component.getKind()) {
+		case BYTE:
+			sector.setEncoding(SectorKind.SCALAR,
+					SectorModel.WIRE_LENGTH_DELIMITED, "Bytes");
+			return true;
+		case INT:
+			method = getPackedPrefix(annotation) + "Ints";
+			break;
+		case LONG:
+			method = getPackedPrefix(annotation) + "Longs";
+			break;
+		case FLOAT:
+			method = "PackedFloats";
+			break;
+		case DOUBLE:
+			method = "PackedDoubles";
+			break;
+		case BOOLEAN:
+			method = "PackedBooleans";
+			break;
+		default:
+			return false;
+		}
+		sector.setEncoding(SectorKind.PACKED,
+				SectorModel.WIRE_LENGTH_DELIMITED, method);
+		return true;
+	}
+
+	/**
+	 * Gets the method prefix of a packed integral array.
+	 * 
+	 * @param annotation
+	 *            the sector annotation
+	 * @return the prefix
+	 */
+	private static String getPackedPrefix(final Sector annotation) {
+		if (annotation.fixed()) {
+			return "PackedFixed";
+		}
+		return annotation.signed() == Signed.TRUE ? "PackedSigned" : "Packed";
+	}
+
+	/**
+	 * Sets the encoding of a declared type: a boxed primitive, a string, an
+	 * enum or a packet.
+	 * 
+	 * @param model
+	 *            the model
+	 * @param sector
+	 *            the sector
+	 * @param type
+	 *            the type
+	 * @param annotation
+	 *            the sector annotation
+	 * @return true, if the type is supported
+	 */
+	private boolean setDeclaredEncoding(final PacketModel model,
+			final SectorModel sector, final TypeMirror type,
+			final Sector annotation) {
+		final TypeElement element = (TypeElement) types.asElement(type);
+		final String name = element.getQualifiedName().toString();
+		if ("java.lang.String".equals(name)) {
+			sector.setEncoding(SectorKind.SCALAR,
+					SectorModel.WIRE_LENGTH_DELIMITED, "String");
+			return true;
+		}
+		if (isBoxed(name)) {
+			return setEncoding(model, sector, types.unboxedType(type),
+					annotation);
+		}
+		if (element.getKind() == ElementKind.ENUM) {
+			sector.setEncoding(SectorKind.ENUM, SectorModel.WIRE_VARINT, null);
+			sector.setCodec(addEnum(model, element));
+			return true;
+		}
+		final String codec = getPacketCodec(element);
+		if (codec != null) {
+			sector.setEncoding(SectorKind.PACKET,
+					SectorModel.WIRE_LENGTH_DELIMITED, null);
+			sector.setCodec(codec);
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Gets the qualified name of the codec of a packet type: a type declared
+	 * {@link Packet} in this compilation or one whose codec already exists.
+	 * 
+	 * @param element
+	 *            the type
+	 * @return the codec or null if the type is not a packet
+	 */
+	private String getPacketCodec(final TypeElement element) {
+		final String packageName = elements.getPackageOf(element)
+				.getQualifiedName().toString();
+		final String codec = (packageName.isEmpty() ? "" : packageName + ".")
+				+ getCodecName(element);
+		if (element.getAnnotation(Packet.class) != null
+				|| elements.getTypeElement(codec) != null) {
+			return codec;
+		}
+		return null;
+	}
+
+	/**
+	 * Adds the helper decoding the ordinals of an enum type, once per type.
+	 * 
+	 * @param model
+	 *            the model
+	 * @param element
+	 *            the enum type
+	 * @return the helper name
+	 */
+	private static String addEnum(final PacketModel model,
+			final TypeElement element) {
+		final String type = element.getQualifiedName().toString();
+		String helper = model.getEnums().get(type);
+		if (helper == null) {
+			helper = "to" + element.getSimpleName();
+			while (model.getEnums().containsValue(helper)) {
+				helper += "_";
+			}
+			model.getEnums().put(type, helper);
+		}
+		return helper;
+	}
+
+	/**
+	 * Numbers the sectors without an id by declaration order and checks the
+	 * ids are unique.
+	 * 
+	 * @param model
+	 *            the model
+	 */
+	private void numberSectors(final PacketModel model) {
+		final List<SectorModel> sectors = model.getSectors();
+		final Map<Integer, SectorModel> ids = new HashMap<>();
+		for (int i = 0; i < sectors.size(); i++) {
+			final SectorModel sector = sectors.get(i);
+			if (sector.getId() == 0) {
+				sector.setId(i + 1);
+			}
+			if (sector.getId() < 0 || sector.getId() > MAX_SECTOR_ID) {
+				error(sector.getElement(),
+						"Sector %s of %s has an id out of range 1..%d.",
+						sector.getName(), model.getType(), MAX_SECTOR_ID);
+			} else if (ids.containsKey(sector.getId())) {
+				error(sector.getElement(),
+						"Sector %s of %s has the same id %d as sector %s.",
+						sector.getName(), model.getType(), sector.getId(), ids
+								.get(sector.getId()).getName());
+			} else {
+				ids.put(sector.getId(), sector);
+			}
+		}
+	}
+
+	/**
+	 * Finds the way decoded packets are created: the {@link Factory}
+	 * constructor or static method, or else the no-argument constructor.
+	 * 
+	 * @param model
+	 *            the model
+	 */
+	private void scanFactory(final PacketModel model) {
+		final TypeElement type = model.getType();
+		ExecutableElement factory = null;
+		for (final Element member : type.getEnclosedElements()) {
+			if (member.getAnnotation(Factory.class) == null) {
+				continue;
+			}
+			if (factory != null) {
+				error(member, "@Packet %s has more than one @Factory.", type);
+				return;
+			}
+			factory = (ExecutableElement) member;
+		}
+		if (factory == null) {
+			for (final ExecutableElement constructor : ElementFilter
+					.constructorsIn(type.getEnclosedElements())) {
+				if (constructor.getParameters().isEmpty()
+						&& !constructor.getModifiers().contains(
+								Modifier.PRIVATE)
+						&& !type.getModifiers().contains(Modifier.ABSTRACT)) {
+					model.setFactory("new " + model.getTypeName());
+					return;
+				}
+			}
+			error(type, "@Packet %s needs a @Factory "
+					+ "or a non-private no-argument constructor.", type);
+			return;
+		}
+		if (factory.getModifiers().contains(Modifier.PRIVATE)) {
+			error(factory, "The @Factory of %s must not be private.", type);
+			return;
+		}
+		if (factory.getKind() == ElementKind.CONSTRUCTOR) {
+			if (type.getModifiers().contains(Modifier.ABSTRACT)) {
+				error(factory, "The @Factory of %s constructs an abstract "
+						+ "class.", type);
+				return;
+			}
+			model.setFactory("new " + model.getTypeName());
+		} else if (factory.getModifiers().contains(Modifier.STATIC)
+				&& types.isAssignable(factory.getReturnType(), type.asType())) {
+			model.setFactory(model.getTypeName() + "."
+					+ factory.getSimpleName());
+		} else {
+			error(factory, "The @Factory of %s must be a constructor or a "
+					+ "static method returning it.", type);
+			return;
+		}
+		final List<? extends VariableElement> parameters = factory
+				.getParameters();
+		for (int i = 0; i < parameters.size(); i++) {
+			final VariableElement parameter = parameters.get(i);
+			final SectorModel sector = findSector(model, parameter);
+			if (sector == null) {
+				error(parameter, "Parameter %s of the @Factory of %s "
+						+ "matches no sector.", parameter.getSimpleName(),
+						type);
+			} else if (sector.getParameter() >= 0) {
+				error(parameter, "Parameter %s of the @Factory of %s "
+						+ "takes sector %s twice.", parameter.getSimpleName(),
+						type, sector.getName());
+			} else if (!types.isAssignable(sectorTypes.get(sector),
+					parameter.asType())) {
+				error(parameter, "Parameter %s of the @Factory of %s "
+						+ "does not take the type of sector %s.",
+						parameter.getSimpleName(), type, sector.getName());
+			} else {
+				sector.setParameter(i);
+				model.getArguments().add(sector);
+			}
+		}
+	}
+
+	/**
+	 * Finds the sector of a factory parameter, by the id of its {@link Sector}
+	 * annotation if any, otherwise by name.
+	 * 
+	 * @param model
+	 *            the model
+	 * @param parameter
+	 *            the parameter
+	 * @return the sector or null
+	 */
+	private static SectorModel findSector(final PacketModel model,
+			final VariableElement parameter) {
+		final Sector annotation = parameter.getAnnotation(Sector.class);
+		final String name = parameter.getSimpleName().toString();
+		for (final SectorModel sector : model.getSectors()) {
+			final boolean matches;
+			if (annotation != null && annotation.id() != 0) {
+				matches = sector.getId() == annotation.id();
+			} else {
+				matches = sector.getName().equals(name);
+			}
+			if (matches) {
+				return sector;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Finds the non-private getter of a property.
+	 * 
+	 * @param type
+	 *            the type
+	 * @param name
+	 *            the property name
+	 * @param propertyType
+	 *            the property type
+	 * @return the getter or null
+	 */
+	private ExecutableElement findGetter(final TypeElement type,
+			final String name, final TypeMirror propertyType) {
+		final String suffix = capitalize(name);
+		for (final ExecutableElement method : ElementFilter.methodsIn(type
+				.getEnclosedElements())) {
+			final String methodName = method.getSimpleName().toString();
+			if ((methodName.equals("get" + suffix) || methodName.equals("is"
+					+ suffix))
+					&& method.getParameters().isEmpty()
+					&& !method.getModifiers().contains(Modifier.PRIVATE)
+					&& !method.getModifiers().contains(Modifier.STATIC)
+					&& types.isSameType(method.getReturnType(), propertyType)) {
+				return method;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Finds the non-private setter of a property.
+	 * 
+	 * @param type
+	 *            the type
+	 * @param name
+	 *            the property name
+	 * @param propertyType
+	 *            the property type
+	 * @return the setter statement format or null
+	 */
+	private String findSetter(final TypeElement type, final String name,
+			final TypeMirror propertyType) {
+		final String setter = "set" + capitalize(name);
+		for (final ExecutableElement method : ElementFilter.methodsIn(type
+				.getEnclosedElements())) {
+			if (method.getSimpleName().contentEquals(setter)
+					&& method.getParameters().size() == 1
+					&& !method.getModifiers().contains(Modifier.PRIVATE)
+					&& !method.getModifiers().contains(Modifier.STATIC)
+					&& types.isAssignable(propertyType, method.getParameters()
+							.get(0).asType())) {
+				return "value." + setter + "(%s);";
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Checks if a type is a {@link java.util.List} of one item type.
+	 * 
+	 * @param type
+	 *            the type
+	 * @return true, if it is a list
+	 */
+	private boolean isList(final TypeMirror type) {
+		if (type.getKind() != TypeKind.DECLARED) {
+			return false;
+		}
+		final DeclaredType declared = (DeclaredType) type;
+		return ((TypeElement) declared.asElement()).getQualifiedName()
+				.contentEquals("java.util.List")
+				&& declared.getTypeArguments().size() == 1;
+	}
+
+	/**
+	 * Checks if a type is integral, primitive or boxed.
+	 * 
+	 * @param type
+	 *            the type
+	 * @return true, if integral
+	 */
+	private boolean isIntegral(final TypeMirror type) {
+		TypeMirror primitive = type;
+		if (type.getKind() == TypeKind.DECLARED) {
+			if (!isBoxed(((TypeElement) types.asElement(type))
+					.getQualifiedName().toString())) {
+				return false;
+			}
+			primitive = types.unboxedType(type);
+		} else if (type.getKind() == TypeKind.ARRAY) {
+			primitive = ((ArrayType) type).getComponentType();
+		}
+		switch (primitive.getKind()) {
+		case BYTE:
+		case SHORT:
+		case CHAR:
+		case INT:
+		case LONG:
+			return true;
+		default:
+			return false;
+		}
+	}
+
+	/**
+	 * Checks if a type is a boxed primitive.
+	 * 
+	 * @param name
+	 *            the qualified name of the type
+	 * @return true, if boxed
+	 */
+	private static boolean isBoxed(final String name) {
+		switch (name) {
+		case "java.lang.Boolean":
+		case "java.lang.Byte":
+		case "java.lang.Short":
+		case "java.lang.Character":
+		case "java.lang.Integer":
+		case "java.lang.Long":
+		case "java.lang.Float":
+		case "java.lang.Double":
+			return true;
+		default:
+			return false;
+		}
+	}
+
+	/**
+	 * Gets the property name of a getter.
+	 * 
+	 * @param method
+	 *            the getter name
+	 * @return the property name
+	 */
+	private static String getPropertyName(final String method) {
+		int prefix = 0;
+		if (method.startsWith("get") && method.length() > 3) {
+			prefix = 3;
+		} else if (method.startsWith("is") && method.length() > 2) {
+			prefix = 2;
+		}
+		if (prefix == 0 || !Character.isUpperCase(method.charAt(prefix))) {
+			return method;
+		}
+		return Character.toLowerCase(method.charAt(prefix))
+				+ method.substring(prefix + 1);
+	}
+
+	/**
+	 * Capitalizes a property name.
+	 * 
+	 * @param name
+	 *            the name
+	 * @return the capitalized name
+	 */
+	private static String capitalize(final String name) {
+		return Character.toUpperCase(name.charAt(0)) + name.substring(1);
+	}
+
+	/**
+	 * Reports an error.
+	 * 
+	 * @param element
+	 *            the element
+	 * @param format
+	 *            the message format
+	 * @param args
+	 *            the message arguments
+	 */
+	private void error(final Element element, final String format,
+			final Object... args) {
+		failed = true;
+		messager.printMessage(Kind.ERROR, String.format(format, args), element);
+	}
+
+}
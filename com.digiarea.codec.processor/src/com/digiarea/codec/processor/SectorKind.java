@@ -0,0 +1,35 @@
+/*******************************************************************************
+ * Copyright (c) 2011 - 2014 DigiArea, Inc. and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     DigiArea, Inc. - initial API and implementation
+ *******************************************************************************/
+package com.digiarea.codec.processor;
+
+/**
+ * The kinds of sector values, each of them encoded by its own pattern of
+ * {@code ZippyBuffer} calls.
+ */
+enum SectorKind {
+
+	/**
+	 * A value written, read and sized by a single {@code ZippyBuffer} method,
+	 * e.g. {@code writeSignedInt}, {@code readSignedInt} and
+	 * {@code sizeOfSignedInt}.
+	 */
+	SCALAR,
+
+	/** An enum constant, written as its unsigned ordinal. */
+	ENUM,
+
+	/** A primitive array, written as a length-prefixed packed array. */
+	PACKED,
+
+	/** A nested packet, written length-prefixed by its own codec. */
+	PACKET;
+
+}
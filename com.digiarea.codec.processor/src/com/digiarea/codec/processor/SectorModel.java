@@ -0,0 +1,382 @@
+/*******************************************************************************
+ * Copyright (c) 2011 - 2014 DigiArea, Inc. and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     DigiArea, Inc. - initial API and implementation
+ *******************************************************************************/
+package com.digiarea.codec.processor;
+
+import javax.lang.model.element.Element;
+
+/**
+ * A sector of a packet as seen by the generator: how to get its value from a
+ * packet, how to hand it back to a decoded one and how to encode it.
+ */
+final class SectorModel {
+
+	/** The wire type of VarInt values, as defined by {@code ZippyBuffer}. */
+	static final int WIRE_VARINT = 0;
+
+	/** The wire type of 64-bit fixed values. */
+	static final int WIRE_FIXED64 = 1;
+
+	/** The wire type of length-prefixed values. */
+	static final int WIRE_LENGTH_DELIMITED = 2;
+
+	/** The wire type of 32-bit fixed values. */
+	static final int WIRE_FIXED32 = 5;
+
+	/** The field or getter declaring the sector. */
+	private final Element element;
+
+	/** The name. */
+	private final String name;
+
+	/** The id. */
+	private int id;
+
+	/** The declared type. */
+	private String type;
+
+	/** The type of an item, the declared type unless repeated. */
+	private String itemType;
+
+	/** Whether the value may be null. */
+	private boolean nullable;
+
+	/** Whether the value is a list of items, each one a sector of its own. */
+	private boolean repeated;
+
+	/** The kind of the items. */
+	private SectorKind kind;
+
+	/** The wire type of the items. */
+	private int wireType;
+
+	/**
+	 * The {@code ZippyBuffer} method suffix of scalar and packed items, e.g.
+	 * {@code SignedInt} or {@code PackedFixedLongs}.
+	 */
+	private String method;
+
+	/** The cast applied to a read scalar, e.g. {@code (short) }. */
+	private String cast = "";
+
+	/** The codec of packet items or the helper decoding enum items. */
+	private String codec;
+
+	/** The expression getting the value from {@code value}. */
+	private String getter;
+
+	/** The statement format setting the value of {@code value}, or null. */
+	private String setter;
+
+	/** The index of the factory parameter taking the value, or -1. */
+	private int parameter = -1;
+
+	/**
+	 * Instantiates a new sector model.
+	 * 
+	 * @param element
+	 *            the field or getter declaring the sector
+	 * @param name
+	 *            the name
+	 * @param id
+	 *            the id, zero if not declared
+	 */
+	SectorModel(final Element element, final String name, final int id) {
+		super();
+		this.element = element;
+		this.name = name;
+		this.id = id;
+	}
+
+	/**
+	 * Gets the element.
+	 * 
+	 * @return the element
+	 */
+	Element getElement() {
+		return element;
+	}
+
+	/**
+	 * Gets the name.
+	 * 
+	 * @return the name
+	 */
+	String getName() {
+		return name;
+	}
+
+	/**
+	 * Gets the id.
+	 * 
+	 * @return the id
+	 */
+	int getId() {
+		return id;
+	}
+
+	/**
+	 * Sets the id.
+	 * 
+	 * @param id
+	 *            the new id
+	 */
+	void setId(final int id) {
+		this.id = id;
+	}
+
+	/**
+	 * Gets the tag of the items.
+	 * 
+	 * @return the tag
+	 */
+	int getTag() {
+		return (id << 3) | wireType;
+	}
+
+	/**
+	 * Gets the number of bytes of the tag.
+	 * 
+	 * @return the tag size
+	 */
+	int getTagSize() {
+		int size = 1;
+		for (int tag = getTag() >>> 7; tag != 0; tag >>>= 7) {
+			size++;
+		}
+		return size;
+	}
+
+	/**
+	 * Gets the type.
+	 * 
+	 * @return the type
+	 */
+	String getType() {
+		return type;
+	}
+
+	/**
+	 * Gets the item type.
+	 * 
+	 * @return the item type
+	 */
+	String getItemType() {
+		return itemType;
+	}
+
+	/**
+	 * Sets the type of a single value.
+	 * 
+	 * @param type
+	 *            the type
+	 * @param nullable
+	 *            whether the value may be null
+	 */
+	void setType(final String type, final boolean nullable) {
+		this.type = type;
+		itemType = type;
+		this.nullable = nullable;
+		repeated = false;
+	}
+
+	/**
+	 * Sets the type of a list of items.
+	 * 
+	 * @param type
+	 *            the list type
+	 * @param itemType
+	 *            the item type
+	 */
+	void setRepeatedType(final String type, final String itemType) {
+		this.type = type;
+		this.itemType = itemType;
+		nullable = true;
+		repeated = true;
+	}
+
+	/**
+	 * Checks if the value may be null.
+	 * 
+	 * @return true, if nullable
+	 */
+	boolean isNullable() {
+		return nullable;
+	}
+
+	/**
+	 * Checks if the value is a list of items.
+	 * 
+	 * @return true, if repeated
+	 */
+	boolean isRepeated() {
+		return repeated;
+	}
+
+	/**
+	 * Gets the kind.
+	 * 
+	 * @return the kind
+	 */
+	SectorKind getKind() {
+		return kind;
+	}
+
+	/**
+	 * Gets the wire type.
+	 * 
+	 * @return the wire type
+	 */
+	int getWireType() {
+		return wireType;
+	}
+
+	/**
+	 * Sets the encoding of the items.
+	 * 
+	 * @param kind
+	 *            the kind
+	 * @param wireType
+	 *            the wire type
+	 * @param method
+	 *            the {@code ZippyBuffer} method suffix, if any
+	 */
+	void setEncoding(final SectorKind kind, final int wireType,
+			final String method) {
+		this.kind = kind;
+		this.wireType = wireType;
+		this.method = method;
+	}
+
+	/**
+	 * Gets the method suffix.
+	 * 
+	 * @return the method
+	 */
+	String getMethod() {
+		return method;
+	}
+
+	/**
+	 * Gets the size of the value of a sector always encoded on the same
+	 * number of bytes, i.e. a non-null fixed-width or boolean value.
+	 * 
+	 * @return the size, tag excluded, or -1 if the size depends on the value
+	 */
+	int getFixedSize() {
+		if (kind != SectorKind.SCALAR || nullable) {
+			return -1;
+		}
+		switch (wireType) {
+		case WIRE_FIXED32:
+			return 4;
+		case WIRE_FIXED64:
+			return 8;
+		default:
+			return "Boolean".equals(method) ? 1 : -1;
+		}
+	}
+
+	/**
+	 * Gets the cast.
+	 * 
+	 * @return the cast
+	 */
+	String getCast() {
+		return cast;
+	}
+
+	/**
+	 * Sets the cast.
+	 * 
+	 * @param cast
+	 *            the new cast
+	 */
+	void setCast(final String cast) {
+		this.cast = cast;
+	}
+
+	/**
+	 * Gets the codec.
+	 * 
+	 * @return the codec
+	 */
+	String getCodec() {
+		return codec;
+	}
+
+	/**
+	 * Sets the codec.
+	 * 
+	 * @param codec
+	 *            the new codec
+	 */
+	void setCodec(final String codec) {
+		this.codec = codec;
+	}
+
+	/**
+	 * Gets the getter.
+	 * 
+	 * @return the getter
+	 */
+	String getGetter() {
+		return getter;
+	}
+
+	/**
+	 * Sets the getter.
+	 * 
+	 * @param getter
+	 *            the new getter
+	 */
+	void setGetter(final String getter) {
+		this.getter = getter;
+	}
+
+	/**
+	 * Gets the setter.
+	 * 
+	 * @return the setter
+	 */
+	String getSetter() {
+		return setter;
+	}
+
+	/**
+	 * Sets the setter.
+	 * 
+	 * @param setter
+	 *            the new setter
+	 */
+	void setSetter(final String setter) {
+		this.setter = setter;
+	}
+
+	/**
+	 * Gets the factory parameter.
+	 * 
+	 * @return the parameter
+	 */
+	int getParameter() {
+		return parameter;
+	}
+
+	/**
+	 * Sets the factory parameter.
+	 * 
+	 * @param parameter
+	 *            the new parameter
+	 */
+	void setParameter(final int parameter) {
+		this.parameter = parameter;
+	}
+
+}
@@ -0,0 +1,137 @@
+/*******************************************************************************
+ * Copyright (c) 2011 - 2014 DigiArea, Inc. and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     DigiArea, Inc. - initial API and implementation
+ *******************************************************************************/
+package com.digiarea.codec.processor;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import com.digiarea.common.utils.SourcePrinter;
+
+/**
+ * The base of the generators: prints Java source lines and blocks.
+ */
+abstract class SourceGenerator {
+
+	/** The printer. */
+	private SourcePrinter printer;
+
+	/**
+	 * Starts printing a source file.
+	 * 
+	 * @param out
+	 *            the output stream of the source file
+	 */
+	protected void begin(final OutputStream out) {
+		printer = new SourcePrinter(out, "UTF-8");
+	}
+
+	/**
+	 * Turns a camel case name into a constant name.
+	 * 
+	 * @param name
+	 *            the name
+	 * @return the constant name
+	 */
+	static String toConstantName(final String name) {
+		final StringBuilder builder = new StringBuilder();
+		for (int i = 0; i < name.length(); i++) {
+			final char c = name.charAt(i);
+			if (i > 0 && Character.isUpperCase(c)
+					&& !Character.isUpperCase(name.charAt(i - 1))) {
+				builder.append('_');
+			}
+			builder.append(Character.toUpperCase(c));
+		}
+		return builder.toString();
+	}
+
+	/**
+	 * Prints a line.
+	 * 
+	 * @param line
+	 *            the line
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	protected void line(final String line) throws IOException {
+		printer.printLn(line);
+	}
+
+	/**
+	 * Prints an empty line.
+	 * 
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	protected void line() throws IOException {
+		printer.printLn();
+	}
+
+	/**
+	 * Opens a block.
+	 * 
+	 * @param header
+	 *            the block header
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	protected void open(final String header) throws IOException {
+		printer.printLn(header + " {");
+		printer.indent();
+	}
+
+	/**
+	 * Closes a block.
+	 * 
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	protected void close() throws IOException {
+		printer.unindent();
+		printer.printLn("}");
+	}
+
+	/**
+	 * Prints the javadoc paragraph of a generated sizer telling where the size
+	 * is exact, provided the packet has nested values.
+	 * 
+	 * @param packet
+	 *            the packet
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	protected void printSizeNote(final PacketModel packet) throws IOException {
+		if (!packet.hasNestedValues()) {
+			return;
+		}
+		line(" * <p>");
+		line(" * The size is exact when encoding into a contiguous buffer. A");
+		line(" * segmented writer pads the length prefix of a nested value");
+		line(" * crossing a segment to five bytes, see");
+		line(" * {@link ZippyBuffer#endLengthPrefixed(int)}, so it may write");
+		line(" * more bytes: use {@link ZippyBuffer#getWrittenSize()} there.");
+	}
+
+	/**
+	 * Indents the following lines.
+	 */
+	protected void indent() {
+		printer.indent();
+	}
+
+	/**
+	 * Unindents the following lines.
+	 */
+	protected void unindent() {
+		printer.unindent();
+	}
+
+}
@@ -0,0 +1,96 @@
+/*******************************************************************************
+ * Copyright (c) 2011 - 2014 DigiArea, Inc. and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     DigiArea, Inc. - initial API and implementation
+ *******************************************************************************/
+package com.digiarea.zippy.benchmarks;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.digiarea.zippy.ZippyBuffer;
+
+/**
+ * Length-prefixed byte payloads.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BytesBenchmark {
+
+	/** The payload size. */
+	@Param({ "16", "256", "4096" })
+	public int size;
+
+	/** The payload. */
+	private byte[] payload;
+
+	/** The writer. */
+	private ZippyBuffer writer;
+
+	/** The encoded payload. */
+	private ZippyBuffer encoded;
+
+	/**
+	 * Sets the up.
+	 *
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	@Setup
+	public void setUp() throws IOException {
+		payload = new byte[size];
+		new Random(42).nextBytes(payload);
+		writer = new ZippyBuffer(new byte[size + 5]);
+		encoded = new ZippyBuffer(new byte[size + 5]);
+		encoded.writeBytes(payload);
+	}
+
+	/**
+	 * Write bytes.
+	 *
+	 * @return the int
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	@Benchmark
+	public int writeBytes() throws IOException {
+		final ZippyBuffer buffer = writer.rewind();
+		buffer.writeBytes(payload);
+		return buffer.position();
+	}
+
+	/**
+	 * Read bytes.
+	 *
+	 * @return the byte[]
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	@Benchmark
+	public byte[] readBytes() throws IOException {
+		return encoded.rewind().readBytes();
+	}
+
+}
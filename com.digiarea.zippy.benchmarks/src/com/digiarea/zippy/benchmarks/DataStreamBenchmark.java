@@ -0,0 +1,235 @@
+/*******************************************************************************
+ * Copyright (c) 2011 - 2014 DigiArea, Inc. and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     DigiArea, Inc. - initial API and implementation
+ *******************************************************************************/
+package com.digiarea.zippy.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * The {@link DataOutputStream} and {@link DataInputStream} baseline for
+ * {@link FixedBenchmark}, {@link VarIntBenchmark} and {@link StringBenchmark}:
+ * the same {@link #COUNT} values through the plain JDK streams.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DataStreamBenchmark {
+
+	/** The number of values per operation. */
+	public static final int COUNT = 1024;
+
+	/** The ints. */
+	private int[] ints;
+
+	/** The longs. */
+	private long[] longs;
+
+	/** The doubles. */
+	private double[] doubles;
+
+	/** The string. */
+	private String string;
+
+	/** The output bytes. */
+	private ByteArrayOutputStream bytes;
+
+	/** The output. */
+	private DataOutputStream out;
+
+	/** The encoded ints. */
+	private byte[] encodedInts;
+
+	/** The encoded longs. */
+	private byte[] encodedLongs;
+
+	/** The encoded doubles. */
+	private byte[] encodedDoubles;
+
+	/** The encoded string. */
+	private byte[] encodedString;
+
+	/**
+	 * Sets the up.
+	 *
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	@Setup
+	public void setUp() throws IOException {
+		final Random random = new Random(42);
+		ints = new int[COUNT];
+		longs = new long[COUNT];
+		doubles = new double[COUNT];
+		for (int i = 0; i < COUNT; i++) {
+			ints[i] = random.nextInt();
+			longs[i] = random.nextLong();
+			doubles[i] = random.nextGaussian();
+		}
+		string = Values.text("multilingual", 64);
+		bytes = new ByteArrayOutputStream(COUNT * 8);
+		out = new DataOutputStream(bytes);
+		writeInts();
+		encodedInts = bytes.toByteArray();
+		writeLongs();
+		encodedLongs = bytes.toByteArray();
+		writeDoubles();
+		encodedDoubles = bytes.toByteArray();
+		writeString();
+		encodedString = bytes.toByteArray();
+	}
+
+	/**
+	 * Write ints.
+	 *
+	 * @return the int
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	@Benchmark
+	public int writeInts() throws IOException {
+		bytes.reset();
+		for (int i = 0; i < COUNT; i++) {
+			out.writeInt(ints[i]);
+		}
+		return bytes.size();
+	}
+
+	/**
+	 * Write longs.
+	 *
+	 * @return the int
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	@Benchmark
+	public int writeLongs() throws IOException {
+		bytes.reset();
+		for (int i = 0; i < COUNT; i++) {
+			out.writeLong(longs[i]);
+		}
+		return bytes.size();
+	}
+
+	/**
+	 * Write doubles.
+	 *
+	 * @return the int
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	@Benchmark
+	public int writeDoubles() throws IOException {
+		bytes.reset();
+		for (int i = 0; i < COUNT; i++) {
+			out.writeDouble(doubles[i]);
+		}
+		return bytes.size();
+	}
+
+	/**
+	 * Write string.
+	 *
+	 * @return the int
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	@Benchmark
+	public int writeString() throws IOException {
+		bytes.reset();
+		out.writeUTF(string);
+		return bytes.size();
+	}
+
+	/**
+	 * Read ints.
+	 *
+	 * @param blackhole
+	 *            the blackhole
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	@Benchmark
+	public void readInts(final Blackhole blackhole) throws IOException {
+		final DataInputStream in = new DataInputStream(new ByteArrayInputStream(
+				encodedInts));
+		for (int i = 0; i < COUNT; i++) {
+			blackhole.consume(in.readInt());
+		}
+	}
+
+	/**
+	 * Read longs.
+	 *
+	 * @param blackhole
+	 *            the blackhole
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	@Benchmark
+	public void readLongs(final Blackhole blackhole) throws IOException {
+		final DataInputStream in = new DataInputStream(new ByteArrayInputStream(
+				encodedLongs));
+		for (int i = 0; i < COUNT; i++) {
+			blackhole.consume(in.readLong());
+		}
+	}
+
+	/**
+	 * Read doubles.
+	 *
+	 * @param blackhole
+	 *            the blackhole
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	@Benchmark
+	public void readDoubles(final Blackhole blackhole) throws IOException {
+		final DataInputStream in = new DataInputStream(new ByteArrayInputStream(
+				encodedDoubles));
+		for (int i = 0; i < COUNT; i++) {
+			blackhole.consume(in.readDouble());
+		}
+	}
+
+	/**
+	 * Read string.
+	 *
+	 * @return the string
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	@Benchmark
+	public String readString() throws IOException {
+		return new DataInputStream(new ByteArrayInputStream(encodedString))
+				.readUTF();
+	}
+
+}
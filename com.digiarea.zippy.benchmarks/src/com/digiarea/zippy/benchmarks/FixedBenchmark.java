@@ -0,0 +1,189 @@
+/*******************************************************************************
+ * Copyright (c) 2011 - 2014 DigiArea, Inc. and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     DigiArea, Inc. - initial API and implementation
+ *******************************************************************************/
+package com.digiarea.zippy.benchmarks;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.digiarea.zippy.ZippyBuffer;
+
+/**
+ * Fixed-width encoding and decoding of {@link #COUNT} ints, longs and
+ * doubles.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FixedBenchmark {
+
+	/** The number of values per operation. */
+	public static final int COUNT = 1024;
+
+	/** The ints. */
+	private int[] ints;
+
+	/** The longs. */
+	private long[] longs;
+
+	/** The doubles. */
+	private double[] doubles;
+
+	/** The writer. */
+	private ZippyBuffer writer;
+
+	/** The encoded ints. */
+	private ZippyBuffer fixedInts;
+
+	/** The encoded longs. */
+	private ZippyBuffer fixedLongs;
+
+	/** The encoded doubles. */
+	private ZippyBuffer fixedDoubles;
+
+	/**
+	 * Sets the up.
+	 *
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	@Setup
+	public void setUp() throws IOException {
+		final Random random = new Random(42);
+		ints = new int[COUNT];
+		longs = new long[COUNT];
+		doubles = new double[COUNT];
+		writer = new ZippyBuffer(new byte[COUNT * 8]);
+		fixedInts = new ZippyBuffer(new byte[COUNT * 4]);
+		fixedLongs = new ZippyBuffer(new byte[COUNT * 8]);
+		fixedDoubles = new ZippyBuffer(new byte[COUNT * 8]);
+		for (int i = 0; i < COUNT; i++) {
+			ints[i] = random.nextInt();
+			longs[i] = random.nextLong();
+			doubles[i] = random.nextGaussian();
+			fixedInts.writeSignedFixedInt(ints[i]);
+			fixedLongs.writeSignedFixedLong(longs[i]);
+			fixedDoubles.writeDouble(doubles[i]);
+		}
+	}
+
+	/**
+	 * Write fixed int.
+	 *
+	 * @return the int
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	@Benchmark
+	public int writeFixedInt() throws IOException {
+		final ZippyBuffer buffer = writer.rewind();
+		for (int i = 0; i < COUNT; i++) {
+			buffer.writeSignedFixedInt(ints[i]);
+		}
+		return buffer.position();
+	}
+
+	/**
+	 * Write fixed long.
+	 *
+	 * @return the int
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	@Benchmark
+	public int writeFixedLong() throws IOException {
+		final ZippyBuffer buffer = writer.rewind();
+		for (int i = 0; i < COUNT; i++) {
+			buffer.writeSignedFixedLong(longs[i]);
+		}
+		return buffer.position();
+	}
+
+	/**
+	 * Write double.
+	 *
+	 * @return the int
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	@Benchmark
+	public int writeDouble() throws IOException {
+		final ZippyBuffer buffer = writer.rewind();
+		for (int i = 0; i < COUNT; i++) {
+			buffer.writeDouble(doubles[i]);
+		}
+		return buffer.position();
+	}
+
+	/**
+	 * Read fixed int.
+	 *
+	 * @param blackhole
+	 *            the blackhole
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	@Benchmark
+	public void readFixedInt(final Blackhole blackhole) throws IOException {
+		final ZippyBuffer buffer = fixedInts.rewind();
+		for (int i = 0; i < COUNT; i++) {
+			blackhole.consume(buffer.readSignedFixedInt());
+		}
+	}
+
+	/**
+	 * Read fixed long.
+	 *
+	 * @param blackhole
+	 *            the blackhole
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	@Benchmark
+	public void readFixedLong(final Blackhole blackhole) throws IOException {
+		final ZippyBuffer buffer = fixedLongs.rewind();
+		for (int i = 0; i < COUNT; i++) {
+			blackhole.consume(buffer.readSignedFixedLong());
+		}
+	}
+
+	/**
+	 * Read double.
+	 *
+	 * @param blackhole
+	 *            the blackhole
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	@Benchmark
+	public void readDouble(final Blackhole blackhole) throws IOException {
+		final ZippyBuffer buffer = fixedDoubles.rewind();
+		for (int i = 0; i < COUNT; i++) {
+			blackhole.consume(buffer.readDouble());
+		}
+	}
+
+}
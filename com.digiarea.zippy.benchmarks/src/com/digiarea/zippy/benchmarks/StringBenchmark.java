@@ -0,0 +1,108 @@
+/*******************************************************************************
+ * Copyright (c) 2011 - 2014 DigiArea, Inc. and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     DigiArea, Inc. - initial API and implementation
+ *******************************************************************************/
+package com.digiarea.zippy.benchmarks;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.digiarea.zippy.ZippyBuffer;
+
+/**
+ * UTF-8 string sizing, encoding and decoding.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StringBenchmark {
+
+	/** The kind of text. */
+	@Param({ "ascii", "latin", "multilingual" })
+	public String kind;
+
+	/** The length in chars. */
+	@Param({ "8", "64", "1024" })
+	public int length;
+
+	/** The value. */
+	private String value;
+
+	/** The writer. */
+	private ZippyBuffer writer;
+
+	/** The encoded value. */
+	private ZippyBuffer encoded;
+
+	/**
+	 * Sets the up.
+	 *
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	@Setup
+	public void setUp() throws IOException {
+		value = Values.text(kind, length);
+		writer = new ZippyBuffer(new byte[length * 3 + 5]);
+		encoded = new ZippyBuffer(new byte[length * 3 + 5]);
+		encoded.writeString(value);
+	}
+
+	/**
+	 * Size of string.
+	 *
+	 * @return the int
+	 */
+	@Benchmark
+	public int sizeOfString() {
+		return ZippyBuffer.sizeOfString(value);
+	}
+
+	/**
+	 * Write string.
+	 *
+	 * @return the int
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	@Benchmark
+	public int writeString() throws IOException {
+		final ZippyBuffer buffer = writer.rewind();
+		buffer.writeString(value);
+		return buffer.position();
+	}
+
+	/**
+	 * Read string.
+	 *
+	 * @return the string
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	@Benchmark
+	public String readString() throws IOException {
+		return encoded.rewind().readString();
+	}
+
+}
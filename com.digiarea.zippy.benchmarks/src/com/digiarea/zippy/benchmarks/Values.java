@@ -0,0 +1,79 @@
+/*******************************************************************************
+ * Copyright (c) 2011 - 2014 DigiArea, Inc. and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     DigiArea, Inc. - initial API and implementation
+ *******************************************************************************/
+package com.digiarea.zippy.benchmarks;
+
+import java.util.Random;
+
+/**
+ * Test data shared by the benchmarks.
+ */
+final class Values {
+
+	/** Plain ASCII text. */
+	static final String ASCII = "The quick brown fox jumps over the lazy dog. ";
+
+	/** Latin-1 text, two bytes per accented char. */
+	static final String LATIN = "D\u00e9j\u00e0 vu, cr\u00e8me "
+			+ "br\u00fbl\u00e9e, \u00fcber na\u00efve. ";
+
+	/** Multilingual text with three and four byte chars. */
+	static final String MULTILINGUAL = "\u041f\u0440\u0438\u0432\u0435\u0442 "
+			+ "\u4f60\u597d\u4e16\u754c \u3053\u3093\u306b\u3061\u306f "
+			+ "\ud83d\ude00 \u0645\u0631\u062d\u0628\u0627 ";
+
+	/**
+	 * Instantiates a new values.
+	 */
+	private Values() {
+		super();
+	}
+
+	/**
+	 * Returns a random unsigned value whose VarInt takes exactly
+	 * {@code bytes} bytes.
+	 *
+	 * @param random
+	 *            the random
+	 * @param bytes
+	 *            the bytes, from 1 to 5
+	 * @return the int
+	 */
+	static int unsigned(final Random random, final int bytes) {
+		final long low = bytes == 1 ? 0 : 1L << (7 * (bytes - 1));
+		final long high = bytes == 5 ? 1L << 32 : 1L << (7 * bytes);
+		return (int) (low + (long) (random.nextDouble() * (high - low)));
+	}
+
+	/**
+	 * Returns a text of the given kind and length in chars.
+	 *
+	 * @param kind
+	 *            ascii, latin or multilingual
+	 * @param length
+	 *            the length
+	 * @return the string
+	 */
+	static String text(final String kind, final int length) {
+		final String sample = "ascii".equals(kind) ? ASCII : "latin"
+				.equals(kind) ? LATIN : MULTILINGUAL;
+		final StringBuilder builder = new StringBuilder(length
+				+ sample.length());
+		while (builder.length() < length) {
+			builder.append(sample);
+		}
+		builder.setLength(length);
+		if (Character.isHighSurrogate(builder.charAt(length - 1))) {
+			builder.setCharAt(length - 1, ' ');
+		}
+		return builder.toString();
+	}
+
+}
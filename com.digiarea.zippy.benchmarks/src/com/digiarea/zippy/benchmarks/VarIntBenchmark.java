@@ -0,0 +1,235 @@
+/*******************************************************************************
+ * Copyright (c) 2011 - 2014 DigiArea, Inc. and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     DigiArea, Inc. - initial API and implementation
+ *******************************************************************************/
+package com.digiarea.zippy.benchmarks;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.digiarea.zippy.ZippyBuffer;
+import com.digiarea.zippy.ZippyVarIntDecoder;
+
+/**
+ * VarInt, ZigZag and VarLong encoding and decoding of {@link #COUNT} values
+ * whose encoding takes {@link #bytes} bytes each.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class VarIntBenchmark {
+
+	/** The number of values per operation. */
+	public static final int COUNT = 1024;
+
+	/** The encoded size of every value. */
+	@Param({ "1", "2", "3", "4", "5" })
+	public int bytes;
+
+	/** The values. */
+	private int[] values;
+
+	/** The signed values. */
+	private int[] signed;
+
+	/** The writer. */
+	private ZippyBuffer writer;
+
+	/** The encoded VarInts. */
+	private ZippyBuffer varInts;
+
+	/** The encoded ZigZag values. */
+	private ZippyBuffer zigZags;
+
+	/** The encoded VarLongs. */
+	private ZippyBuffer varLongs;
+
+	/** The values as a packed array. */
+	private ZippyBuffer packed;
+
+	/** The decoded values. */
+	private int[] decoded;
+
+	/** The scalar decoder. */
+	private ZippyVarIntDecoder scalar;
+
+	/**
+	 * Sets the up.
+	 *
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	@Setup
+	public void setUp() throws IOException {
+		final Random random = new Random(42);
+		values = new int[COUNT];
+		signed = new int[COUNT];
+		for (int i = 0; i < COUNT; i++) {
+			values[i] = Values.unsigned(random, bytes);
+			signed[i] = ZippyBuffer.decodeZigZagInt(values[i]);
+		}
+		writer = new ZippyBuffer(new byte[COUNT * 10]);
+		varInts = new ZippyBuffer(new byte[COUNT * 10]);
+		zigZags = new ZippyBuffer(new byte[COUNT * 10]);
+		varLongs = new ZippyBuffer(new byte[COUNT * 10]);
+		for (int i = 0; i < COUNT; i++) {
+			varInts.writeRawVarInt(values[i]);
+			zigZags.writeSignedInt(signed[i]);
+			varLongs.writeRawVarLong(values[i] & 0xffffffffL);
+		}
+		packed = new ZippyBuffer(new byte[COUNT * 10 + 5]);
+		packed.writePackedInts(values);
+		decoded = new int[COUNT];
+		scalar = new ZippyVarIntDecoder();
+	}
+
+	/**
+	 * Write var int.
+	 *
+	 * @return the int
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	@Benchmark
+	public int writeVarInt() throws IOException {
+		final ZippyBuffer buffer = writer.rewind();
+		for (int i = 0; i < COUNT; i++) {
+			buffer.writeRawVarInt(values[i]);
+		}
+		return buffer.position();
+	}
+
+	/**
+	 * Write signed int.
+	 *
+	 * @return the int
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	@Benchmark
+	public int writeSignedInt() throws IOException {
+		final ZippyBuffer buffer = writer.rewind();
+		for (int i = 0; i < COUNT; i++) {
+			buffer.writeSignedInt(signed[i]);
+		}
+		return buffer.position();
+	}
+
+	/**
+	 * Write var long.
+	 *
+	 * @return the int
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	@Benchmark
+	public int writeVarLong() throws IOException {
+		final ZippyBuffer buffer = writer.rewind();
+		for (int i = 0; i < COUNT; i++) {
+			buffer.writeRawVarLong(values[i] & 0xffffffffL);
+		}
+		return buffer.position();
+	}
+
+	/**
+	 * Read var int.
+	 *
+	 * @param blackhole
+	 *            the blackhole
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	@Benchmark
+	public void readVarInt(final Blackhole blackhole) throws IOException {
+		final ZippyBuffer buffer = varInts.rewind();
+		for (int i = 0; i < COUNT; i++) {
+			blackhole.consume(buffer.readRawVarInt());
+		}
+	}
+
+	/**
+	 * Read signed int.
+	 *
+	 * @param blackhole
+	 *            the blackhole
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	@Benchmark
+	public void readSignedInt(final Blackhole blackhole) throws IOException {
+		final ZippyBuffer buffer = zigZags.rewind();
+		for (int i = 0; i < COUNT; i++) {
+			blackhole.consume(buffer.readSignedInt());
+		}
+	}
+
+	/**
+	 * Read var long.
+	 *
+	 * @param blackhole
+	 *            the blackhole
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	@Benchmark
+	public void readVarLong(final Blackhole blackhole) throws IOException {
+		final ZippyBuffer buffer = varLongs.rewind();
+		for (int i = 0; i < COUNT; i++) {
+			blackhole.consume(buffer.readRawVarLong());
+		}
+	}
+
+	/**
+	 * Read packed ints with the decoder picked by {@link ZippyBuffer}, the
+	 * vectorized one when the JVM runs with
+	 * {@code -jvmArgsAppend --add-modules=jdk.incubator.vector} and the
+	 * {@code com.digiarea.zippy.vector} fragment is on the class path.
+	 *
+	 * @return the int
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	@Benchmark
+	public int readPackedInts() throws IOException {
+		return packed.rewind().readPackedInts(decoded, 0);
+	}
+
+	/**
+	 * Read packed ints with the scalar decoder.
+	 *
+	 * @return the int
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	@Benchmark
+	public int readPackedIntsScalar() throws IOException {
+		final ZippyBuffer buffer = packed.rewind();
+		final int count = buffer.readRawVarInt();
+		return scalar.decodeInts(buffer.getStorage(), buffer.position(),
+				buffer.limit(), decoded, 0, count);
+	}
+
+}
@@ -0,0 +1,148 @@
+/*******************************************************************************
+ * Copyright (c) 2011 - 2014 DigiArea, Inc. and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     DigiArea, Inc. - initial API and implementation
+ *******************************************************************************/
+package com.digiarea.zippy.benchmarks;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.digiarea.zippy.ZippyBuffer;
+import com.digiarea.zippy.ZippyWsFrame;
+
+/**
+ * WebSocket framing: the legacy frame length, RFC 6455 frame headers and
+ * payload masking.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WsFrameBenchmark {
+
+	/** The binary frame type. */
+	private static final byte BINARY = (byte) 0x80;
+
+	/** The frame length. */
+	@Param({ "100", "20000", "3000000" })
+	public int length;
+
+	/** The writer. */
+	private ZippyBuffer writer;
+
+	/** The encoded frame length. */
+	private ZippyBuffer encoded;
+
+	/** The RFC 6455 frame. */
+	private ZippyWsFrame frame;
+
+	/** The encoded RFC 6455 frame header. */
+	private ZippyBuffer header;
+
+	/** The payload. */
+	private ZippyBuffer payload;
+
+	/**
+	 * Sets the up.
+	 *
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	@Setup
+	public void setUp() throws IOException {
+		writer = new ZippyBuffer(new byte[16]);
+		encoded = new ZippyBuffer(new byte[16]);
+		encoded.writeWsFrameLength(BINARY, length);
+		frame = new ZippyWsFrame(true, ZippyWsFrame.BINARY, length);
+		frame.setMaskingKey(0x12345678);
+		header = new ZippyBuffer(new byte[16]);
+		header.writeWsFrameHeader(frame);
+		payload = new ZippyBuffer(new byte[length]);
+	}
+
+	/**
+	 * Write ws frame length.
+	 *
+	 * @return the int
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	@Benchmark
+	public int writeWsFrameLength() throws IOException {
+		final ZippyBuffer buffer = writer.rewind();
+		buffer.writeWsFrameLength(BINARY, length);
+		return buffer.position();
+	}
+
+	/**
+	 * Read ws frame length.
+	 *
+	 * @return the int
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	@Benchmark
+	public int readWsFrameLength() throws IOException {
+		return encoded.rewind().readWsFrameLength();
+	}
+
+	/**
+	 * Write ws frame header.
+	 *
+	 * @return the int
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	@Benchmark
+	public int writeWsFrameHeader() throws IOException {
+		final ZippyBuffer buffer = writer.rewind();
+		buffer.writeWsFrameHeader(frame);
+		return buffer.position();
+	}
+
+	/**
+	 * Read ws frame header.
+	 *
+	 * @return the long
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	@Benchmark
+	public long readWsFrameHeader() throws IOException {
+		header.rewind().readWsFrameHeader(frame);
+		return frame.getPayloadLength();
+	}
+
+	/**
+	 * Mask ws payload.
+	 *
+	 * @return the int
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	@Benchmark
+	public int maskWsPayload() throws IOException {
+		return payload.rewind().maskWsPayload(length, frame.getMaskingKey());
+	}
+
+}
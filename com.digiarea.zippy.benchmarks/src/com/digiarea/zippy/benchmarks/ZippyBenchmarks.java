@@ -0,0 +1,57 @@
+/*******************************************************************************
+ * Copyright (c) 2011 - 2014 DigiArea, Inc. and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     DigiArea, Inc. - initial API and implementation
+ *******************************************************************************/
+package com.digiarea.zippy.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the zippy benchmarks with the allocation profiler and records the
+ * results as JSON, the baseline later optimizations are compared against.
+ * <p>
+ * Usage: {@code ZippyBenchmarks [regexp [result file]]}, by default all
+ * benchmarks of this package are run and stored in {@code zippy-jmh.json}.
+ */
+public final class ZippyBenchmarks {
+
+	/** The default result file. */
+	public static final String DEFAULT_RESULT = "zippy-jmh.json";
+
+	/**
+	 * Instantiates a new zippy benchmarks.
+	 */
+	private ZippyBenchmarks() {
+		super();
+	}
+
+	/**
+	 * The main method.
+	 *
+	 * @param args
+	 *            the benchmark regexp and the result file, both optional
+	 * @throws RunnerException
+	 *             the runner exception
+	 */
+	public static void main(final String[] args) throws RunnerException {
+		final String include = args.length > 0 ? args[0]
+				: ZippyBenchmarks.class.getPackage().getName() + ".*";
+		final String result = args.length > 1 ? args[1] : DEFAULT_RESULT;
+		final Options options = new OptionsBuilder().include(include)
+				.addProfiler(GCProfiler.class)
+				.resultFormat(ResultFormatType.JSON).result(result).build();
+		new Runner(options).run();
+	}
+
+}
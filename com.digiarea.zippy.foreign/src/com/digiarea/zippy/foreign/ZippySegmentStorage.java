@@ -0,0 +1,116 @@
+/*******************************************************************************
+ * Copyright (c) 2011 - 2014 DigiArea, Inc. and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     DigiArea, Inc. - initial API and implementation
+ *******************************************************************************/
+package com.digiarea.zippy.foreign;
+
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import com.digiarea.zippy.ZippyStorage;
+
+/**
+ * The {@link ZippyStorage} backed by a {@link MemorySegment}, e.g. an
+ * off-heap arena allocation or a memory mapped file region. Lives in its own
+ * bundle as the foreign memory API requires Java 22.
+ */
+public final class ZippySegmentStorage extends ZippyStorage {
+
+	/** The little-endian unaligned int layout. */
+	private static final ValueLayout.OfInt INT_LE = ValueLayout.JAVA_INT_UNALIGNED
+			.withOrder(ByteOrder.LITTLE_ENDIAN);
+
+	/** The little-endian unaligned long layout. */
+	private static final ValueLayout.OfLong LONG_LE = ValueLayout.JAVA_LONG_UNALIGNED
+			.withOrder(ByteOrder.LITTLE_ENDIAN);
+
+	/** The segment. */
+	private final MemorySegment segment;
+
+	/**
+	 * Instantiates a new zippy segment storage.
+	 *
+	 * @param segment
+	 *            the segment, at most {@link Integer#MAX_VALUE} bytes long
+	 */
+	public ZippySegmentStorage(final MemorySegment segment) {
+		super();
+		if (segment.byteSize() > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException(
+					"ZippySegmentStorage segment is too large.");
+		}
+		this.segment = segment;
+	}
+
+	/**
+	 * Gets the segment.
+	 *
+	 * @return the segment
+	 */
+	public MemorySegment getSegment() {
+		return segment;
+	}
+
+	@Override
+	public int capacity() {
+		return (int) segment.byteSize();
+	}
+
+	@Override
+	public byte get(final int index) {
+		return segment.get(ValueLayout.JAVA_BYTE, index);
+	}
+
+	@Override
+	public void put(final int index, final byte value) {
+		segment.set(ValueLayout.JAVA_BYTE, index, value);
+	}
+
+	@Override
+	public void get(final int index, final byte[] dst, final int offset,
+			final int length) {
+		MemorySegment.copy(segment, ValueLayout.JAVA_BYTE, index, dst, offset,
+				length);
+	}
+
+	@Override
+	public void put(final int index, final byte[] src, final int offset,
+			final int length) {
+		MemorySegment.copy(src, offset, segment, ValueLayout.JAVA_BYTE, index,
+				length);
+	}
+
+	@Override
+	public int getIntLE(final int index) {
+		return segment.get(INT_LE, index);
+	}
+
+	@Override
+	public long getLongLE(final int index) {
+		return segment.get(LONG_LE, index);
+	}
+
+	@Override
+	public void putIntLE(final int index, final int value) {
+		segment.set(INT_LE, index, value);
+	}
+
+	@Override
+	public void putLongLE(final int index, final long value) {
+		segment.set(LONG_LE, index, value);
+	}
+
+	@Override
+	public ByteBuffer toByteBuffer(final int index, final int length) {
+		return segment.asSlice(index, length).asByteBuffer();
+	}
+
+}
@@ -0,0 +1,187 @@
+/*******************************************************************************
+ * Copyright (c) 2011 - 2014 DigiArea, Inc. and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     DigiArea, Inc. - initial API and implementation
+ *******************************************************************************/
+package com.digiarea.zippy.vector;
+
+import java.io.IOException;
+
+import com.digiarea.zippy.ZippyStorage;
+import com.digiarea.zippy.ZippyVarIntDecoder;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * The {@link ZippyVarIntDecoder} classifying a whole vector of bytes at once
+ * with the Vector API: one compare finds the last byte of every VarInt in the
+ * block, a block of single-byte values is widened straight into the
+ * destination array and the other values are unpacked word by word. Lives in
+ * a fragment of the zippy bundle as the API requires Java 17 and the
+ * {@code jdk.incubator.vector} module, without which
+ * {@link ZippyVarIntDecoder#getInstance()} keeps the scalar decoder.
+ */
+public final class ZippyVectorVarIntDecoder extends ZippyVarIntDecoder {
+
+	/** The byte species, at least 16 lanes so a block always ends a VarInt. */
+	private static final VectorSpecies<Byte> SPECIES =
+			ByteVector.SPECIES_PREFERRED.length() >= 16
+					? ByteVector.SPECIES_PREFERRED : ByteVector.SPECIES_128;
+
+	/** The int species of the same shape. */
+	private static final VectorSpecies<Integer> INT_SPECIES =
+			IntVector.SPECIES_PREFERRED.withShape(SPECIES.vectorShape());
+
+	/** The long species of the same shape. */
+	private static final VectorSpecies<Long> LONG_SPECIES =
+			LongVector.SPECIES_PREFERRED.withShape(SPECIES.vectorShape());
+
+	/** The number of bytes in a block. */
+	private static final int LANES = SPECIES.length();
+
+	/** The stop mask of a block of single-byte values. */
+	private static final long ALL_STOPS = LANES == 64 ? -1L
+			: (1L << LANES) - 1;
+
+	/** The bytes needed past a block start to load any value as a word. */
+	private static final int SLACK = LANES + 8;
+
+	/**
+	 * Instantiates a new zippy vector var int decoder.
+	 */
+	public ZippyVectorVarIntDecoder() {
+		super();
+	}
+
+	@Override
+	public boolean isVectorized() {
+		return true;
+	}
+
+	@Override
+	public int decodeInts(final ZippyStorage storage, int index,
+			final int limit, final int[] dst, final int offset,
+			final int length) throws IOException {
+		if (!storage.hasArray()) {
+			return super.decodeInts(storage, index, limit, dst, offset,
+					length);
+		}
+		final byte[] array = storage.array();
+		final int end = offset + length;
+		int i = offset;
+		while (i < end && limit - index >= SLACK) {
+			final ByteVector block = ByteVector.fromArray(SPECIES, array,
+					index);
+			long stops = block.compare(VectorOperators.GE, (byte) 0).toLong();
+			if (stops == ALL_STOPS && end - i >= LANES) {
+				final int parts = LANES / INT_SPECIES.length();
+				for (int part = 0; part < parts; part++) {
+					block.convertShape(VectorOperators.B2I, INT_SPECIES, part)
+							.reinterpretAsInts()
+							.intoArray(dst, i + part * INT_SPECIES.length());
+				}
+				i += LANES;
+				index += LANES;
+				continue;
+			}
+			int start = 0;
+			while (stops != 0 && i < end) {
+				final int stop = Long.numberOfTrailingZeros(stops);
+				stops &= stops - 1;
+				dst[i++] = (int) value(storage, index + start,
+						stop - start + 1);
+				start = stop + 1;
+			}
+			if (start == 0) {
+				throw new IOException(
+						"ZippyBuffer encountered a malformed varint.");
+			}
+			index += start;
+		}
+		return super.decodeInts(storage, index, limit, dst, i, end - i);
+	}
+
+	@Override
+	public int decodeLongs(final ZippyStorage storage, int index,
+			final int limit, final long[] dst, final int offset,
+			final int length) throws IOException {
+		if (!storage.hasArray()) {
+			return super.decodeLongs(storage, index, limit, dst, offset,
+					length);
+		}
+		final byte[] array = storage.array();
+		final int end = offset + length;
+		int i = offset;
+		while (i < end && limit - index >= SLACK) {
+			final ByteVector block = ByteVector.fromArray(SPECIES, array,
+					index);
+			long stops = block.compare(VectorOperators.GE, (byte) 0).toLong();
+			if (stops == ALL_STOPS && end - i >= LANES) {
+				final int parts = LANES / LONG_SPECIES.length();
+				for (int part = 0; part < parts; part++) {
+					block.convertShape(VectorOperators.B2L, LONG_SPECIES, part)
+							.reinterpretAsLongs()
+							.intoArray(dst, i + part * LONG_SPECIES.length());
+				}
+				i += LANES;
+				index += LANES;
+				continue;
+			}
+			int start = 0;
+			while (stops != 0 && i < end) {
+				final int stop = Long.numberOfTrailingZeros(stops);
+				stops &= stops - 1;
+				dst[i++] = value(storage, index + start, stop - start + 1);
+				start = stop + 1;
+			}
+			if (start == 0) {
+				throw new IOException(
+						"ZippyBuffer encountered a malformed varint.");
+			}
+			index += start;
+		}
+		return super.decodeLongs(storage, index, limit, dst, i, end - i);
+	}
+
+	/**
+	 * Decodes one VarInt whose size is known, at least eight readable bytes
+	 * follow its first one.
+	 * 
+	 * @param storage
+	 *            the storage
+	 * @param index
+	 *            the index of the VarInt
+	 * @param size
+	 *            the size of the VarInt
+	 * @return the value
+	 * @throws IOException
+	 *             if the VarInt is too long.
+	 */
+	private static long value(final ZippyStorage storage, final int index,
+			final int size) throws IOException {
+		final long word = storage.getLongLE(index);
+		if (size <= 8) {
+			return compact(word & (-1L >>> (64 - (size << 3))));
+		}
+		if (size > MAX_VARINT_SIZE) {
+			throw new IOException(
+					"ZippyBuffer encountered a malformed varint.");
+		}
+		long result = compact(word)
+				| ((long) (storage.get(index + 8) & 0x7F) << 56);
+		if (size == MAX_VARINT_SIZE) {
+			result |= (long) storage.get(index + 9) << 63;
+		}
+		return result;
+	}
+
+}
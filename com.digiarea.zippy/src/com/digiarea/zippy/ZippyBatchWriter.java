@@ -0,0 +1,368 @@
+/*******************************************************************************
+ * Copyright (c) 2011 - 2014 DigiArea, Inc. and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     DigiArea, Inc. - initial API and implementation
+ *******************************************************************************/
+package com.digiarea.zippy;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Coalesces the packets of one connection into batches written with a single
+ * gathering write. A batch is flushed as soon as it reaches the size budget,
+ * or once its first packet waited for the delay budget; the selector loop
+ * calls {@link #flushIfDue()} and may use {@link #getDelay()} as its select
+ * timeout.
+ * <p>
+ * With a frame template every batch goes out as one RFC 6455 frame whose
+ * payload is the concatenation of the packets, so packets must then be
+ * self-delimiting, e.g. written with a length prefix. With a masked template,
+ * i.e. on the client side, every batch gets a fresh random masking key and the
+ * queued packets are masked in place when the batch is flushed. With a
+ * {@link ZippyDeflate} as well, a batch reaching its threshold is compressed
+ * into a frame carrying the {@link ZippyWsFrame#RSV1} bit, smaller batches
+ * go out raw without it.
+ * <p>
+ * Queued packets must not be modified until they are flushed; segmented
+ * packets are released to their pool once written. A batch writer belongs to
+ * a single connection and is not thread-safe.
+ */
+public final class ZippyBatchWriter {
+
+	/** The default size budget. */
+	public static final int DEFAULT_MAX_BYTES = 64 * 1024;
+
+	/** The default delay budget, in nanoseconds. */
+	public static final long DEFAULT_MAX_DELAY = 1000000L;
+
+	/** The channel. */
+	private final GatheringByteChannel channel;
+
+	/** The size budget. */
+	private final int maxBytes;
+
+	/** The delay budget, in nanoseconds. */
+	private final long maxDelay;
+
+	/** The frame template, {@code null} to write the packets raw. */
+	private final ZippyWsFrame frame;
+
+	/** The frame header. */
+	private final ZippyBuffer header;
+
+	/** The source of masking keys, {@code null} if the frames are unmasked. */
+	private final SecureRandom random;
+
+	/** The compression, {@code null} if the batches are not compressed. */
+	private final ZippyDeflate deflate;
+
+	/** The RSV bits of the template, RSV1 excluded. */
+	private final int rsv;
+
+	/** The pool of the compressed batches, {@code null} if not compressed. */
+	private final ZippySegmentPool pool;
+
+	/** The queued packets. */
+	private final List<ZippyBuffer> queued = new ArrayList<ZippyBuffer>();
+
+	/** The byte buffers of the queued packets. */
+	private final List<ByteBuffer> buffers = new ArrayList<ByteBuffer>();
+
+	/** The number of queued bytes. */
+	private long queuedBytes;
+
+	/** The time the queued batch is due, in nanoseconds. */
+	private long deadline;
+
+	/** The packets of the batch being written. */
+	private final List<ZippyBuffer> written = new ArrayList<ZippyBuffer>();
+
+	/** The byte buffers of the batch being written, {@code null} if none. */
+	private ByteBuffer[] writing;
+
+	/** The index of the first byte buffer not yet written. */
+	private int writingIndex;
+
+	/**
+	 * Instantiates a new zippy batch writer with the default budgets, writing
+	 * the packets raw.
+	 * 
+	 * @param channel
+	 *            the channel
+	 */
+	public ZippyBatchWriter(final GatheringByteChannel channel) {
+		this(channel, DEFAULT_MAX_BYTES, DEFAULT_MAX_DELAY, null);
+	}
+
+	/**
+	 * Instantiates a new zippy batch writer.
+	 * 
+	 * @param channel
+	 *            the channel
+	 * @param maxBytes
+	 *            the number of queued bytes triggering a flush
+	 * @param maxDelay
+	 *            the time in nanoseconds a packet may wait for a flush
+	 * @param frame
+	 *            the frame template for the batches, whose payload length is
+	 *            set on every flush, or {@code null} to write the packets raw
+	 */
+	public ZippyBatchWriter(final GatheringByteChannel channel,
+			final int maxBytes, final long maxDelay, final ZippyWsFrame frame) {
+		this(channel, maxBytes, maxDelay, frame, null);
+	}
+
+	/**
+	 * Instantiates a new zippy batch writer compressing the batches that reach
+	 * the threshold of a deflate.
+	 * 
+	 * @param channel
+	 *            the channel
+	 * @param maxBytes
+	 *            the number of queued bytes triggering a flush
+	 * @param maxDelay
+	 *            the time in nanoseconds a packet may wait for a flush
+	 * @param frame
+	 *            the frame template for the batches, whose payload length and
+	 *            RSV1 bit are set on every flush, or {@code null} to write the
+	 *            packets raw
+	 * @param deflate
+	 *            the compression, or {@code null} to never compress; only
+	 *            used with a frame template
+	 */
+	public ZippyBatchWriter(final GatheringByteChannel channel,
+			final int maxBytes, final long maxDelay, final ZippyWsFrame frame,
+			final ZippyDeflate deflate) {
+		super();
+		this.channel = channel;
+		this.maxBytes = maxBytes;
+		this.maxDelay = maxDelay;
+		this.frame = frame;
+		header = frame == null ? null : new ZippyBuffer(ByteBuffer
+				.allocate(14));
+		random = frame != null && frame.isMasked() ? new SecureRandom() : null;
+		this.deflate = frame == null ? null : deflate;
+		rsv = frame == null ? 0 : frame.getRsv() & ~ZippyWsFrame.RSV1;
+		pool = this.deflate == null ? null : new ZippySegmentPool();
+	}
+
+	/**
+	 * Queues a packet, flushing the batch if it reached the size budget.
+	 * 
+	 * @param packet
+	 *            the packet, whose bytes up to its position are written
+	 * @return true, if nothing is left pending
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public boolean write(final ZippyBuffer packet) throws IOException {
+		if (queued.isEmpty()) {
+			deadline = System.nanoTime() + maxDelay;
+		}
+		queued.add(packet);
+		final List<ZippySegment> segments = packet.getSegments();
+		for (int i = 0; i < segments.size(); i++) {
+			final ZippySegment segment = segments.get(i);
+			buffers.add(segment.toByteBuffer());
+			queuedBytes += segment.getLength();
+		}
+		if (queuedBytes >= maxBytes) {
+			return flush();
+		}
+		return !hasPending();
+	}
+
+	/**
+	 * Flushes the queued batch if its delay budget is exhausted, and goes on
+	 * with a batch left by a partial write.
+	 * 
+	 * @return true, if nothing is left pending
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public boolean flushIfDue() throws IOException {
+		if (!queued.isEmpty() && System.nanoTime() - deadline >= 0) {
+			return flush();
+		}
+		if (writing != null) {
+			writeBatch();
+		}
+		return !hasPending();
+	}
+
+	/**
+	 * Flushes everything queued so far. When the channel does not accept all
+	 * bytes, the rest is kept and written by the next flush, typically once the
+	 * channel is writable again.
+	 * 
+	 * @return true, if nothing is left pending
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public boolean flush() throws IOException {
+		if (writing != null && !writeBatch()) {
+			return false;
+		}
+		if (queued.isEmpty()) {
+			return true;
+		}
+		startBatch();
+		return writeBatch();
+	}
+
+	/**
+	 * Moves the queued packets to the batch being written.
+	 * 
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	private void startBatch() throws IOException {
+		final ZippyBuffer compressed = compressBatch();
+		List<ByteBuffer> payload = buffers;
+		int index = 0;
+		if (frame == null) {
+			writing = new ByteBuffer[buffers.size()];
+		} else {
+			if (compressed == null) {
+				frame.setRsv(rsv);
+				frame.setPayloadLength(queuedBytes);
+			} else {
+				frame.setRsv(rsv | ZippyWsFrame.RSV1);
+				frame.setPayloadLength(compressed.getWrittenSize());
+				final List<ZippySegment> segments = compressed.getSegments();
+				payload = new ArrayList<ByteBuffer>(segments.size());
+				for (int i = 0; i < segments.size(); i++) {
+					payload.add(segments.get(i).toByteBuffer());
+				}
+				written.add(compressed);
+			}
+			if (random != null) {
+				maskBatch(compressed == null ? queued : Collections
+						.singletonList(compressed));
+			}
+			writing = new ByteBuffer[payload.size() + 1];
+			header.rewind();
+			header.writeWsFrameHeader(frame);
+			writing[index++] = header.getStorage().toByteBuffer(0,
+					header.position());
+		}
+		for (int i = 0; i < payload.size(); i++) {
+			writing[index++] = payload.get(i);
+		}
+		writingIndex = 0;
+		written.addAll(queued);
+		queued.clear();
+		buffers.clear();
+		queuedBytes = 0;
+	}
+
+	/**
+	 * Compresses the queued packets if they reach the threshold.
+	 * 
+	 * @return the compressed batch, {@code null} if the batch stays raw
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	private ZippyBuffer compressBatch() throws IOException {
+		if (deflate == null || queuedBytes < deflate.getThreshold()) {
+			return null;
+		}
+		final List<ZippySegment> segments = new ArrayList<ZippySegment>();
+		for (int i = 0; i < queued.size(); i++) {
+			segments.addAll(queued.get(i).getSegments());
+		}
+		final ZippyBuffer compressed = new ZippyBuffer(pool);
+		if (!deflate.deflate(segments, compressed)) {
+			compressed.release();
+			return null;
+		}
+		return compressed;
+	}
+
+	/**
+	 * Masks the payload buffers in place with a new masking key, carrying the
+	 * key phase from one buffer to the next as they form a single payload.
+	 * 
+	 * @param payload
+	 *            the buffers of the payload
+	 */
+	private void maskBatch(final List<ZippyBuffer> payload) {
+		int maskingKey = random.nextInt();
+		frame.setMaskingKey(maskingKey);
+		for (int i = 0; i < payload.size(); i++) {
+			final List<ZippySegment> segments = payload.get(i).getSegments();
+			for (int j = 0; j < segments.size(); j++) {
+				final ZippySegment segment = segments.get(j);
+				maskingKey = ZippyWsFrame.mask(segment.getStorage(),
+						segment.getOffset(), segment.getLength(), maskingKey);
+			}
+		}
+	}
+
+	/**
+	 * Writes as much of the current batch as the channel accepts.
+	 * 
+	 * @return true, if the batch is completely written
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	private boolean writeBatch() throws IOException {
+		while (writingIndex < writing.length) {
+			if (!writing[writingIndex].hasRemaining()) {
+				writingIndex++;
+			} else if (channel.write(writing, writingIndex, writing.length
+					- writingIndex) == 0) {
+				return false;
+			}
+		}
+		for (int i = 0; i < written.size(); i++) {
+			written.get(i).release();
+		}
+		written.clear();
+		writing = null;
+		return true;
+	}
+
+	/**
+	 * Checks for queued packets or a partially written batch.
+	 * 
+	 * @return true, if something is pending
+	 */
+	public boolean hasPending() {
+		return writing != null || !queued.isEmpty();
+	}
+
+	/**
+	 * Gets the number of queued bytes, not counting a partially written batch.
+	 * 
+	 * @return the queued bytes
+	 */
+	public long getQueuedBytes() {
+		return queuedBytes;
+	}
+
+	/**
+	 * Gets the time left until the queued batch is due.
+	 * 
+	 * @return the delay in nanoseconds, zero if the batch is already due and
+	 *         {@link Long#MAX_VALUE} if nothing is queued
+	 */
+	public long getDelay() {
+		if (queued.isEmpty()) {
+			return Long.MAX_VALUE;
+		}
+		return Math.max(0, deadline - System.nanoTime());
+	}
+
+}
@@ -37,18 +37,73 @@
 package com.digiarea.zippy;
 
 import java.io.IOException;
-import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
 /**
  * The Class ZippyBuffer.
+ * <p>
+ * The bytes live in a {@link ZippyStorage}: a heap array, a (direct)
+ * {@link ByteBuffer} or any other storage implementation, all of them sharing
+ * the same reader, writer and sizer API.
+ * <p>
+ * A buffer created over a {@link ZippySegmentPool} works as a segmented
+ * writer: when the current segment is full the writer seals it and continues
+ * in a fresh segment taken from the pool instead of running out of space. In
+ * this mode {@link #position()}, {@link #limit()}, {@link #mark()} and
+ * {@link #reset()} refer to the current segment only, and the finished output
+ * is available through {@link #getSegments()}.
+ * <p>
+ * A reader over a {@link ZippyCompositeStorage} reads a message received in
+ * several chunks, or the segments of a segmented writer, without copying them
+ * into one array first.
+ * <p>
+ * Sectors are written either as bare sector numbers, see
+ * {@link #writeSector(int)}, or as tags carrying the wire type of the value,
+ * see {@link #writeTag(int, int)}, which lets a reader skip the sectors it
+ * does not know with {@link #skipSector(int)}.
  */
 public final class ZippyBuffer {
 
-	/** The buffer. */
-	private final byte[] buffer;
+	/** The wire type of VarInt values, signed or not, and booleans. */
+	public static final int WIRE_VARINT = 0;
+
+	/** The wire type of 64-bit fixed values, fixed longs and doubles. */
+	public static final int WIRE_FIXED64 = 1;
+
+	/**
+	 * The wire type of length-prefixed values: strings, bytes and nested
+	 * packets. Packed arrays are prefixed with their count, not their length,
+	 * and must be nested to be skippable.
+	 */
+	public static final int WIRE_LENGTH_DELIMITED = 2;
+
+	/** The wire type of 32-bit fixed values, fixed ints and floats. */
+	public static final int WIRE_FIXED32 = 5;
+
+	/** The number of tag bits holding the wire type. */
+	private static final int TAG_TYPE_BITS = 3;
+
+	/** The tag bits holding the wire type. */
+	private static final int TAG_TYPE_MASK = (1 << TAG_TYPE_BITS) - 1;
+
+	/** The bulk VarInt decoder. */
+	private static final ZippyVarIntDecoder DECODER = ZippyVarIntDecoder
+			.getInstance();
+
+	/** The empty segment. */
+	private static final ZippyStorage EMPTY = new ZippyHeapStorage(new byte[0]);
+
+	/** The storage. */
+	private ZippyStorage storage;
+
+	/** The offset. */
+	private final int offset;
 
 	/** The limit. */
-	private final int limit;
+	private int limit;
 
 	/** The position. */
 	private int position;
@@ -56,6 +111,15 @@ public final class ZippyBuffer {
 	/** The mark. */
 	private int mark;
 
+	/** The segment pool, {@code null} unless it is a segmented writer. */
+	private final ZippySegmentPool pool;
+
+	/** The sealed segments of a segmented writer. */
+	private final List<ZippySegment> segments;
+
+	/** The number of bytes in the sealed segments. */
+	private int sealedSize;
+
 	/**
 	 * Instantiates a new zippy buffer reader.
 	 * 
@@ -77,19 +141,103 @@ public final class ZippyBuffer {
 	 *            the length
 	 */
 	public ZippyBuffer(final byte[] buffer, final int offset, final int length) {
+		this(new ZippyHeapStorage(buffer), offset, length);
+	}
+
+	/**
+	 * Instantiates a new zippy buffer over the remaining bytes of a byte
+	 * buffer, from its position to its limit. The position of the byte buffer
+	 * is not changed.
+	 * 
+	 * @param buffer
+	 *            the buffer
+	 */
+	public ZippyBuffer(final ByteBuffer buffer) {
+		this(buffer.hasArray() ? new ZippyHeapStorage(buffer.array())
+				: new ZippyDirectStorage(buffer), buffer.hasArray() ? buffer
+				.arrayOffset() + buffer.position() : buffer.position(), buffer
+				.remaining());
+	}
+
+	/**
+	 * Instantiates a new zippy buffer over a whole storage.
+	 * 
+	 * @param storage
+	 *            the storage
+	 */
+	public ZippyBuffer(final ZippyStorage storage) {
+		this(storage, 0, storage.capacity());
+	}
+
+	/**
+	 * Instantiates a new zippy buffer over a storage.
+	 * 
+	 * @param storage
+	 *            the storage
+	 * @param offset
+	 *            the offset
+	 * @param length
+	 *            the length
+	 */
+	public ZippyBuffer(final ZippyStorage storage, final int offset,
+			final int length) {
 		super();
-		this.buffer = buffer;
+		this.storage = storage;
+		this.offset = offset;
 		limit = offset + length;
 		position = offset;
+		mark = offset;
+		pool = null;
+		segments = null;
+	}
+
+	/**
+	 * Instantiates a new zippy buffer reader over chunks read as one range of
+	 * bytes, e.g. the segments of a segmented writer.
+	 * 
+	 * @param chunks
+	 *            the chunks
+	 * @see ZippyCompositeStorage
+	 */
+	public ZippyBuffer(final List<ZippySegment> chunks) {
+		this(new ZippyCompositeStorage(chunks));
+	}
+
+	/**
+	 * Instantiates a new segmented zippy buffer writer that grows on demand
+	 * with segments taken from the pool.
+	 * 
+	 * @param pool
+	 *            the segment pool
+	 */
+	public ZippyBuffer(final ZippySegmentPool pool) {
+		super();
+		this.pool = pool;
+		segments = new ArrayList<ZippySegment>();
+		storage = new ZippyHeapStorage(pool.acquire());
+		offset = 0;
+		limit = storage.capacity();
+		position = 0;
 	}
 
 	/**
 	 * Gets the buffer.
 	 * 
 	 * @return the buffer
+	 * @throws UnsupportedOperationException
+	 *             if the storage is not backed by an array.
 	 */
 	public byte[] getBuffer() {
-		return buffer;
+		return storage.array();
+	}
+
+	/**
+	 * Gets the storage.
+	 * 
+	 * @return the storage
+	 */
+	public ZippyStorage getStorage() {
+		return storage;
 	}
 
 	// ------------------------ READER --------------------------
@@ -147,6 +295,46 @@ public final class ZippyBuffer {
 		}
 	}
 
+	/**
+	 * Reads an RFC 6455 WebSocket frame header. Nothing is consumed unless the
+	 * whole header is available.
+	 * 
+	 * @param frame
+	 *            the frame to fill
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public void readWsFrameHeader(final ZippyWsFrame frame) throws IOException {
+		final int size = ZippyWsFrame.readHeader(storage, position, limit
+				- position, frame);
+		if (size == 0) {
+			// out of space
+			throw new IOException("ZippyBuffer ran out of space.");
+		}
+		position += size;
+	}
+
+	/**
+	 * Masks or unmasks the next bytes of a WebSocket payload in place, a
+	 * 64-bit word at a time. The position is left unchanged.
+	 * 
+	 * @param length
+	 *            the number of bytes
+	 * @param maskingKey
+	 *            the masking key, see {@link ZippyWsFrame#getMaskingKey()}
+	 * @return the masking key rotated for the bytes following the range
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public int maskWsPayload(final int length, final int maskingKey)
+			throws IOException {
+		if (length < 0 || length > limit - position) {
+			// out of space
+			throw new IOException("ZippyBuffer ran out of space.");
+		}
+		return ZippyWsFrame.mask(storage, position, length, maskingKey);
+	}
+
 	/**
 	 * Read a {@code double} field value from the stream.
 	 * 
@@ -321,15 +509,16 @@ public final class ZippyBuffer {
 	 */
 	public String readString() throws IOException {
 		final int size = readRawVarInt();
-		if (size <= (limit - position) && size > 0) {
+		if (size <= (limit - position) && size > 0 && storage.hasArray()) {
 			// Fast path: We already have the bytes in a contiguous buffer, so
 			// just copy directly from it.
-			final String result = new String(buffer, position, size, "UTF-8");
+			final String result = new String(storage.array(), position, size,
+					ZippyUtf8.UTF_8);
 			position += size;
 			return result;
 		} else {
 			// Slow path: Build a byte array first then copy it.
-			return new String(readRawBytes(size), "UTF-8");
+			return new String(readRawBytes(size), ZippyUtf8.UTF_8);
 		}
 	}
 
@@ -345,6 +534,54 @@ public final class ZippyBuffer {
 		return readRawBytes(size);
 	}
 
+	/**
+	 * Read a {@code string} field value as a view of this buffer: the bytes are
+	 * neither copied nor decoded until needed.
+	 * 
+	 * @return the zippy string
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public ZippyString readStringView() throws IOException {
+		final int size = readRawVarInt();
+		if (size < 0 || size > limit - position) {
+			// out of space
+			throw new IOException("ZippyBuffer ran out of space.");
+		}
+		final ZippyString result = new ZippyString(storage, position, size);
+		position += size;
+		return result;
+	}
+
+	/**
+	 * Read a {@code bytes} field value as a view of this buffer, without
+	 * copying the bytes.
+	 * 
+	 * @return the zippy buffer
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public ZippyBuffer readBytesView() throws IOException {
+		final int size = readRawVarInt();
+		return readRawBytesView(size);
+	}
+
+	/**
+	 * Read the length of a length-prefixed value, e.g. a nested packet, and
+	 * return the index the value ends at.
+	 * 
+	 * @return the limit of the value
+	 * @throws IOException
+	 *             if the value does not fit in the buffer.
+	 */
+	public int readLimit() throws IOException {
+		final int size = readRawVarInt();
+		if (size < 0 || size > limit - position) {
+			throw new IOException("ZippyBuffer ran out of space.");
+		}
+		return position + size;
+	}
+
 	// -------------------------------------------------------------------
 
 	/**
@@ -356,6 +593,27 @@ public final class ZippyBuffer {
 	 *             Signals that an I/O exception has occurred.
 	 */
 	public int readRawVarInt() throws IOException {
+		if (limit - position >= MAX_VARINT64_SIZE) {
+			// Fast path: no bounds check needed up to the longest encoding.
+			final long word = storage.getLongLE(position);
+			final long stops = ~word & VARINT_STOP_BITS;
+			if (stops != 0) {
+				final int bits = Long.numberOfTrailingZeros(stops) + 1;
+				position += bits >>> 3;
+				return (int) ZippyVarIntDecoder.compact(word
+						& (-1L >>> (64 - bits)));
+			}
+			// A sign-extended negative value, only the tail is left to find.
+			if (storage.get(position + 8) >= 0) {
+				position += 9;
+			} else if (storage.get(position + 9) >= 0) {
+				position += MAX_VARINT64_SIZE;
+			} else {
+				throw new IOException(
+						"ZippyBuffer encountered a malformed varint.");
+			}
+			return (int) ZippyVarIntDecoder.compact(word);
+		}
 		byte tmp = readRawByte();
 		if (tmp >= 0) {
 			return tmp;
@@ -398,6 +656,30 @@ public final class ZippyBuffer {
 	 *             Signals that an I/O exception has occurred.
 	 */
 	public long readRawVarLong() throws IOException {
+		if (limit - position >= MAX_VARINT64_SIZE) {
+			// Fast path: no bounds check needed up to the longest encoding.
+			final long word = storage.getLongLE(position);
+			final long stops = ~word & VARINT_STOP_BITS;
+			if (stops != 0) {
+				final int bits = Long.numberOfTrailingZeros(stops) + 1;
+				position += bits >>> 3;
+				return ZippyVarIntDecoder.compact(word & (-1L >>> (64 - bits)));
+			}
+			long result = ZippyVarIntDecoder.compact(word);
+			final byte b9 = storage.get(position + 8);
+			result |= (long) (b9 & 0x7F) << 56;
+			if (b9 >= 0) {
+				position += 9;
+				return result;
+			}
+			final byte b10 = storage.get(position + 9);
+			if (b10 < 0) {
+				throw new IOException(
+						"ZippyBuffer encountered a malformed varint.");
+			}
+			position += MAX_VARINT64_SIZE;
+			return result | (long) b10 << 63;
+		}
 		int shift = 0;
 		long result = 0;
 		while (shift < 64) {
@@ -419,6 +701,12 @@ public final class ZippyBuffer {
 	 *             Signals that an I/O exception has occurred.
 	 */
 	public int readRawLittleEndianInt() throws IOException {
+		if (limit - position >= LITTLE_ENDIAN_32_SIZE) {
+			// Fast path: one bounds check and one word load.
+			final int result = storage.getIntLE(position);
+			position += LITTLE_ENDIAN_32_SIZE;
+			return result;
+		}
 		final byte b1 = readRawByte();
 		final byte b2 = readRawByte();
 		final byte b3 = readRawByte();
@@ -435,6 +723,12 @@ public final class ZippyBuffer {
 	 *             Signals that an I/O exception has occurred.
 	 */
 	public long readRawLittleEndianLong() throws IOException {
+		if (limit - position >= LITTLE_ENDIAN_64_SIZE) {
+			// Fast path: one bounds check and one word load.
+			final long result = storage.getLongLE(position);
+			position += LITTLE_ENDIAN_64_SIZE;
+			return result;
+		}
 		final byte b1 = readRawByte();
 		final byte b2 = readRawByte();
 		final byte b3 = readRawByte();
@@ -491,7 +785,7 @@ public final class ZippyBuffer {
 			// out of space
 			throw new IOException("ZippyBuffer ran out of space.");
 		}
-		return buffer[position++];
+		return storage.get(position++);
 	}
 
 	/**
@@ -507,7 +801,7 @@ public final class ZippyBuffer {
 		if (size <= limit - position) {
 			// We have all the bytes we need already.
 			final byte[] bytes = new byte[size];
-			System.arraycopy(buffer, position, bytes, 0, size);
+			storage.get(position, bytes, 0, size);
 			position += size;
 			return bytes;
 		} else {
@@ -516,6 +810,27 @@ public final class ZippyBuffer {
 		}
 	}
 
+	/**
+	 * Read a fixed size of bytes as a new buffer sharing the storage of this
+	 * one. The view is only valid as long as the storage is not reused.
+	 * 
+	 * @param size
+	 *            the size
+	 * @return the zippy buffer
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public ZippyBuffer readRawBytesView(final int size) throws IOException {
+		if (size >= 0 && size <= limit - position) {
+			final ZippyBuffer result = new ZippyBuffer(storage, position, size);
+			position += size;
+			return result;
+		} else {
+			// out of space
+			throw new IOException("ZippyBuffer ran out of space.");
+		}
+	}
+
 	/**
 	 * Attempt to read a sector, returning zero if we have reached EOF. Zippy
 	 * protocol packet parsers use this to read sectors, since a zippy protocol
@@ -534,545 +849,2038 @@ public final class ZippyBuffer {
 	}
 
 	/**
-	 * Checks if buffer is empty.
+	 * Attempt to read a tag, returning zero if we have reached EOF.
 	 * 
-	 * @return true, if is empty
+	 * @return the tag, see {@link #getTagSector(int)} and
+	 *         {@link #getTagWireType(int)}
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
 	 */
-	public boolean isEmpty() {
-		return position == limit;
+	public int readTag() throws IOException {
+		if (isEmpty()) {
+			return 0;
+		}
+		final int tag = readRawVarInt();
+		if (getTagSector(tag) == 0) {
+			throw new IOException("ZippyBuffer encountered an invalid tag.");
+		}
+		return tag;
 	}
 
-	// ------------------------ SIZER --------------------------
+	/**
+	 * Skips the value of a tagged sector.
+	 * 
+	 * @param tag
+	 *            the tag
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public void skipSector(final int tag) throws IOException {
+		skipValue(getTagWireType(tag));
+	}
 
 	/**
-	 * Compute the number of bytes that would be needed to encode WebSocket
-	 * frame length
+	 * Skips a value of the given wire type without decoding it.
 	 * 
-	 * @param length
-	 *            the length
+	 * @param wireType
+	 *            the wire type
 	 * @throws IOException
 	 *             Signals that an I/O exception has occurred.
 	 */
-	public int sizeOfWsFrameLength(byte type, int length) throws IOException {
-		// one bite for the type
-		int size = 1;
-		// Encode length.
-		int b1 = length >>> 28 & 0x7F;
-		int b2 = length >>> 14 & 0x7F;
-		int b3 = length >>> 7 & 0x7F;
-		if (b1 == 0) {
-			if (b2 == 0) {
-				if (b3 == 0) {
-					size += 1;
-				} else {
-					size += 2;
-				}
-			} else {
-				size += 3;
-			}
-		} else {
-			size += 4;
+	public void skipValue(final int wireType) throws IOException {
+		switch (wireType) {
+		case WIRE_VARINT:
+			skipRawVarInt();
+			break;
+		case WIRE_FIXED64:
+			skipRawBytes(LITTLE_ENDIAN_64_SIZE);
+			break;
+		case WIRE_LENGTH_DELIMITED:
+			skipRawBytes(readRawVarInt());
+			break;
+		case WIRE_FIXED32:
+			skipRawBytes(LITTLE_ENDIAN_32_SIZE);
+			break;
+		default:
+			throw new IOException(
+					"ZippyBuffer encountered an invalid wire type.");
 		}
-		return size;
 	}
 
 	/**
-	 * Compute the number of bytes that would be needed to encode a double.
+	 * Skips a VarInt or a VarLong without decoding it.
 	 * 
-	 * @param value
-	 *            the value
-	 * @return the int {@code double} sector, including sector.
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
 	 */
-	public static int sizeOfDouble(final double value) {
-		return LITTLE_ENDIAN_64_SIZE;
+	public void skipRawVarInt() throws IOException {
+		final int end = Math.min(limit, position + MAX_VARINT64_SIZE);
+		for (int i = position; i < end; i++) {
+			if (storage.get(i) >= 0) {
+				position = i + 1;
+				return;
+			}
+		}
+		if (end - position == MAX_VARINT64_SIZE) {
+			throw new IOException(
+					"ZippyBuffer encountered a malformed varint.");
+		}
+		// out of space
+		throw new IOException("ZippyBuffer ran out of space.");
 	}
 
 	/**
-	 * Compute the number of bytes that would be needed to encode a float.
+	 * Skips a fixed size of bytes.
 	 * 
-	 * @param value
-	 *            the value
-	 * @return the int {@code float} sector, including sector.
+	 * @param size
+	 *            the size
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
 	 */
-	public static int sizeOfFloat(final float value) {
-		return LITTLE_ENDIAN_32_SIZE;
+	public void skipRawBytes(final int size) throws IOException {
+		if (size < 0 || size > limit - position) {
+			// out of space
+			throw new IOException("ZippyBuffer ran out of space.");
+		}
+		position += size;
 	}
 
 	/**
-	 * Compute the number of bytes that would be needed to encode an
-	 * UnsignedInt.
+	 * Checks if buffer is empty.
 	 * 
-	 * @param value
-	 *            the value
-	 * @return the int {@code UnsignedInt} sector.
+	 * @return true, if is empty
 	 */
-	public static int sizeOfUnsignedInt(final int value) {
-		return sizeOfRawVarInt(value);
+	public boolean isEmpty() {
+		return position == limit;
 	}
 
+	// ------------------------ PACKED READER --------------------------
+
 	/**
-	 * Compute the number of bytes that would be needed to encode an
-	 * UnsignedLong.
+	 * Read packed {@code int} values as VarInts, negative values sign-extended,
+	 * prefixed with their count.
 	 * 
-	 * @param value
-	 *            the value
-	 * @return the int {@code UnsignedLong} sector, including sector.
+	 * @return the int[]
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
 	 */
-	public static int sizeOfUnsignedLong(final long value) {
-		return sizeOfRawVarLong(value);
+	public int[] readPackedInts() throws IOException {
+		final int count = readPackedCount(1, Integer.MAX_VALUE);
+		final int[] result = new int[count];
+		position = DECODER.decodeInts(storage, position, limit, result, 0,
+				count);
+		return result;
 	}
 
 	/**
-	 * Compute the number of bytes that would be needed to encode an Int.
+	 * Read packed {@code int} values as VarInts, negative values sign-extended,
+	 * prefixed with their count, into an array.
 	 * 
-	 * @param value
-	 *            the value
-	 * @return the int {@code int} sector, excluding sector.
+	 * @param dst
+	 *            the destination array
+	 * @param offset
+	 *            the destination offset
+	 * @return the number of values read
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
 	 */
-	public static int sizeOfInt(final int value) {
-		if (value >= 0) {
-			return sizeOfRawVarInt(value);
-		} else {
-			// Must sign-extend.
-			return 10;
-		}
+	public int readPackedInts(final int[] dst, final int offset)
+			throws IOException {
+		final int count = readPackedCount(1, dst.length - offset);
+		position = DECODER.decodeInts(storage, position, limit, dst, offset,
+				count);
+		return count;
 	}
 
 	/**
-	 * Compute the number of bytes that would be needed to encode a Long.
+	 * Read packed {@code int} values as ZigZag-encoded VarInts, prefixed with
+	 * their count.
 	 * 
-	 * @param value
-	 *            the value
-	 * @return the int {@code long} sector, excluding sector.
+	 * @return the int[]
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
 	 */
-	public static int sizeOfLong(final long value) {
-		return sizeOfRawVarLong(value);
+	public int[] readPackedSignedInts() throws IOException {
+		final int count = readPackedCount(1, Integer.MAX_VALUE);
+		final int[] result = new int[count];
+		position = DECODER.decodeInts(storage, position, limit, result, 0,
+				count);
+		for (int i = 0; i < count; i++) {
+			result[i] = decodeZigZagInt(result[i]);
+		}
+		return result;
 	}
 
 	/**
-	 * Compute the number of bytes that would be needed to encode a FixedInt.
+	 * Read packed {@code int} values as ZigZag-encoded VarInts, prefixed with
+	 * their count, into an array.
 	 * 
-	 * @param value
-	 *            the value
-	 * @return the int {@code FixedInt} sector.
+	 * @param dst
+	 *            the destination array
+	 * @param offset
+	 *            the destination offset
+	 * @return the number of values read
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
 	 */
-	public static int sizeOfUnsignedFixedInt(final int value) {
-		return LITTLE_ENDIAN_32_SIZE;
+	public int readPackedSignedInts(final int[] dst, final int offset)
+			throws IOException {
+		final int count = readPackedCount(1, dst.length - offset);
+		position = DECODER.decodeInts(storage, position, limit, dst, offset,
+				count);
+		for (int i = offset; i < offset + count; i++) {
+			dst[i] = decodeZigZagInt(dst[i]);
+		}
+		return count;
 	}
 
 	/**
-	 * Compute the number of bytes that would be needed to encode a FixedLong.
+	 * Read packed {@code int} values as little-endian 32-bit integers, prefixed
+	 * with their count.
+	 * 
+	 * @return the int[]
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public int[] readPackedFixedInts() throws IOException {
+		final int count = readPackedCount(LITTLE_ENDIAN_32_SIZE,
+				Integer.MAX_VALUE);
+		final int[] result = new int[count];
+		storage.getInts(position, result, 0, count);
+		position += count * LITTLE_ENDIAN_32_SIZE;
+		return result;
+	}
+
+	/**
+	 * Read packed {@code int} values as little-endian 32-bit integers, prefixed
+	 * with their count, into an array.
+	 * 
+	 * @param dst
+	 *            the destination array
+	 * @param offset
+	 *            the destination offset
+	 * @return the number of values read
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public int readPackedFixedInts(final int[] dst, final int offset)
+			throws IOException {
+		final int count = readPackedCount(LITTLE_ENDIAN_32_SIZE,
+				dst.length - offset);
+		storage.getInts(position, dst, offset, count);
+		position += count * LITTLE_ENDIAN_32_SIZE;
+		return count;
+	}
+
+	/**
+	 * Read packed {@code long} values as VarLongs, prefixed with their count.
+	 * 
+	 * @return the long[]
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public long[] readPackedLongs() throws IOException {
+		final int count = readPackedCount(1, Integer.MAX_VALUE);
+		final long[] result = new long[count];
+		position = DECODER.decodeLongs(storage, position, limit, result, 0,
+				count);
+		return result;
+	}
+
+	/**
+	 * Read packed {@code long} values as VarLongs, prefixed with their count,
+	 * into an array.
+	 * 
+	 * @param dst
+	 *            the destination array
+	 * @param offset
+	 *            the destination offset
+	 * @return the number of values read
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public int readPackedLongs(final long[] dst, final int offset)
+			throws IOException {
+		final int count = readPackedCount(1, dst.length - offset);
+		position = DECODER.decodeLongs(storage, position, limit, dst, offset,
+				count);
+		return count;
+	}
+
+	/**
+	 * Read packed {@code long} values as ZigZag-encoded VarLongs, prefixed with
+	 * their count.
+	 * 
+	 * @return the long[]
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public long[] readPackedSignedLongs() throws IOException {
+		final int count = readPackedCount(1, Integer.MAX_VALUE);
+		final long[] result = new long[count];
+		position = DECODER.decodeLongs(storage, position, limit, result, 0,
+				count);
+		for (int i = 0; i < count; i++) {
+			result[i] = decodeZigZagLong(result[i]);
+		}
+		return result;
+	}
+
+	/**
+	 * Read packed {@code long} values as ZigZag-encoded VarLongs, prefixed with
+	 * their count, into an array.
+	 * 
+	 * @param dst
+	 *            the destination array
+	 * @param offset
+	 *            the destination offset
+	 * @return the number of values read
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public int readPackedSignedLongs(final long[] dst, final int offset)
+			throws IOException {
+		final int count = readPackedCount(1, dst.length - offset);
+		position = DECODER.decodeLongs(storage, position, limit, dst, offset,
+				count);
+		for (int i = offset; i < offset + count; i++) {
+			dst[i] = decodeZigZagLong(dst[i]);
+		}
+		return count;
+	}
+
+	/**
+	 * Read packed {@code long} values as little-endian 64-bit integers,
+	 * prefixed with their count.
+	 * 
+	 * @return the long[]
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public long[] readPackedFixedLongs() throws IOException {
+		final int count = readPackedCount(LITTLE_ENDIAN_64_SIZE,
+				Integer.MAX_VALUE);
+		final long[] result = new long[count];
+		storage.getLongs(position, result, 0, count);
+		position += count * LITTLE_ENDIAN_64_SIZE;
+		return result;
+	}
+
+	/**
+	 * Read packed {@code long} values as little-endian 64-bit integers,
+	 * prefixed with their count, into an array.
+	 * 
+	 * @param dst
+	 *            the destination array
+	 * @param offset
+	 *            the destination offset
+	 * @return the number of values read
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public int readPackedFixedLongs(final long[] dst, final int offset)
+			throws IOException {
+		final int count = readPackedCount(LITTLE_ENDIAN_64_SIZE,
+				dst.length - offset);
+		storage.getLongs(position, dst, offset, count);
+		position += count * LITTLE_ENDIAN_64_SIZE;
+		return count;
+	}
+
+	/**
+	 * Read packed {@code float} values, prefixed with their count.
+	 * 
+	 * @return the float[]
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public float[] readPackedFloats() throws IOException {
+		final int count = readPackedCount(LITTLE_ENDIAN_32_SIZE,
+				Integer.MAX_VALUE);
+		final float[] result = new float[count];
+		storage.getFloats(position, result, 0, count);
+		position += count * LITTLE_ENDIAN_32_SIZE;
+		return result;
+	}
+
+	/**
+	 * Read packed {@code float} values, prefixed with their count, into an
+	 * array.
+	 * 
+	 * @param dst
+	 *            the destination array
+	 * @param offset
+	 *            the destination offset
+	 * @return the number of values read
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public int readPackedFloats(final float[] dst, final int offset)
+			throws IOException {
+		final int count = readPackedCount(LITTLE_ENDIAN_32_SIZE,
+				dst.length - offset);
+		storage.getFloats(position, dst, offset, count);
+		position += count * LITTLE_ENDIAN_32_SIZE;
+		return count;
+	}
+
+	/**
+	 * Read packed {@code double} values, prefixed with their count.
+	 * 
+	 * @return the double[]
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public double[] readPackedDoubles() throws IOException {
+		final int count = readPackedCount(LITTLE_ENDIAN_64_SIZE,
+				Integer.MAX_VALUE);
+		final double[] result = new double[count];
+		storage.getDoubles(position, result, 0, count);
+		position += count * LITTLE_ENDIAN_64_SIZE;
+		return result;
+	}
+
+	/**
+	 * Read packed {@code double} values, prefixed with their count, into an
+	 * array.
+	 * 
+	 * @param dst
+	 *            the destination array
+	 * @param offset
+	 *            the destination offset
+	 * @return the number of values read
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public int readPackedDoubles(final double[] dst, final int offset)
+			throws IOException {
+		final int count = readPackedCount(LITTLE_ENDIAN_64_SIZE,
+				dst.length - offset);
+		storage.getDoubles(position, dst, offset, count);
+		position += count * LITTLE_ENDIAN_64_SIZE;
+		return count;
+	}
+
+	/**
+	 * Read packed {@code boolean} values, one byte each, prefixed with their
+	 * count.
+	 * 
+	 * @return the boolean[]
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public boolean[] readPackedBooleans() throws IOException {
+		final int count = readPackedCount(1, Integer.MAX_VALUE);
+		final boolean[] result = new boolean[count];
+		for (int i = 0; i < count; i++) {
+			result[i] = storage.get(position++) != 0;
+		}
+		return result;
+	}
+
+	/**
+	 * Read packed {@code boolean} values, one byte each, prefixed with their
+	 * count, into an array.
+	 * 
+	 * @param dst
+	 *            the destination array
+	 * @param offset
+	 *            the destination offset
+	 * @return the number of values read
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public int readPackedBooleans(final boolean[] dst, final int offset)
+			throws IOException {
+		final int count = readPackedCount(1, dst.length - offset);
+		for (int i = offset; i < offset + count; i++) {
+			dst[i] = storage.get(position++) != 0;
+		}
+		return count;
+	}
+
+	/**
+	 * Read the count of a packed array and check it against the remaining
+	 * bytes and the room of the destination.
+	 * 
+	 * @param minSize
+	 *            the minimum encoded size of a value
+	 * @param room
+	 *            the room of the destination
+	 * @return the count
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	private int readPackedCount(final int minSize, final int room)
+			throws IOException {
+		final int count = readRawVarInt();
+		if (count < 0 || (long) count * minSize > limit - position) {
+			throw new IOException("ZippyBuffer ran out of space.");
+		}
+		if (count > room) {
+			throw new IOException("ZippyBuffer packed array does not fit.");
+		}
+		return count;
+	}
+
+	// ------------------------ SIZER --------------------------
+
+	/**
+	 * Compute the number of bytes that would be needed to encode WebSocket
+	 * frame length
+	 * 
+	 * @param length
+	 *            the length
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public int sizeOfWsFrameLength(byte type, int length) throws IOException {
+		// one bite for the type
+		int size = 1;
+		// Encode length.
+		int b1 = length >>> 28 & 0x7F;
+		int b2 = length >>> 14 & 0x7F;
+		int b3 = length >>> 7 & 0x7F;
+		if (b1 == 0) {
+			if (b2 == 0) {
+				if (b3 == 0) {
+					size += 1;
+				} else {
+					size += 2;
+				}
+			} else {
+				size += 3;
+			}
+		} else {
+			size += 4;
+		}
+		return size;
+	}
+
+	/**
+	 * Compute the number of bytes that would be needed to encode an RFC 6455
+	 * WebSocket frame header.
+	 * 
+	 * @param frame
+	 *            the frame
+	 * @return the int
+	 */
+	public static int sizeOfWsFrameHeader(final ZippyWsFrame frame) {
+		return ZippyWsFrame.sizeOfHeader(frame.isMasked(),
+				frame.getPayloadLength());
+	}
+
+	/**
+	 * Compute the number of bytes that would be needed to encode a double.
+	 * 
+	 * @param value
+	 *            the value
+	 * @return the int {@code double} sector, including sector.
+	 */
+	public static int sizeOfDouble(final double value) {
+		return LITTLE_ENDIAN_64_SIZE;
+	}
+
+	/**
+	 * Compute the number of bytes that would be needed to encode a float.
+	 * 
+	 * @param value
+	 *            the value
+	 * @return the int {@code float} sector, including sector.
+	 */
+	public static int sizeOfFloat(final float value) {
+		return LITTLE_ENDIAN_32_SIZE;
+	}
+
+	/**
+	 * Compute the number of bytes that would be needed to encode an
+	 * UnsignedInt.
+	 * 
+	 * @param value
+	 *            the value
+	 * @return the int {@code UnsignedInt} sector.
+	 */
+	public static int sizeOfUnsignedInt(final int value) {
+		return sizeOfRawVarInt(value);
+	}
+
+	/**
+	 * Compute the number of bytes that would be needed to encode an
+	 * UnsignedLong.
+	 * 
+	 * @param value
+	 *            the value
+	 * @return the int {@code UnsignedLong} sector, including sector.
+	 */
+	public static int sizeOfUnsignedLong(final long value) {
+		return sizeOfRawVarLong(value);
+	}
+
+	/**
+	 * Compute the number of bytes that would be needed to encode an Int.
+	 * 
+	 * @param value
+	 *            the value
+	 * @return the int {@code int} sector, excluding sector.
+	 */
+	public static int sizeOfInt(final int value) {
+		if (value >= 0) {
+			return sizeOfRawVarInt(value);
+		} else {
+			// Must sign-extend.
+			return 10;
+		}
+	}
+
+	/**
+	 * Compute the number of bytes that would be needed to encode a Long.
+	 * 
+	 * @param value
+	 *            the value
+	 * @return the int {@code long} sector, excluding sector.
+	 */
+	public static int sizeOfLong(final long value) {
+		return sizeOfRawVarLong(value);
+	}
+
+	/**
+	 * Compute the number of bytes that would be needed to encode a FixedInt.
+	 * 
+	 * @param value
+	 *            the value
+	 * @return the int {@code FixedInt} sector.
+	 */
+	public static int sizeOfUnsignedFixedInt(final int value) {
+		return LITTLE_ENDIAN_32_SIZE;
+	}
+
+	/**
+	 * Compute the number of bytes that would be needed to encode a FixedLong.
+	 * 
+	 * @param value
+	 *            the value
+	 * @return the int {@code FixedLong} sector.
+	 */
+	public static int sizeOfUnsignedFixedLong(final long value) {
+		return LITTLE_ENDIAN_64_SIZE;
+	}
+
+	/**
+	 * Compute the number of bytes that would be needed to encode a {@code bool}
+	 * sector.
+	 * 
+	 * @param value
+	 *            the value
+	 * @return the int
+	 */
+	public static int sizeOfBoolean(final boolean value) {
+		return 1;
+	}
+
+	/**
+	 * Compute the number of bytes that would be needed to encode a String.
+	 * 
+	 * @param value
+	 *            the value
+	 * @return the int {@code String} sector.
+	 */
+	public static int sizeOfString(final String value) {
+		final int size = ZippyUtf8.encodedLength(value);
+		return sizeOfRawVarInt(size) + size;
+	}
+
+	/**
+	 * Compute the number of bytes that would be needed to encode a.
+	 * 
+	 * @param value
+	 *            the value
+	 * @return the int {@code bytes} sector.
+	 */
+	public static int sizeOfBytes(final byte[] value) {
+		return sizeOfRawVarInt(value.length) + value.length;
+	}
+
+	/**
+	 * Compute the number of bytes that would be needed to encode a string
+	 * view.
+	 * 
+	 * @param value
+	 *            the value
+	 * @return the int {@code String} sector.
+	 */
+	public static int sizeOfString(final ZippyString value) {
+		return sizeOfRawVarInt(value.getSize()) + value.getSize();
+	}
+
+	/**
+	 * Compute the number of bytes that would be needed to encode the
+	 * remaining bytes of a buffer.
+	 * 
+	 * @param value
+	 *            the value
+	 * @return the int {@code bytes} sector.
+	 */
+	public static int sizeOfBytes(final ZippyBuffer value) {
+		final int size = value.remaining();
+		return sizeOfRawVarInt(size) + size;
+	}
+
+	/**
+	 * Compute the number of bytes that would be needed to encode a single byte
+	 * sector.
+	 * 
+	 * @param b
+	 *            the b
+	 * @return the int
+	 */
+	public static int sizeOfRawByte(byte b) {
+		return 1;
+	}
+
+	/**
+	 * Compute the number of bytes that would be needed to encode a
+	 * SignedFixedInt.
+	 * 
+	 * @param value
+	 *            the value
+	 * @return the int {@code SignedFixedInt} sector.
+	 */
+	public static int sizeOfSignedFixedInt(final int value) {
+		return LITTLE_ENDIAN_32_SIZE;
+	}
+
+	/**
+	 * Compute the number of bytes that would be needed to encode a
+	 * SignedFixedLong.
+	 * 
+	 * @param value
+	 *            the value
+	 * @return the int {@code SignedFixedLong} sector.
+	 */
+	public static int sizeOfSignedFixedLong(final long value) {
+		return LITTLE_ENDIAN_64_SIZE;
+	}
+
+	/**
+	 * Compute the number of bytes that would be needed to encode a SignedInt.
+	 * 
+	 * @param value
+	 *            the value
+	 * @return the int {@code SignedInt} sector.
+	 */
+	public static int sizeOfSignedInt(final int value) {
+		return sizeOfRawVarInt(encodeZigZagInt(value));
+	}
+
+	/**
+	 * Compute the number of bytes that would be needed to encode a SignedLong.
+	 * 
+	 * @param value
+	 *            the value
+	 * @return the int {@code SignedLong} sector.
+	 */
+	public static int sizeOfSignedLong(final long value) {
+		return sizeOfRawVarLong(encodeZigZagLong(value));
+	}
+
+	/**
+	 * Compute the number of bytes that would be needed to encode a sector.
+	 * 
+	 * @param sectorNumber
+	 *            the sector number
+	 * @return the int
+	 */
+	public static int sizeOfSector(final int sectorNumber) {
+		return sizeOfRawVarInt(sectorNumber);
+	}
+
+	/**
+	 * Compute the number of bytes that would be needed to encode a tag.
+	 * 
+	 * @param sectorNumber
+	 *            the sector number
+	 * @return the int
+	 */
+	public static int sizeOfTag(final int sectorNumber) {
+		return sizeOfRawVarInt(makeTag(sectorNumber, 0));
+	}
+
+	/**
+	 * Makes a tag from a sector number and a wire type.
+	 * 
+	 * @param sectorNumber
+	 *            the sector number
+	 * @param wireType
+	 *            the wire type
+	 * @return the tag
+	 */
+	public static int makeTag(final int sectorNumber, final int wireType) {
+		return (sectorNumber << TAG_TYPE_BITS) | wireType;
+	}
+
+	/**
+	 * Gets the sector number of a tag.
+	 * 
+	 * @param tag
+	 *            the tag
+	 * @return the sector number
+	 */
+	public static int getTagSector(final int tag) {
+		return tag >>> TAG_TYPE_BITS;
+	}
+
+	/**
+	 * Gets the wire type of a tag.
+	 * 
+	 * @param tag
+	 *            the tag
+	 * @return the wire type
+	 */
+	public static int getTagWireType(final int tag) {
+		return tag & TAG_TYPE_MASK;
+	}
+
+	/**
+	 * Compute the number of bytes that would be needed to encode a VarInt.
+	 * 
+	 * @param value
+	 *            the value
+	 * @return the int {@code value} is treated as unsigned, so it won't be
+	 *         sign-extended if negative.
+	 */
+	public static int sizeOfRawVarInt(final int value) {
+		if ((value & (0xffffffff << 7)) == 0) {
+			return 1;
+		}
+		if ((value & (0xffffffff << 14)) == 0) {
+			return 2;
+		}
+		if ((value & (0xffffffff << 21)) == 0) {
+			return 3;
+		}
+		if ((value & (0xffffffff << 28)) == 0) {
+			return 4;
+		}
+		return 5;
+	}
+
+	/**
+	 * Compute the number of bytes that would be needed to encode a VarLong.
+	 * 
+	 * @param value
+	 *            the value
+	 * @return the int
+	 */
+	public static int sizeOfRawVarLong(final long value) {
+		if ((value & (0xffffffffffffffffL << 7)) == 0) {
+			return 1;
+		}
+		if ((value & (0xffffffffffffffffL << 14)) == 0) {
+			return 2;
+		}
+		if ((value & (0xffffffffffffffffL << 21)) == 0) {
+			return 3;
+		}
+		if ((value & (0xffffffffffffffffL << 28)) == 0) {
+			return 4;
+		}
+		if ((value & (0xffffffffffffffffL << 35)) == 0) {
+			return 5;
+		}
+		if ((value & (0xffffffffffffffffL << 42)) == 0) {
+			return 6;
+		}
+		if ((value & (0xffffffffffffffffL << 49)) == 0) {
+			return 7;
+		}
+		if ((value & (0xffffffffffffffffL << 56)) == 0) {
+			return 8;
+		}
+		if ((value & (0xffffffffffffffffL << 63)) == 0) {
+			return 9;
+		}
+		return 10;
+	}
+
+	/** The longest string whose size always fits in a single byte. */
+	private static final int SHORT_STRING_LENGTH = 43;
+
+	/** The Constant LITTLE_ENDIAN_32_SIZE. */
+	private static final int LITTLE_ENDIAN_32_SIZE = 4;
+	/** The Constant LITTLE_ENDIAN_64_SIZE. */
+	private static final int LITTLE_ENDIAN_64_SIZE = 8;
+	/** The Constant MAX_VARINT32_SIZE. */
+	private static final int MAX_VARINT32_SIZE = 5;
+	/** The Constant MAX_VARINT64_SIZE. */
+	private static final int MAX_VARINT64_SIZE = 10;
+	/** The continuation bits of eight VarInt bytes read as one word. */
+	private static final long VARINT_STOP_BITS = 0x8080808080808080L;
+
+	// ------------------------ PACKED SIZER --------------------------
+
+	/**
+	 * Compute the number of bytes that would be needed to encode packed
+	 * {@code int} values as VarInts, negative values sign-extended.
+	 * 
+	 * @param values
+	 *            the values
+	 * @return the int
+	 */
+	public static int sizeOfPackedInts(final int[] values) {
+		return sizeOfPackedInts(values, 0, values.length);
+	}
+
+	/**
+	 * Compute the number of bytes that would be needed to encode a range of
+	 * packed {@code int} values as VarInts, negative values sign-extended.
+	 * 
+	 * @param values
+	 *            the values
+	 * @param offset
+	 *            the offset
+	 * @param length
+	 *            the length
+	 * @return the int
+	 */
+	public static int sizeOfPackedInts(final int[] values,
+			final int offset, final int length) {
+		int size = sizeOfRawVarInt(length);
+		for (int i = offset; i < offset + length; i++) {
+			size += sizeOfInt(values[i]);
+		}
+		return size;
+	}
+
+	/**
+	 * Compute the number of bytes that would be needed to encode packed
+	 * {@code int} values as ZigZag-encoded VarInts.
+	 * 
+	 * @param values
+	 *            the values
+	 * @return the int
+	 */
+	public static int sizeOfPackedSignedInts(final int[] values) {
+		return sizeOfPackedSignedInts(values, 0, values.length);
+	}
+
+	/**
+	 * Compute the number of bytes that would be needed to encode a range of
+	 * packed {@code int} values as ZigZag-encoded VarInts.
+	 * 
+	 * @param values
+	 *            the values
+	 * @param offset
+	 *            the offset
+	 * @param length
+	 *            the length
+	 * @return the int
+	 */
+	public static int sizeOfPackedSignedInts(final int[] values,
+			final int offset, final int length) {
+		int size = sizeOfRawVarInt(length);
+		for (int i = offset; i < offset + length; i++) {
+			size += sizeOfSignedInt(values[i]);
+		}
+		return size;
+	}
+
+	/**
+	 * Compute the number of bytes that would be needed to encode packed
+	 * {@code int} values as little-endian 32-bit integers.
+	 * 
+	 * @param values
+	 *            the values
+	 * @return the int
+	 */
+	public static int sizeOfPackedFixedInts(final int[] values) {
+		return sizeOfPackedFixedInts(values, 0, values.length);
+	}
+
+	/**
+	 * Compute the number of bytes that would be needed to encode a range of
+	 * packed {@code int} values as little-endian 32-bit integers.
+	 * 
+	 * @param values
+	 *            the values
+	 * @param offset
+	 *            the offset
+	 * @param length
+	 *            the length
+	 * @return the int
+	 */
+	public static int sizeOfPackedFixedInts(final int[] values,
+			final int offset, final int length) {
+		return sizeOfRawVarInt(length) + length * LITTLE_ENDIAN_32_SIZE;
+	}
+
+	/**
+	 * Compute the number of bytes that would be needed to encode packed
+	 * {@code long} values as VarLongs.
+	 * 
+	 * @param values
+	 *            the values
+	 * @return the int
+	 */
+	public static int sizeOfPackedLongs(final long[] values) {
+		return sizeOfPackedLongs(values, 0, values.length);
+	}
+
+	/**
+	 * Compute the number of bytes that would be needed to encode a range of
+	 * packed {@code long} values as VarLongs.
+	 * 
+	 * @param values
+	 *            the values
+	 * @param offset
+	 *            the offset
+	 * @param length
+	 *            the length
+	 * @return the int
+	 */
+	public static int sizeOfPackedLongs(final long[] values,
+			final int offset, final int length) {
+		int size = sizeOfRawVarInt(length);
+		for (int i = offset; i < offset + length; i++) {
+			size += sizeOfLong(values[i]);
+		}
+		return size;
+	}
+
+	/**
+	 * Compute the number of bytes that would be needed to encode packed
+	 * {@code long} values as ZigZag-encoded VarLongs.
+	 * 
+	 * @param values
+	 *            the values
+	 * @return the int
+	 */
+	public static int sizeOfPackedSignedLongs(final long[] values) {
+		return sizeOfPackedSignedLongs(values, 0, values.length);
+	}
+
+	/**
+	 * Compute the number of bytes that would be needed to encode a range of
+	 * packed {@code long} values as ZigZag-encoded VarLongs.
+	 * 
+	 * @param values
+	 *            the values
+	 * @param offset
+	 *            the offset
+	 * @param length
+	 *            the length
+	 * @return the int
+	 */
+	public static int sizeOfPackedSignedLongs(final long[] values,
+			final int offset, final int length) {
+		int size = sizeOfRawVarInt(length);
+		for (int i = offset; i < offset + length; i++) {
+			size += sizeOfSignedLong(values[i]);
+		}
+		return size;
+	}
+
+	/**
+	 * Compute the number of bytes that would be needed to encode packed
+	 * {@code long} values as little-endian 64-bit integers.
+	 * 
+	 * @param values
+	 *            the values
+	 * @return the int
+	 */
+	public static int sizeOfPackedFixedLongs(final long[] values) {
+		return sizeOfPackedFixedLongs(values, 0, values.length);
+	}
+
+	/**
+	 * Compute the number of bytes that would be needed to encode a range of
+	 * packed {@code long} values as little-endian 64-bit integers.
+	 * 
+	 * @param values
+	 *            the values
+	 * @param offset
+	 *            the offset
+	 * @param length
+	 *            the length
+	 * @return the int
+	 */
+	public static int sizeOfPackedFixedLongs(final long[] values,
+			final int offset, final int length) {
+		return sizeOfRawVarInt(length) + length * LITTLE_ENDIAN_64_SIZE;
+	}
+
+	/**
+	 * Compute the number of bytes that would be needed to encode packed
+	 * {@code float} values.
+	 * 
+	 * @param values
+	 *            the values
+	 * @return the int
+	 */
+	public static int sizeOfPackedFloats(final float[] values) {
+		return sizeOfPackedFloats(values, 0, values.length);
+	}
+
+	/**
+	 * Compute the number of bytes that would be needed to encode a range of
+	 * packed {@code float} values.
+	 * 
+	 * @param values
+	 *            the values
+	 * @param offset
+	 *            the offset
+	 * @param length
+	 *            the length
+	 * @return the int
+	 */
+	public static int sizeOfPackedFloats(final float[] values,
+			final int offset, final int length) {
+		return sizeOfRawVarInt(length) + length * LITTLE_ENDIAN_32_SIZE;
+	}
+
+	/**
+	 * Compute the number of bytes that would be needed to encode packed
+	 * {@code double} values.
+	 * 
+	 * @param values
+	 *            the values
+	 * @return the int
+	 */
+	public static int sizeOfPackedDoubles(final double[] values) {
+		return sizeOfPackedDoubles(values, 0, values.length);
+	}
+
+	/**
+	 * Compute the number of bytes that would be needed to encode a range of
+	 * packed {@code double} values.
+	 * 
+	 * @param values
+	 *            the values
+	 * @param offset
+	 *            the offset
+	 * @param length
+	 *            the length
+	 * @return the int
+	 */
+	public static int sizeOfPackedDoubles(final double[] values,
+			final int offset, final int length) {
+		return sizeOfRawVarInt(length) + length * LITTLE_ENDIAN_64_SIZE;
+	}
+
+	/**
+	 * Compute the number of bytes that would be needed to encode packed
+	 * {@code boolean} values, one byte each.
+	 * 
+	 * @param values
+	 *            the values
+	 * @return the int
+	 */
+	public static int sizeOfPackedBooleans(final boolean[] values) {
+		return sizeOfPackedBooleans(values, 0, values.length);
+	}
+
+	/**
+	 * Compute the number of bytes that would be needed to encode a range of
+	 * packed {@code boolean} values, one byte each.
+	 * 
+	 * @param values
+	 *            the values
+	 * @param offset
+	 *            the offset
+	 * @param length
+	 *            the length
+	 * @return the int
+	 */
+	public static int sizeOfPackedBooleans(final boolean[] values,
+			final int offset, final int length) {
+		return sizeOfRawVarInt(length) + length;
+	}
+
+	// ------------------------ WRITER --------------------------
+
+	/**
+	 * Write WebSocket frame length
+	 * 
+	 * @param length
+	 *            the length
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public void writeWsFrameLength(byte type, int length) throws IOException {
+		writeRawByte(type);
+		// Encode length.
+		int b1 = length >>> 28 & 0x7F;
+		int b2 = length >>> 14 & 0x7F;
+		int b3 = length >>> 7 & 0x7F;
+		int b4 = length & 0x7F;
+		if (b1 == 0) {
+			if (b2 == 0) {
+				if (b3 == 0) {
+					writeRawByte(b4);
+				} else {
+					writeRawByte(b3 | 0x80);
+					writeRawByte(b4);
+				}
+			} else {
+				writeRawByte(b2 | 0x80);
+				writeRawByte(b3 | 0x80);
+				writeRawByte(b4);
+			}
+		} else {
+			writeRawByte(b1 | 0x80);
+			writeRawByte(b2 | 0x80);
+			writeRawByte(b3 | 0x80);
+			writeRawByte(b4);
+		}
+	}
+
+	/**
+	 * Writes an RFC 6455 WebSocket frame header. The capacity is checked once
+	 * for the whole header.
+	 * 
+	 * @param frame
+	 *            the frame
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public void writeWsFrameHeader(final ZippyWsFrame frame)
+			throws IOException {
+		if (limit - position < sizeOfWsFrameHeader(frame)) {
+			nextSegment();
+		}
+		position = ZippyWsFrame.writeHeader(storage, position, frame);
+	}
+
+	/**
+	 * Write a bare sector number.
+	 * 
+	 * @param sectorNumber
+	 *            the sector number
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public void writeSector(final int sectorNumber) throws IOException {
+		writeRawVarInt(sectorNumber);
+	}
+
+	/**
+	 * Reserves bytes to be filled in later, e.g. a length or an offset only
+	 * known once what follows is written. The bytes are contiguous, even in a
+	 * segmented writer, and their content is undefined until filled.
+	 * 
+	 * @param size
+	 *            the size
+	 * @return the index of the bytes in the storage returned by
+	 *         {@link #getStorage()} right after this call
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public int reserve(final int size) throws IOException {
+		if (limit - position < size) {
+			nextSegment();
+			if (limit - position < size) {
+				// ZippyBufferWriter ran out of space
+				throw new IOException("ZippyBufferWriter ran out of space.");
+			}
+		}
+		final int index = position;
+		position += size;
+		return index;
+	}
+
+	/**
+	 * Starts a length-prefixed value whose length is not known yet: reserves
+	 * room for the longest VarInt length, to be filled in by
+	 * {@link #endLengthPrefixed(int)} once the value is written. Calls may be
+	 * nested.
+	 * 
+	 * @return the handle to pass to {@link #endLengthPrefixed(int)}
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public int beginLengthPrefixed() throws IOException {
+		reserve(MAX_VARINT32_SIZE);
+		return getWrittenSize();
+	}
+
+	/**
+	 * Ends a length-prefixed value and fills in its length. When the length
+	 * and the value are still in the current segment, the value is moved back
+	 * over the unused reserved bytes; otherwise the length is written as a
+	 * padded VarInt taking all five reserved bytes.
+	 * 
+	 * @param handle
+	 *            the handle returned by {@link #beginLengthPrefixed()}
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public void endLengthPrefixed(final int handle) throws IOException {
+		final int length = getWrittenSize() - handle;
+		final int prefix = handle - MAX_VARINT32_SIZE;
+		if (prefix >= sealedSize) {
+			// Compact: write the shortest length and close the gap.
+			final int index = offset + prefix - sealedSize;
+			final int end = putRawVarInt(index, length);
+			final int gap = index + MAX_VARINT32_SIZE - end;
+			if (gap > 0) {
+				storage.move(index + MAX_VARINT32_SIZE, end, length);
+				position -= gap;
+			}
+			return;
+		}
+		int start = 0;
+		for (int i = 0; i < segments.size(); i++) {
+			final ZippySegment segment = segments.get(i);
+			if (prefix < start + segment.getLength()) {
+				putPaddedVarInt(segment.getStorage(), segment.getOffset()
+						+ prefix - start, length);
+				return;
+			}
+			start += segment.getLength();
+		}
+	}
+
+	/**
+	 * Encode a VarInt in exactly five bytes at an index of a storage.
+	 * 
+	 * @param target
+	 *            the storage
+	 * @param index
+	 *            the index
+	 * @param value
+	 *            the value
+	 */
+	private static void putPaddedVarInt(final ZippyStorage target,
+			final int index, final int value) {
+		target.put(index, (byte) (value | 0x80));
+		target.put(index + 1, (byte) ((value >>> 7) | 0x80));
+		target.put(index + 2, (byte) ((value >>> 14) | 0x80));
+		target.put(index + 3, (byte) ((value >>> 21) | 0x80));
+		target.put(index + 4, (byte) (value >>> 28));
+	}
+
+	/**
+	 * Write a tag: a sector number and the wire type of the value following
+	 * it.
+	 * 
+	 * @param sectorNumber
+	 *            the sector number
+	 * @param wireType
+	 *            the wire type
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public void writeTag(final int sectorNumber, final int wireType)
+			throws IOException {
+		writeRawVarInt(makeTag(sectorNumber, wireType));
+	}
+
+	/**
+	 * Write a {@code double} sector to the buffer.
+	 * 
+	 * @param value
+	 *            the value
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public void writeDouble(final double value) throws IOException {
+		writeRawLittleEndianLong(Double.doubleToRawLongBits(value));
+	}
+
+	/**
+	 * Write a {@code float} sector to the buffer.
+	 * 
+	 * @param value
+	 *            the value
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public void writeFloat(final float value) throws IOException {
+		writeRawLittleEndianInt(Float.floatToRawIntBits(value));
+	}
+
+	/**
+	 * Write an {@code long} sector to the buffer.
+	 * 
+	 * @param value
+	 *            the value
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public void writeLong(final long value) throws IOException {
+		writeRawVarLong(value);
+	}
+
+	/**
+	 * Write an {@code int} sector to the buffer.
+	 * 
+	 * @param value
+	 *            the value
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public void writeInt(final int value) throws IOException {
+		if (value >= 0) {
+			writeRawVarInt(value);
+		} else {
+			// Must sign-extend.
+			writeRawVarLong(value);
+		}
+	}
+
+	/**
+	 * Write a {@code FixedInt} sector to the buffer.
 	 * 
 	 * @param value
 	 *            the value
-	 * @return the int {@code FixedLong} sector.
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
 	 */
-	public static int sizeOfUnsignedFixedLong(final long value) {
-		return LITTLE_ENDIAN_64_SIZE;
+	public void writeUnsignedFixedInt(final int value) throws IOException {
+		writeRawLittleEndianInt(value);
 	}
 
 	/**
-	 * Compute the number of bytes that would be needed to encode a {@code bool}
-	 * sector.
+	 * Write a {@code FixedLong} sector to the buffer.
 	 * 
 	 * @param value
 	 *            the value
-	 * @return the int
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
 	 */
-	public static int sizeOfBoolean(final boolean value) {
-		return 1;
+	public void writeUnsignedFixedLong(final long value) throws IOException {
+		writeRawLittleEndianLong(value);
 	}
 
 	/**
-	 * Compute the number of bytes that would be needed to encode a String.
+	 * Write a {@code boolean} sector to the buffer.
 	 * 
 	 * @param value
 	 *            the value
-	 * @return the int {@code String} sector.
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
 	 */
-	public static int sizeOfString(final String value) {
-		try {
-			final byte[] bytes = value.getBytes("UTF-8");
-			return sizeOfRawVarInt(bytes.length) + bytes.length;
-		} catch (UnsupportedEncodingException e) {
-			throw new RuntimeException("UTF-8 not supported.", e);
+	public void writeBoolean(final boolean value) throws IOException {
+		writeRawByte(value ? 1 : 0);
+	}
+
+	/**
+	 * Write a {@code string} sector to the buffer.
+	 * 
+	 * @param value
+	 *            the value
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public void writeString(final String value) throws IOException {
+		final int length = value.length();
+		if (length < SHORT_STRING_LENGTH && limit - position > length * 3) {
+			// Fast path: the size fits in one byte whatever the chars are, so
+			// encode directly behind it and patch the size afterwards.
+			final int start = position + 1;
+			final int end = ZippyUtf8.encode(value, 0, length, storage, start);
+			storage.put(position, (byte) (end - start));
+			position = end;
+			return;
+		}
+		final int size = ZippyUtf8.encodedLength(value);
+		writeRawVarInt(size);
+		if (limit - position >= size) {
+			// We have room in the current buffer.
+			position = ZippyUtf8.encode(value, 0, length, storage, position);
+		} else if (pool != null) {
+			writeStringSegmented(value);
+		} else {
+			// ZippyBufferWriter ran out of space
+			throw new IOException("ZippyBufferWriter ran out of space.");
 		}
 	}
 
 	/**
-	 * Compute the number of bytes that would be needed to encode a.
+	 * Encodes the chars of a string over as many segments as needed, never
+	 * splitting a surrogate pair between two chunks.
 	 * 
 	 * @param value
 	 *            the value
-	 * @return the int {@code bytes} sector.
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
 	 */
-	public static int sizeOfBytes(final byte[] value) {
-		return sizeOfRawVarInt(value.length) + value.length;
+	private void writeStringSegmented(final String value) throws IOException {
+		final int length = value.length();
+		int from = 0;
+		while (from < length) {
+			if (limit - position < 4) {
+				nextSegment();
+			}
+			int to = Math.min(length, from + (limit - position) / 3);
+			if (to < length && Character.isHighSurrogate(value.charAt(to - 1))
+					&& Character.isLowSurrogate(value.charAt(to))) {
+				// Keep the pair together: leave it for the next chunk, unless
+				// it is alone and then its four bytes fit anyway.
+				if (to - 1 > from) {
+					to--;
+				} else {
+					to++;
+				}
+			}
+			position = ZippyUtf8.encode(value, from, to, storage, position);
+			from = to;
+		}
 	}
 
 	/**
-	 * Compute the number of bytes that would be needed to encode a single byte
-	 * sector.
+	 * Write a {@code bytes} sector to the buffer.
 	 * 
-	 * @param b
-	 *            the b
-	 * @return the int
+	 * @param bytes
+	 *            the bytes
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
 	 */
-	public static int sizeOfRawByte(byte b) {
-		return 1;
+	public void writeBytes(final byte[] bytes) throws IOException {
+		writeRawVarInt(bytes.length);
+		writeRawBytes(bytes);
 	}
 
 	/**
-	 * Compute the number of bytes that would be needed to encode a
-	 * SignedFixedInt.
+	 * Write a string view as a {@code string} sector, copying its encoded
+	 * bytes as they are.
 	 * 
 	 * @param value
 	 *            the value
-	 * @return the int {@code SignedFixedInt} sector.
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
 	 */
-	public static int sizeOfSignedFixedInt(final int value) {
-		return LITTLE_ENDIAN_32_SIZE;
+	public void writeString(final ZippyString value) throws IOException {
+		writeRawVarInt(value.getSize());
+		writeRawBytes(value.getStorage(), value.getOffset(), value.getSize());
 	}
 
 	/**
-	 * Compute the number of bytes that would be needed to encode a
-	 * SignedFixedLong.
+	 * Write the remaining bytes of a buffer, e.g. a view returned by
+	 * {@link #readBytesView()}, as a {@code bytes} sector. The position of
+	 * {@code bytes} is left unchanged.
+	 * 
+	 * @param bytes
+	 *            the bytes
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public void writeBytes(final ZippyBuffer bytes) throws IOException {
+		final int size = bytes.remaining();
+		writeRawVarInt(size);
+		writeRawBytes(bytes.storage, bytes.position, size);
+	}
+
+	/**
+	 * Write a {@code UnsignedInt} sector to the buffer.
 	 * 
 	 * @param value
 	 *            the value
-	 * @return the int {@code SignedFixedLong} sector.
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
 	 */
-	public static int sizeOfSignedFixedLong(final long value) {
-		return LITTLE_ENDIAN_64_SIZE;
+	public void writeUnsignedInt(final int value) throws IOException {
+		writeRawVarInt(value);
 	}
 
 	/**
-	 * Compute the number of bytes that would be needed to encode a SignedInt.
+	 * Write a {@code UnsignedLong} sector to the buffer.
 	 * 
 	 * @param value
 	 *            the value
-	 * @return the int {@code SignedInt} sector.
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
 	 */
-	public static int sizeOfSignedInt(final int value) {
-		return sizeOfRawVarInt(encodeZigZagInt(value));
+	public void writeUnsignedLong(final long value) throws IOException {
+		writeRawVarLong(value);
 	}
 
 	/**
-	 * Compute the number of bytes that would be needed to encode a SignedLong.
+	 * Write an {@code SignedFixedInt} sector to the buffer.
 	 * 
 	 * @param value
 	 *            the value
-	 * @return the int {@code SignedLong} sector.
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
 	 */
-	public static int sizeOfSignedLong(final long value) {
-		return sizeOfRawVarLong(encodeZigZagLong(value));
+	public void writeSignedFixedInt(final int value) throws IOException {
+		writeRawLittleEndianInt(value);
 	}
 
 	/**
-	 * Compute the number of bytes that would be needed to encode a sector.
+	 * Write an {@code SignedFixedLong} sector to the buffer.
 	 * 
-	 * @param sectorNumber
-	 *            the sector number
-	 * @return the int
+	 * @param value
+	 *            the value
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
 	 */
-	public static int sizeOfSector(final int sectorNumber) {
-		return sizeOfRawVarInt(sectorNumber);
+	public void writeSignedFixedLong(final long value) throws IOException {
+		writeRawLittleEndianLong(value);
 	}
 
 	/**
-	 * Compute the number of bytes that would be needed to encode a VarInt.
+	 * Write an {@code SignedInt} sector to the buffer.
 	 * 
 	 * @param value
 	 *            the value
-	 * @return the int {@code value} is treated as unsigned, so it won't be
-	 *         sign-extended if negative.
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
 	 */
-	public static int sizeOfRawVarInt(final int value) {
-		if ((value & (0xffffffff << 7)) == 0) {
-			return 1;
-		}
-		if ((value & (0xffffffff << 14)) == 0) {
-			return 2;
-		}
-		if ((value & (0xffffffff << 21)) == 0) {
-			return 3;
-		}
-		if ((value & (0xffffffff << 28)) == 0) {
-			return 4;
-		}
-		return 5;
+	public void writeSignedInt(final int value) throws IOException {
+		writeRawVarInt(encodeZigZagInt(value));
 	}
 
 	/**
-	 * Compute the number of bytes that would be needed to encode a VarLong.
+	 * Write an {@code SignedLong} sector to the buffer.
 	 * 
 	 * @param value
 	 *            the value
-	 * @return the int
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
 	 */
-	public static int sizeOfRawVarLong(final long value) {
-		if ((value & (0xffffffffffffffffL << 7)) == 0) {
-			return 1;
-		}
-		if ((value & (0xffffffffffffffffL << 14)) == 0) {
-			return 2;
-		}
-		if ((value & (0xffffffffffffffffL << 21)) == 0) {
-			return 3;
-		}
-		if ((value & (0xffffffffffffffffL << 28)) == 0) {
-			return 4;
-		}
-		if ((value & (0xffffffffffffffffL << 35)) == 0) {
-			return 5;
-		}
-		if ((value & (0xffffffffffffffffL << 42)) == 0) {
-			return 6;
-		}
-		if ((value & (0xffffffffffffffffL << 49)) == 0) {
-			return 7;
-		}
-		if ((value & (0xffffffffffffffffL << 56)) == 0) {
-			return 8;
-		}
-		if ((value & (0xffffffffffffffffL << 63)) == 0) {
-			return 9;
-		}
-		return 10;
+	public void writeSignedLong(final long value) throws IOException {
+		writeRawVarLong(encodeZigZagLong(value));
 	}
 
-	/** The Constant LITTLE_ENDIAN_32_SIZE. */
-	private static final int LITTLE_ENDIAN_32_SIZE = 4;
-	/** The Constant LITTLE_ENDIAN_64_SIZE. */
-	private static final int LITTLE_ENDIAN_64_SIZE = 8;
+	// ------------------------ PACKED WRITER --------------------------
 
-	// ------------------------ WRITER --------------------------
+	/**
+	 * Write packed {@code int} values as VarInts, negative values
+	 * sign-extended, prefixed with their count.
+	 * 
+	 * @param values
+	 *            the values
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public void writePackedInts(final int[] values) throws IOException {
+		writePackedInts(values, 0, values.length);
+	}
 
 	/**
-	 * Write WebSocket frame length
+	 * Write a range of packed {@code int} values as VarInts, negative values
+	 * sign-extended, prefixed with their count.
 	 * 
+	 * @param values
+	 *            the values
+	 * @param offset
+	 *            the offset
 	 * @param length
 	 *            the length
 	 * @throws IOException
 	 *             Signals that an I/O exception has occurred.
 	 */
-	public void writeWsFrameLength(byte type, int length) throws IOException {
-		writeRawByte(type);
-		// Encode length.
-		int b1 = length >>> 28 & 0x7F;
-		int b2 = length >>> 14 & 0x7F;
-		int b3 = length >>> 7 & 0x7F;
-		int b4 = length & 0x7F;
-		if (b1 == 0) {
-			if (b2 == 0) {
-				if (b3 == 0) {
-					writeRawByte(b4);
-				} else {
-					writeRawByte(b3 | 0x80);
-					writeRawByte(b4);
-				}
-			} else {
-				writeRawByte(b2 | 0x80);
-				writeRawByte(b3 | 0x80);
-				writeRawByte(b4);
+	public void writePackedInts(final int[] values, final int offset,
+			final int length) throws IOException {
+		writeRawVarInt(length);
+		if (limit - position >= (long) length * MAX_VARINT64_SIZE) {
+			// Fast path: room for the longest encoding of every value.
+			int index = position;
+			for (int i = offset; i < offset + length; i++) {
+				index = values[i] >= 0 ? putRawVarInt(index, values[i])
+						: putRawVarLong(index, values[i]);
 			}
+			position = index;
 		} else {
-			writeRawByte(b1 | 0x80);
-			writeRawByte(b2 | 0x80);
-			writeRawByte(b3 | 0x80);
-			writeRawByte(b4);
+			for (int i = offset; i < offset + length; i++) {
+				writeInt(values[i]);
+			}
+		}
+	}
+
+	/**
+	 * Write packed {@code int} values as ZigZag-encoded VarInts, prefixed with
+	 * their count.
+	 * 
+	 * @param values
+	 *            the values
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public void writePackedSignedInts(final int[] values) throws IOException {
+		writePackedSignedInts(values, 0, values.length);
+	}
+
+	/**
+	 * Write a range of packed {@code int} values as ZigZag-encoded VarInts,
+	 * prefixed with their count.
+	 * 
+	 * @param values
+	 *            the values
+	 * @param offset
+	 *            the offset
+	 * @param length
+	 *            the length
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public void writePackedSignedInts(final int[] values, final int offset,
+			final int length) throws IOException {
+		writeRawVarInt(length);
+		if (limit - position >= (long) length * MAX_VARINT32_SIZE) {
+			// Fast path: room for the longest encoding of every value.
+			int index = position;
+			for (int i = offset; i < offset + length; i++) {
+				index = putRawVarInt(index, encodeZigZagInt(values[i]));
+			}
+			position = index;
+		} else {
+			for (int i = offset; i < offset + length; i++) {
+				writeSignedInt(values[i]);
+			}
 		}
 	}
 
 	/**
-	 * Write a {@code double} sector to the buffer.
+	 * Write packed {@code int} values as little-endian 32-bit integers,
+	 * prefixed with their count.
+	 * 
+	 * @param values
+	 *            the values
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public void writePackedFixedInts(final int[] values) throws IOException {
+		writePackedFixedInts(values, 0, values.length);
+	}
+
+	/**
+	 * Write a range of packed {@code int} values as little-endian 32-bit
+	 * integers, prefixed with their count.
 	 * 
-	 * @param value
-	 *            the value
+	 * @param values
+	 *            the values
+	 * @param offset
+	 *            the offset
+	 * @param length
+	 *            the length
 	 * @throws IOException
 	 *             Signals that an I/O exception has occurred.
 	 */
-	public void writeDouble(final double value) throws IOException {
-		writeRawLittleEndianLong(Double.doubleToRawLongBits(value));
+	public void writePackedFixedInts(final int[] values, final int offset,
+			final int length) throws IOException {
+		writeRawVarInt(length);
+		if (limit - position >= (long) length * LITTLE_ENDIAN_32_SIZE) {
+			// Fast path: one bounds check and a bulk copy.
+			storage.putInts(position, values, offset, length);
+			position += length * LITTLE_ENDIAN_32_SIZE;
+		} else if (pool != null) {
+			for (int i = offset; i < offset + length; i++) {
+				writeRawLittleEndianInt(values[i]);
+			}
+		} else {
+			// ZippyBufferWriter ran out of space
+			throw new IOException("ZippyBufferWriter ran out of space.");
+		}
 	}
 
 	/**
-	 * Write a {@code float} sector to the buffer.
+	 * Write packed {@code long} values as VarLongs, prefixed with their count.
 	 * 
-	 * @param value
-	 *            the value
+	 * @param values
+	 *            the values
 	 * @throws IOException
 	 *             Signals that an I/O exception has occurred.
 	 */
-	public void writeFloat(final float value) throws IOException {
-		writeRawLittleEndianInt(Float.floatToRawIntBits(value));
+	public void writePackedLongs(final long[] values) throws IOException {
+		writePackedLongs(values, 0, values.length);
 	}
 
 	/**
-	 * Write an {@code long} sector to the buffer.
+	 * Write a range of packed {@code long} values as VarLongs, prefixed with
+	 * their count.
 	 * 
-	 * @param value
-	 *            the value
+	 * @param values
+	 *            the values
+	 * @param offset
+	 *            the offset
+	 * @param length
+	 *            the length
 	 * @throws IOException
 	 *             Signals that an I/O exception has occurred.
 	 */
-	public void writeLong(final long value) throws IOException {
-		writeRawVarLong(value);
+	public void writePackedLongs(final long[] values, final int offset,
+			final int length) throws IOException {
+		writeRawVarInt(length);
+		if (limit - position >= (long) length * MAX_VARINT64_SIZE) {
+			// Fast path: room for the longest encoding of every value.
+			int index = position;
+			for (int i = offset; i < offset + length; i++) {
+				index = putRawVarLong(index, values[i]);
+			}
+			position = index;
+		} else {
+			for (int i = offset; i < offset + length; i++) {
+				writeLong(values[i]);
+			}
+		}
 	}
 
 	/**
-	 * Write an {@code int} sector to the buffer.
+	 * Write packed {@code long} values as ZigZag-encoded VarLongs, prefixed
+	 * with their count.
 	 * 
-	 * @param value
-	 *            the value
+	 * @param values
+	 *            the values
 	 * @throws IOException
 	 *             Signals that an I/O exception has occurred.
 	 */
-	public void writeInt(final int value) throws IOException {
-		if (value >= 0) {
-			writeRawVarInt(value);
-		} else {
-			// Must sign-extend.
-			writeRawVarLong(value);
-		}
+	public void writePackedSignedLongs(final long[] values) throws IOException {
+		writePackedSignedLongs(values, 0, values.length);
 	}
 
 	/**
-	 * Write a {@code FixedInt} sector to the buffer.
+	 * Write a range of packed {@code long} values as ZigZag-encoded VarLongs,
+	 * prefixed with their count.
 	 * 
-	 * @param value
-	 *            the value
+	 * @param values
+	 *            the values
+	 * @param offset
+	 *            the offset
+	 * @param length
+	 *            the length
 	 * @throws IOException
 	 *             Signals that an I/O exception has occurred.
 	 */
-	public void writeUnsignedFixedInt(final int value) throws IOException {
-		writeRawLittleEndianInt(value);
+	public void writePackedSignedLongs(final long[] values, final int offset,
+			final int length) throws IOException {
+		writeRawVarInt(length);
+		if (limit - position >= (long) length * MAX_VARINT64_SIZE) {
+			// Fast path: room for the longest encoding of every value.
+			int index = position;
+			for (int i = offset; i < offset + length; i++) {
+				index = putRawVarLong(index, encodeZigZagLong(values[i]));
+			}
+			position = index;
+		} else {
+			for (int i = offset; i < offset + length; i++) {
+				writeSignedLong(values[i]);
+			}
+		}
 	}
 
 	/**
-	 * Write a {@code FixedLong} sector to the buffer.
+	 * Write packed {@code long} values as little-endian 64-bit integers,
+	 * prefixed with their count.
 	 * 
-	 * @param value
-	 *            the value
+	 * @param values
+	 *            the values
 	 * @throws IOException
 	 *             Signals that an I/O exception has occurred.
 	 */
-	public void writeUnsignedFixedLong(final long value) throws IOException {
-		writeRawLittleEndianLong(value);
+	public void writePackedFixedLongs(final long[] values) throws IOException {
+		writePackedFixedLongs(values, 0, values.length);
 	}
 
 	/**
-	 * Write a {@code boolean} sector to the buffer.
+	 * Write a range of packed {@code long} values as little-endian 64-bit
+	 * integers, prefixed with their count.
 	 * 
-	 * @param value
-	 *            the value
+	 * @param values
+	 *            the values
+	 * @param offset
+	 *            the offset
+	 * @param length
+	 *            the length
 	 * @throws IOException
 	 *             Signals that an I/O exception has occurred.
 	 */
-	public void writeBoolean(final boolean value) throws IOException {
-		writeRawByte(value ? 1 : 0);
+	public void writePackedFixedLongs(final long[] values, final int offset,
+			final int length) throws IOException {
+		writeRawVarInt(length);
+		if (limit - position >= (long) length * LITTLE_ENDIAN_64_SIZE) {
+			// Fast path: one bounds check and a bulk copy.
+			storage.putLongs(position, values, offset, length);
+			position += length * LITTLE_ENDIAN_64_SIZE;
+		} else if (pool != null) {
+			for (int i = offset; i < offset + length; i++) {
+				writeRawLittleEndianLong(values[i]);
+			}
+		} else {
+			// ZippyBufferWriter ran out of space
+			throw new IOException("ZippyBufferWriter ran out of space.");
+		}
 	}
 
 	/**
-	 * Write a {@code string} sector to the buffer.
+	 * Write packed {@code float} values, prefixed with their count.
 	 * 
-	 * @param value
-	 *            the value
+	 * @param values
+	 *            the values
 	 * @throws IOException
 	 *             Signals that an I/O exception has occurred.
 	 */
-	public void writeString(final String value) throws IOException {
-		// Unfortunately there does not appear to be any way to tell Java to
-		// encode UTF-8 directly into our buffer, so we have to let it create
-		// its own byte array and then copy.
-		final byte[] bytes = value.getBytes("UTF-8");
-		writeRawVarInt(bytes.length);
-		writeRawBytes(bytes);
+	public void writePackedFloats(final float[] values) throws IOException {
+		writePackedFloats(values, 0, values.length);
 	}
 
 	/**
-	 * Write a {@code bytes} sector to the buffer.
+	 * Write a range of packed {@code float} values, prefixed with their count.
 	 * 
-	 * @param bytes
-	 *            the bytes
+	 * @param values
+	 *            the values
+	 * @param offset
+	 *            the offset
+	 * @param length
+	 *            the length
 	 * @throws IOException
 	 *             Signals that an I/O exception has occurred.
 	 */
-	public void writeBytes(final byte[] bytes) throws IOException {
-		writeRawVarInt(bytes.length);
-		writeRawBytes(bytes);
+	public void writePackedFloats(final float[] values, final int offset,
+			final int length) throws IOException {
+		writeRawVarInt(length);
+		if (limit - position >= (long) length * LITTLE_ENDIAN_32_SIZE) {
+			// Fast path: one bounds check and a bulk copy.
+			storage.putFloats(position, values, offset, length);
+			position += length * LITTLE_ENDIAN_32_SIZE;
+		} else if (pool != null) {
+			for (int i = offset; i < offset + length; i++) {
+				writeFloat(values[i]);
+			}
+		} else {
+			// ZippyBufferWriter ran out of space
+			throw new IOException("ZippyBufferWriter ran out of space.");
+		}
 	}
 
 	/**
-	 * Write a {@code UnsignedInt} sector to the buffer.
+	 * Write packed {@code double} values, prefixed with their count.
 	 * 
-	 * @param value
-	 *            the value
+	 * @param values
+	 *            the values
 	 * @throws IOException
 	 *             Signals that an I/O exception has occurred.
 	 */
-	public void writeUnsignedInt(final int value) throws IOException {
-		writeRawVarInt(value);
+	public void writePackedDoubles(final double[] values) throws IOException {
+		writePackedDoubles(values, 0, values.length);
 	}
 
 	/**
-	 * Write a {@code UnsignedLong} sector to the buffer.
+	 * Write a range of packed {@code double} values, prefixed with their count.
 	 * 
-	 * @param value
-	 *            the value
+	 * @param values
+	 *            the values
+	 * @param offset
+	 *            the offset
+	 * @param length
+	 *            the length
 	 * @throws IOException
 	 *             Signals that an I/O exception has occurred.
 	 */
-	public void writeUnsignedLong(final long value) throws IOException {
-		writeRawVarLong(value);
+	public void writePackedDoubles(final double[] values, final int offset,
+			final int length) throws IOException {
+		writeRawVarInt(length);
+		if (limit - position >= (long) length * LITTLE_ENDIAN_64_SIZE) {
+			// Fast path: one bounds check and a bulk copy.
+			storage.putDoubles(position, values, offset, length);
+			position += length * LITTLE_ENDIAN_64_SIZE;
+		} else if (pool != null) {
+			for (int i = offset; i < offset + length; i++) {
+				writeDouble(values[i]);
+			}
+		} else {
+			// ZippyBufferWriter ran out of space
+			throw new IOException("ZippyBufferWriter ran out of space.");
+		}
 	}
 
 	/**
-	 * Write an {@code SignedFixedInt} sector to the buffer.
+	 * Write packed {@code boolean} values, one byte each, prefixed with their
+	 * count.
 	 * 
-	 * @param value
-	 *            the value
+	 * @param values
+	 *            the values
 	 * @throws IOException
 	 *             Signals that an I/O exception has occurred.
 	 */
-	public void writeSignedFixedInt(final int value) throws IOException {
-		writeRawLittleEndianInt(value);
+	public void writePackedBooleans(final boolean[] values) throws IOException {
+		writePackedBooleans(values, 0, values.length);
 	}
 
 	/**
-	 * Write an {@code SignedFixedLong} sector to the buffer.
+	 * Write a range of packed {@code boolean} values, one byte each, prefixed
+	 * with their count.
 	 * 
-	 * @param value
-	 *            the value
+	 * @param values
+	 *            the values
+	 * @param offset
+	 *            the offset
+	 * @param length
+	 *            the length
 	 * @throws IOException
 	 *             Signals that an I/O exception has occurred.
 	 */
-	public void writeSignedFixedLong(final long value) throws IOException {
-		writeRawLittleEndianLong(value);
+	public void writePackedBooleans(final boolean[] values, final int offset,
+			final int length) throws IOException {
+		writeRawVarInt(length);
+		if (limit - position >= length) {
+			// Fast path: one bounds check for all values.
+			for (int i = offset; i < offset + length; i++) {
+				storage.put(position++, (byte) (values[i] ? 1 : 0));
+			}
+		} else {
+			for (int i = offset; i < offset + length; i++) {
+				writeBoolean(values[i]);
+			}
+		}
 	}
 
 	/**
-	 * Write an {@code SignedInt} sector to the buffer.
+	 * Encode a VarInt at an index without any bounds check. The encoding is
+	 * unrolled, one branch per encoded byte.
 	 * 
+	 * @param index
+	 *            the index
 	 * @param value
 	 *            the value
-	 * @throws IOException
-	 *             Signals that an I/O exception has occurred.
+	 * @return the index after the last byte
 	 */
-	public void writeSignedInt(final int value) throws IOException {
-		writeRawVarInt(encodeZigZagInt(value));
+	private int putRawVarInt(int index, final int value) {
+		if ((value & (0xFFFFFFFF << 7)) == 0) {
+			storage.put(index, (byte) value);
+			return index + 1;
+		}
+		storage.put(index++, (byte) (value | 0x80));
+		if ((value & (0xFFFFFFFF << 14)) == 0) {
+			storage.put(index, (byte) (value >>> 7));
+			return index + 1;
+		}
+		storage.put(index++, (byte) ((value >>> 7) | 0x80));
+		if ((value & (0xFFFFFFFF << 21)) == 0) {
+			storage.put(index, (byte) (value >>> 14));
+			return index + 1;
+		}
+		storage.put(index++, (byte) ((value >>> 14) | 0x80));
+		if ((value & (0xFFFFFFFF << 28)) == 0) {
+			storage.put(index, (byte) (value >>> 21));
+			return index + 1;
+		}
+		storage.put(index++, (byte) ((value >>> 21) | 0x80));
+		storage.put(index, (byte) (value >>> 28));
+		return index + 1;
 	}
 
 	/**
-	 * Write an {@code SignedLong} sector to the buffer.
+	 * Encode a VarLong at an index without any bounds check. Values fitting
+	 * in 32 unsigned bits share the unrolled VarInt encoding.
 	 * 
+	 * @param index
+	 *            the index
 	 * @param value
 	 *            the value
-	 * @throws IOException
-	 *             Signals that an I/O exception has occurred.
+	 * @return the index after the last byte
 	 */
-	public void writeSignedLong(final long value) throws IOException {
-		writeRawVarLong(encodeZigZagLong(value));
+	private int putRawVarLong(final int index, long value) {
+		if ((value >>> 32) == 0) {
+			return putRawVarInt(index, (int) value);
+		}
+		int i = index;
+		while ((value & ~0x7FL) != 0) {
+			storage.put(i++, (byte) (((int) value & 0x7F) | 0x80));
+			value >>>= 7;
+		}
+		storage.put(i++, (byte) value);
+		return i;
 	}
 
 	// =================================================================
@@ -1087,10 +2895,9 @@ public final class ZippyBuffer {
 	 */
 	public void writeRawByte(final byte value) throws IOException {
 		if (position == limit) {
-			// ZippyBufferWriter ran out of space
-			throw new IOException("ZippyBufferWriter ran out of space.");
+			nextSegment();
 		}
-		buffer[position++] = value;
+		storage.put(position++, value);
 	}
 
 	/**
@@ -1133,8 +2940,56 @@ public final class ZippyBuffer {
 			throws IOException {
 		if (limit - position >= length) {
 			// We have room in the current buffer.
-			System.arraycopy(value, offset, buffer, position, length);
+			storage.put(position, value, offset, length);
+			position += length;
+		} else if (pool != null) {
+			// Spread the bytes over as many segments as needed.
+			while (length > 0) {
+				if (position == limit) {
+					nextSegment();
+				}
+				final int chunk = Math.min(limit - position, length);
+				storage.put(position, value, offset, chunk);
+				position += chunk;
+				offset += chunk;
+				length -= chunk;
+			}
+		} else {
+			// ZippyBufferWriter ran out of space
+			throw new IOException("ZippyBufferWriter ran out of space.");
+		}
+	}
+
+	/**
+	 * Write a range of another storage.
+	 * 
+	 * @param src
+	 *            the source storage
+	 * @param offset
+	 *            the offset
+	 * @param length
+	 *            the length
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public void writeRawBytes(final ZippyStorage src, int offset, int length)
+			throws IOException {
+		if (limit - position >= length) {
+			// We have room in the current buffer.
+			storage.put(position, src, offset, length);
 			position += length;
+		} else if (pool != null) {
+			// Spread the bytes over as many segments as needed.
+			while (length > 0) {
+				if (position == limit) {
+					nextSegment();
+				}
+				final int chunk = Math.min(limit - position, length);
+				storage.put(position, src, offset, chunk);
+				position += chunk;
+				offset += chunk;
+				length -= chunk;
+			}
 		} else {
 			// ZippyBufferWriter ran out of space
 			throw new IOException("ZippyBufferWriter ran out of space.");
@@ -1143,43 +2998,37 @@ public final class ZippyBuffer {
 
 	/**
 	 * Encode and write a VarInt. {@code value} is treated as unsigned, so it
-	 * won't be sign-extended if negative.
+	 * won't be sign-extended if negative. The capacity is checked once for the
+	 * whole value, so a VarInt is never left half written.
 	 * 
 	 * @param value
 	 *            the value
 	 * @throws IOException
 	 *             Signals that an I/O exception has occurred.
 	 */
-	public void writeRawVarInt(int value) throws IOException {
-		while (true) {
-			if ((value & ~0x7F) == 0) {
-				writeRawByte(value);
-				return;
-			} else {
-				writeRawByte((value & 0x7F) | 0x80);
-				value >>>= 7;
-			}
+	public void writeRawVarInt(final int value) throws IOException {
+		if (limit - position < MAX_VARINT32_SIZE
+				&& limit - position < sizeOfRawVarInt(value)) {
+			nextSegment();
 		}
+		position = putRawVarInt(position, value);
 	}
 
 	/**
-	 * Encode and write a VarLong.
+	 * Encode and write a VarLong. The capacity is checked once for the whole
+	 * value, so a VarLong is never left half written.
 	 * 
 	 * @param value
 	 *            the value
 	 * @throws IOException
 	 *             Signals that an I/O exception has occurred.
 	 */
-	public void writeRawVarLong(long value) throws IOException {
-		while (true) {
-			if ((value & ~0x7FL) == 0) {
-				writeRawByte((int) value);
-				return;
-			} else {
-				writeRawByte(((int) value & 0x7F) | 0x80);
-				value >>>= 7;
-			}
+	public void writeRawVarLong(final long value) throws IOException {
+		if (limit - position < MAX_VARINT64_SIZE
+				&& limit - position < sizeOfRawVarLong(value)) {
+			nextSegment();
 		}
+		position = putRawVarLong(position, value);
 	}
 
 	/**
@@ -1191,6 +3040,12 @@ public final class ZippyBuffer {
 	 *             Signals that an I/O exception has occurred.
 	 */
 	public void writeRawLittleEndianInt(final int value) throws IOException {
+		if (limit - position >= LITTLE_ENDIAN_32_SIZE) {
+			// Fast path: one bounds check and one word store.
+			storage.putIntLE(position, value);
+			position += LITTLE_ENDIAN_32_SIZE;
+			return;
+		}
 		writeRawByte((value) & 0xFF);
 		writeRawByte((value >> 8) & 0xFF);
 		writeRawByte((value >> 16) & 0xFF);
@@ -1206,6 +3061,12 @@ public final class ZippyBuffer {
 	 *             Signals that an I/O exception has occurred.
 	 */
 	public void writeRawLittleEndianLong(final long value) throws IOException {
+		if (limit - position >= LITTLE_ENDIAN_64_SIZE) {
+			// Fast path: one bounds check and one word store.
+			storage.putLongLE(position, value);
+			position += LITTLE_ENDIAN_64_SIZE;
+			return;
+		}
 		writeRawByte((int) (value) & 0xFF);
 		writeRawByte((int) (value >> 8) & 0xFF);
 		writeRawByte((int) (value >> 16) & 0xFF);
@@ -1248,6 +3109,129 @@ public final class ZippyBuffer {
 		return (n << 1) ^ (n >> 63);
 	}
 
+	// ------------------------ SEGMENTS --------------------------
+
+	/**
+	 * Seals the current segment and continues in a fresh one taken from the
+	 * pool.
+	 * 
+	 * @throws IOException
+	 *             if this buffer is not a segmented writer.
+	 */
+	private void nextSegment() throws IOException {
+		if (pool == null) {
+			// ZippyBufferWriter ran out of space
+			throw new IOException("ZippyBufferWriter ran out of space.");
+		}
+		if (position > 0) {
+			segments.add(new ZippySegment(storage, 0, position));
+			sealedSize += position;
+		} else {
+			pool.release(storage.array());
+		}
+		storage = new ZippyHeapStorage(pool.acquire());
+		limit = storage.capacity();
+		position = 0;
+		mark = 0;
+	}
+
+	/**
+	 * Checks if this buffer is a segmented writer.
+	 * 
+	 * @return true, if is segmented
+	 */
+	public boolean isSegmented() {
+		return pool != null;
+	}
+
+	/**
+	 * Returns the bytes written so far as a list of segments, ready for a
+	 * gathering write or a single copy. A plain buffer returns the range from
+	 * its initial offset to the current position.
+	 * 
+	 * @return the segments
+	 */
+	public List<ZippySegment> getSegments() {
+		final ZippySegment current = new ZippySegment(storage, offset, position
+				- offset);
+		if (pool == null) {
+			return Collections.singletonList(current);
+		}
+		final List<ZippySegment> result = new ArrayList<ZippySegment>(
+				segments.size() + 1);
+		result.addAll(segments);
+		if (current.getLength() > 0) {
+			result.add(current);
+		}
+		return Collections.unmodifiableList(result);
+	}
+
+	/**
+	 * Returns the number of bytes written so far over all segments.
+	 * 
+	 * @return the written size
+	 */
+	public int getWrittenSize() {
+		return sealedSize + position - offset;
+	}
+
+	/**
+	 * Wraps the written segments into byte buffers for
+	 * {@link java.nio.channels.GatheringByteChannel#write(ByteBuffer[])}. No
+	 * bytes are copied.
+	 * 
+	 * @return the byte buffers
+	 */
+	public ByteBuffer[] toByteBuffers() {
+		final List<ZippySegment> list = getSegments();
+		final ByteBuffer[] result = new ByteBuffer[list.size()];
+		for (int i = 0; i < result.length; i++) {
+			result[i] = list.get(i).toByteBuffer();
+		}
+		return result;
+	}
+
+	/**
+	 * Copies the written segments into a single array.
+	 * 
+	 * @return the byte[]
+	 */
+	public byte[] toByteArray() {
+		final List<ZippySegment> list = getSegments();
+		final byte[] result = new byte[getWrittenSize()];
+		int index = 0;
+		for (int i = 0; i < list.size(); i++) {
+			final ZippySegment segment = list.get(i);
+			segment.copyTo(result, index);
+			index += segment.getLength();
+		}
+		return result;
+	}
+
+	/**
+	 * Returns all segments of a segmented writer to the pool and empties it,
+	 * so the writer can be used again. Segments previously returned by
+	 * {@link #getSegments()} must not be used afterwards. Does nothing for a
+	 * plain buffer.
+	 */
+	public void release() {
+		if (pool == null) {
+			return;
+		}
+		for (int i = 0; i < segments.size(); i++) {
+			pool.release(segments.get(i).getStorage().array());
+		}
+		segments.clear();
+		sealedSize = 0;
+		pool.release(storage.array());
+		storage = EMPTY;
+		limit = 0;
+		position = 0;
+		mark = 0;
+	}
+
+	// ------------------------ POSITION --------------------------
+
 	/**
 	 * Sets this buffer's position.
 	 * 
@@ -1269,7 +3253,8 @@ public final class ZippyBuffer {
 	}
 
 	/**
-	 * Returns this buffer's limit. Remember: the buffer's limit is final!
+	 * Returns this buffer's limit. Remember: the buffer's limit is final
+	 * unless it is a segmented writer!
 	 * 
 	 * @return
 	 */
@@ -1277,6 +3262,16 @@ public final class ZippyBuffer {
 		return limit;
 	}
 
+	/**
+	 * Returns the number of bytes between this buffer's position and its
+	 * limit.
+	 * 
+	 * @return
+	 */
+	public int remaining() {
+		return limit - position;
+	}
+
 	/**
 	 * Sets this buffer's mark at its position.
 	 * 
@@ -1299,13 +3294,27 @@ public final class ZippyBuffer {
 	}
 
 	/**
-	 * Rewinds this buffer. The position and the mark are set to zero.
+	 * Prepares a recycled buffer for a new use: the limit is set to the given
+	 * length past the offset, the position and the mark to the offset.
+	 * 
+	 * @param length
+	 *            the length
+	 */
+	void recycle(final int length) {
+		limit = offset + length;
+		position = offset;
+		mark = offset;
+	}
+
+	/**
+	 * Rewinds this buffer. The position and the mark are set to the offset the
+	 * buffer was created with, zero unless it is a view.
 	 * 
 	 * @return
 	 */
 	public ZippyBuffer rewind() {
-		position = 0;
-		mark = 0;
+		position = offset;
+		mark = offset;
 		return this;
 	}
 }
@@ -0,0 +1,398 @@
+/*******************************************************************************
+ * Copyright (c) 2011 - 2014 DigiArea, Inc. and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     DigiArea, Inc. - initial API and implementation
+ *******************************************************************************/
+package com.digiarea.zippy;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A recycler of {@link ZippyPooledBuffer}s in power of two size classes.
+ * Every thread first serves itself from a small cache of its own, then from
+ * one of several shared stripes picked by thread, so threads seldom contend.
+ * Requests larger than the largest size class are allocated and dropped as
+ * usual.
+ * <p>
+ * Acquired buffers must be released explicitly. An optional leak detector
+ * tracks a sample of the acquired buffers and reports those collected by the
+ * garbage collector without having been released, see {@link #getLeaks()}
+ * and {@link #getLastLeak()}. This class is thread-safe.
+ */
+public final class ZippyBufferPool {
+
+	/** The default smallest size class. */
+	public static final int DEFAULT_MIN_SIZE = 256;
+
+	/** The default largest size class. */
+	public static final int DEFAULT_MAX_SIZE = 1024 * 1024;
+
+	/** The default number of buffers per size class cached by a thread. */
+	public static final int DEFAULT_THREAD_CACHE_SIZE = 8;
+
+	/** The default number of buffers per size class kept by a stripe. */
+	public static final int DEFAULT_STRIPE_SIZE = 64;
+
+	/** The smallest size class, as a power of two. */
+	private final int minShift;
+
+	/** The number of size classes. */
+	private final int classes;
+
+	/** The number of buffers per size class cached by a thread. */
+	private final int threadCacheSize;
+
+	/** The number of buffers per size class kept by a stripe. */
+	private final int stripeSize;
+
+	/** One acquire out of this many is tracked, zero to disable tracking. */
+	private final int leakSampleRate;
+
+	/** The stripes. */
+	private final Stripe[] stripes;
+
+	/** The caches of the threads. */
+	private final ThreadLocal<Cache> caches = new ThreadLocal<Cache>() {
+
+		@Override
+		protected Cache initialValue() {
+			return new Cache(classes, threadCacheSize, stripes[(int) (Thread
+					.currentThread().getId() & (stripes.length - 1))]);
+		}
+
+	};
+
+	/** The number of acquires since the last tracked one. */
+	private final AtomicInteger samples = new AtomicInteger();
+
+	/** The trackers of the sampled buffers. */
+	private final Map<Reference<?>, Throwable> trackers =
+			new ConcurrentHashMap<Reference<?>, Throwable>();
+
+	/** The queue of the collected sampled buffers. */
+	private final ReferenceQueue<ZippyPooledBuffer> collected =
+			new ReferenceQueue<ZippyPooledBuffer>();
+
+	/** The number of leaks. */
+	private final AtomicLong leaks = new AtomicLong();
+
+	/** The acquisition trace of the last leak. */
+	private volatile Throwable lastLeak;
+
+	/**
+	 * Instantiates a new zippy buffer pool with default settings and no leak
+	 * detection.
+	 */
+	public ZippyBufferPool() {
+		this(DEFAULT_MIN_SIZE, DEFAULT_MAX_SIZE, DEFAULT_THREAD_CACHE_SIZE,
+				DEFAULT_STRIPE_SIZE, 0);
+	}
+
+	/**
+	 * Instantiates a new zippy buffer pool.
+	 * 
+	 * @param minSize
+	 *            the smallest size class, rounded up to a power of two
+	 * @param maxSize
+	 *            the largest size class, rounded up to a power of two
+	 * @param threadCacheSize
+	 *            the number of buffers per size class cached by a thread
+	 * @param stripeSize
+	 *            the number of buffers per size class kept by a stripe
+	 * @param leakSampleRate
+	 *            track one acquire out of this many for leaks, zero to
+	 *            disable the leak detection
+	 */
+	public ZippyBufferPool(final int minSize, final int maxSize,
+			final int threadCacheSize, final int stripeSize,
+			final int leakSampleRate) {
+		super();
+		if (minSize <= 0 || maxSize < minSize || maxSize > (1 << 30)) {
+			throw new IllegalArgumentException(
+					"ZippyBufferPool invalid size classes.");
+		}
+		minShift = shift(minSize);
+		classes = shift(maxSize) - minShift + 1;
+		this.threadCacheSize = threadCacheSize;
+		this.stripeSize = stripeSize;
+		this.leakSampleRate = leakSampleRate;
+		final int processors = Runtime.getRuntime().availableProcessors();
+		stripes = new Stripe[Integer.highestOneBit(processors * 2 - 1)];
+		for (int i = 0; i < stripes.length; i++) {
+			stripes[i] = new Stripe(classes);
+		}
+	}
+
+	/**
+	 * Computes the power of two of the smallest size class holding a size.
+	 * 
+	 * @param size
+	 *            the size
+	 * @return the int
+	 */
+	private static int shift(final int size) {
+		return size <= 1 ? 0 : 32 - Integer.numberOfLeadingZeros(size - 1);
+	}
+
+	/**
+	 * Acquires a buffer of at least the given size.
+	 * 
+	 * @param size
+	 *            the size
+	 * @return the zippy pooled buffer
+	 */
+	public ZippyPooledBuffer acquire(final int size) {
+		final int sizeClass = Math.max(0, shift(size) - minShift);
+		final ZippyPooledBuffer result;
+		if (sizeClass >= classes) {
+			result = new ZippyPooledBuffer(this, -1, size);
+		} else {
+			final Cache cache = caches.get();
+			final ZippyPooledBuffer cached = cache.pop(sizeClass);
+			if (cached != null) {
+				cache.stripe.hits.incrementAndGet();
+				result = cached;
+			} else {
+				final ZippyPooledBuffer shared = cache.stripe.free[sizeClass]
+						.poll();
+				if (shared != null) {
+					cache.stripe.counts[sizeClass].decrementAndGet();
+					cache.stripe.hits.incrementAndGet();
+					result = shared;
+				} else {
+					cache.stripe.misses.incrementAndGet();
+					result = new ZippyPooledBuffer(this, sizeClass,
+							1 << (sizeClass + minShift));
+				}
+			}
+		}
+		result.acquired = true;
+		if (leakSampleRate > 0) {
+			track(result);
+		}
+		return result;
+	}
+
+	/**
+	 * Releases a buffer to the cache of the current thread, or to its stripe
+	 * if that cache is full.
+	 * 
+	 * @param buffer
+	 *            the buffer
+	 */
+	public void release(final ZippyPooledBuffer buffer) {
+		if (!buffer.acquired) {
+			throw new IllegalStateException(
+					"ZippyPooledBuffer is already released.");
+		}
+		buffer.acquired = false;
+		if (buffer.tracker != null) {
+			trackers.remove(buffer.tracker);
+			buffer.tracker.clear();
+			buffer.tracker = null;
+		}
+		final int sizeClass = buffer.sizeClass;
+		if (sizeClass < 0) {
+			return;
+		}
+		final Cache cache = caches.get();
+		if (cache.push(buffer)) {
+			return;
+		}
+		final Stripe stripe = cache.stripe;
+		if (stripe.counts[sizeClass].incrementAndGet() > stripeSize) {
+			stripe.counts[sizeClass].decrementAndGet();
+			return;
+		}
+		stripe.free[sizeClass].offer(buffer);
+	}
+
+	/**
+	 * Tracks one acquired buffer out of {@link #leakSampleRate} and reports
+	 * the tracked buffers collected since the last call.
+	 * 
+	 * @param buffer
+	 *            the buffer
+	 */
+	private void track(final ZippyPooledBuffer buffer) {
+		Reference<?> reference;
+		while ((reference = collected.poll()) != null) {
+			final Throwable trace = trackers.remove(reference);
+			if (trace != null) {
+				leaks.incrementAndGet();
+				lastLeak = trace;
+			}
+		}
+		if (samples.incrementAndGet() % leakSampleRate == 0) {
+			buffer.tracker = new WeakReference<ZippyPooledBuffer>(buffer,
+					collected);
+			trackers.put(buffer.tracker, new Throwable(
+					"ZippyPooledBuffer acquired here was never released."));
+		}
+	}
+
+	/**
+	 * Gets the number of acquires served by a cached buffer.
+	 * 
+	 * @return the hits
+	 */
+	public long getHits() {
+		long result = 0;
+		for (int i = 0; i < stripes.length; i++) {
+			result += stripes[i].hits.get();
+		}
+		return result;
+	}
+
+	/**
+	 * Gets the number of acquires that had to allocate a pooled buffer, not
+	 * counting requests larger than the largest size class.
+	 * 
+	 * @return the misses
+	 */
+	public long getMisses() {
+		long result = 0;
+		for (int i = 0; i < stripes.length; i++) {
+			result += stripes[i].misses.get();
+		}
+		return result;
+	}
+
+	/**
+	 * Gets the number of sampled buffers found collected without having been
+	 * released. Leaks are detected as the garbage collector finds them, and
+	 * only for a sample of the buffers.
+	 * 
+	 * @return the leaks
+	 */
+	public long getLeaks() {
+		return leaks.get();
+	}
+
+	/**
+	 * Gets the acquisition trace of the last leaked buffer.
+	 * 
+	 * @return the throwable, {@code null} if no leak was found
+	 */
+	public Throwable getLastLeak() {
+		return lastLeak;
+	}
+
+	/**
+	 * The cache of a thread.
+	 */
+	private static final class Cache {
+
+		/** The stripe of the thread. */
+		final Stripe stripe;
+
+		/** The cached buffers per size class. */
+		private final ZippyPooledBuffer[][] buffers;
+
+		/** The number of cached buffers per size class. */
+		private final int[] counts;
+
+		/**
+		 * Instantiates a new cache.
+		 * 
+		 * @param classes
+		 *            the number of size classes
+		 * @param size
+		 *            the number of buffers per size class
+		 * @param stripe
+		 *            the stripe
+		 */
+		Cache(final int classes, final int size, final Stripe stripe) {
+			super();
+			this.stripe = stripe;
+			buffers = new ZippyPooledBuffer[classes][size];
+			counts = new int[classes];
+		}
+
+		/**
+		 * Takes a cached buffer.
+		 * 
+		 * @param sizeClass
+		 *            the size class
+		 * @return the buffer, {@code null} if none is cached
+		 */
+		ZippyPooledBuffer pop(final int sizeClass) {
+			final int count = counts[sizeClass];
+			if (count == 0) {
+				return null;
+			}
+			counts[sizeClass] = count - 1;
+			final ZippyPooledBuffer result = buffers[sizeClass][count - 1];
+			buffers[sizeClass][count - 1] = null;
+			return result;
+		}
+
+		/**
+		 * Caches a buffer.
+		 * 
+		 * @param buffer
+		 *            the buffer
+		 * @return true, if cached, false if the cache is full
+		 */
+		boolean push(final ZippyPooledBuffer buffer) {
+			final int sizeClass = buffer.sizeClass;
+			final int count = counts[sizeClass];
+			if (count == buffers[sizeClass].length) {
+				return false;
+			}
+			buffers[sizeClass][count] = buffer;
+			counts[sizeClass] = count + 1;
+			return true;
+		}
+
+	}
+
+	/**
+	 * A shared part of the pool.
+	 */
+	private static final class Stripe {
+
+		/** The free buffers per size class. */
+		final ConcurrentLinkedQueue<ZippyPooledBuffer>[] free;
+
+		/** The number of free buffers per size class. */
+		final AtomicInteger[] counts;
+
+		/** The hits. */
+		final AtomicLong hits = new AtomicLong();
+
+		/** The misses. */
+		final AtomicLong misses = new AtomicLong();
+
+		/**
+		 * Instantiates a new stripe.
+		 * 
+		 * @param classes
+		 *            the number of size classes
+		 */
+		@SuppressWarnings({ "unchecked", "rawtypes" })
+		Stripe(final int classes) {
+			super();
+			free = new ConcurrentLinkedQueue[classes];
+			counts = new AtomicInteger[classes];
+			for (int i = 0; i < classes; i++) {
+				free[i] = new ConcurrentLinkedQueue<ZippyPooledBuffer>();
+				counts[i] = new AtomicInteger();
+			}
+		}
+
+	}
+
+}
@@ -0,0 +1,342 @@
+/*******************************************************************************
+ * Copyright (c) 2011 - 2014 DigiArea, Inc. and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     DigiArea, Inc. - initial API and implementation
+ *******************************************************************************/
+package com.digiarea.zippy;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The {@link ZippyStorage} presenting several non-contiguous chunks, e.g. the
+ * network reads of one message or the segments of a segmented writer, as one
+ * logical range of bytes starting at index zero. Values straddling a chunk
+ * boundary are assembled byte by byte, all others go straight to the chunk
+ * storage, and as {@link ZippyBuffer} positions are logical indexes its
+ * {@link ZippyBuffer#mark()} and {@link ZippyBuffer#reset()} work across
+ * chunks. No bytes are copied, except by {@link #toByteBuffer(int, int)} for
+ * a range spanning several chunks.
+ * <p>
+ * Chunks may be added at any time; a buffer only sees the capacity it was
+ * created with. The storage remembers the last chunk accessed and is not
+ * thread-safe.
+ */
+public final class ZippyCompositeStorage extends ZippyStorage {
+
+	/** The initial number of chunk slots. */
+	private static final int INITIAL_CHUNKS = 8;
+
+	/** The chunk storages. */
+	private ZippyStorage[] storages = new ZippyStorage[INITIAL_CHUNKS];
+
+	/** The chunk offsets within their storages. */
+	private int[] offsets = new int[INITIAL_CHUNKS];
+
+	/**
+	 * The logical index of every chunk, followed by the capacity of the
+	 * storage.
+	 */
+	private int[] starts = new int[INITIAL_CHUNKS + 1];
+
+	/** The number of chunks. */
+	private int count;
+
+	/** The last chunk accessed. */
+	private int cursor;
+
+	/**
+	 * Instantiates a new empty zippy composite storage.
+	 */
+	public ZippyCompositeStorage() {
+		super();
+	}
+
+	/**
+	 * Instantiates a new zippy composite storage over segments, e.g. the
+	 * output of a segmented {@link ZippyBuffer} writer.
+	 * 
+	 * @param chunks
+	 *            the chunks
+	 */
+	public ZippyCompositeStorage(final List<ZippySegment> chunks) {
+		super();
+		for (final ZippySegment chunk : chunks) {
+			add(chunk.getStorage(), chunk.getOffset(), chunk.getLength());
+		}
+	}
+
+	/**
+	 * Appends a chunk of a byte array.
+	 * 
+	 * @param array
+	 *            the array
+	 * @param offset
+	 *            the offset
+	 * @param length
+	 *            the length
+	 * @return the zippy composite storage
+	 */
+	public ZippyCompositeStorage add(final byte[] array, final int offset,
+			final int length) {
+		return add(new ZippyHeapStorage(array), offset, length);
+	}
+
+	/**
+	 * Appends a chunk of a storage.
+	 * 
+	 * @param storage
+	 *            the storage
+	 * @param offset
+	 *            the offset
+	 * @param length
+	 *            the length
+	 * @return the zippy composite storage
+	 */
+	public ZippyCompositeStorage add(final ZippyStorage storage,
+			final int offset, final int length) {
+		if (length < 0 || starts[count] + length < 0) {
+			throw new IllegalArgumentException(
+					"ZippyCompositeStorage chunk is too large.");
+		}
+		if (length == 0) {
+			// Empty chunks would break the lookup of the chunk of an index.
+			return this;
+		}
+		if (count == storages.length) {
+			storages = Arrays.copyOf(storages, count * 2);
+			offsets = Arrays.copyOf(offsets, count * 2);
+			starts = Arrays.copyOf(starts, count * 2 + 1);
+		}
+		storages[count] = storage;
+		offsets[count] = offset;
+		starts[count + 1] = starts[count] + length;
+		count++;
+		return this;
+	}
+
+	/**
+	 * Gets the number of chunks.
+	 * 
+	 * @return the chunk count
+	 */
+	public int getChunkCount() {
+		return count;
+	}
+
+	/**
+	 * Finds the chunk holding a byte, trying the last chunk accessed first.
+	 * 
+	 * @param index
+	 *            the index
+	 * @return the chunk
+	 */
+	private int chunk(final int index) {
+		int c = cursor;
+		if (index < starts[c] || index >= starts[c + 1]) {
+			if (index >= starts[c + 1] && c + 1 < count
+					&& index < starts[c + 2]) {
+				// Sequential reads move on to the next chunk.
+				c++;
+			} else {
+				c = Arrays.binarySearch(starts, 0, count, index);
+				if (c < 0) {
+					c = Math.max(-c - 2, 0);
+				}
+			}
+			cursor = c;
+		}
+		return c;
+	}
+
+	/**
+	 * Finds the chunk holding a whole range, if any.
+	 * 
+	 * @param index
+	 *            the index
+	 * @param length
+	 *            the length
+	 * @return the chunk or -1 if the range spans several chunks
+	 */
+	private int chunk(final int index, final int length) {
+		final int c = chunk(index);
+		return index + length <= starts[c + 1] ? c : -1;
+	}
+
+	@Override
+	public int capacity() {
+		return starts[count];
+	}
+
+	@Override
+	public byte get(final int index) {
+		final int c = chunk(index);
+		return storages[c].get(offsets[c] + index - starts[c]);
+	}
+
+	@Override
+	public void put(final int index, final byte value) {
+		final int c = chunk(index);
+		storages[c].put(offsets[c] + index - starts[c], value);
+	}
+
+	@Override
+	public void get(int index, final byte[] dst, int offset, int length) {
+		while (length > 0) {
+			final int c = chunk(index);
+			final int n = Math.min(length, starts[c + 1] - index);
+			storages[c].get(offsets[c] + index - starts[c], dst, offset, n);
+			index += n;
+			offset += n;
+			length -= n;
+		}
+	}
+
+	@Override
+	public void put(int index, final byte[] src, int offset, int length) {
+		while (length > 0) {
+			final int c = chunk(index);
+			final int n = Math.min(length, starts[c + 1] - index);
+			storages[c].put(offsets[c] + index - starts[c], src, offset, n);
+			index += n;
+			offset += n;
+			length -= n;
+		}
+	}
+
+	@Override
+	public void put(int index, final ZippyStorage src, int offset, int length) {
+		while (length > 0) {
+			final int c = chunk(index);
+			final int n = Math.min(length, starts[c + 1] - index);
+			storages[c].put(offsets[c] + index - starts[c], src, offset, n);
+			index += n;
+			offset += n;
+			length -= n;
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * A range spanning several chunks is returned as a copy, so writing to
+	 * the byte buffer does not change this storage.
+	 */
+	@Override
+	public ByteBuffer toByteBuffer(final int index, final int length) {
+		final int c = chunk(index, length);
+		if (c >= 0) {
+			return storages[c].toByteBuffer(offsets[c] + index - starts[c],
+					length);
+		}
+		final byte[] copy = new byte[length];
+		get(index, copy, 0, length);
+		return ByteBuffer.wrap(copy);
+	}
+
+	@Override
+	public int getIntLE(final int index) {
+		final int c = chunk(index, 4);
+		if (c >= 0) {
+			return storages[c].getIntLE(offsets[c] + index - starts[c]);
+		}
+		return super.getIntLE(index);
+	}
+
+	@Override
+	public long getLongLE(final int index) {
+		final int c = chunk(index, 8);
+		if (c >= 0) {
+			return storages[c].getLongLE(offsets[c] + index - starts[c]);
+		}
+		return super.getLongLE(index);
+	}
+
+	@Override
+	public void putIntLE(final int index, final int value) {
+		final int c = chunk(index, 4);
+		if (c >= 0) {
+			storages[c].putIntLE(offsets[c] + index - starts[c], value);
+		} else {
+			super.putIntLE(index, value);
+		}
+	}
+
+	@Override
+	public void putLongLE(final int index, final long value) {
+		final int c = chunk(index, 8);
+		if (c >= 0) {
+			storages[c].putLongLE(offsets[c] + index - starts[c], value);
+		} else {
+			super.putLongLE(index, value);
+		}
+	}
+
+	@Override
+	public void putInts(final int index, final int[] src, final int offset,
+			final int length) {
+		final int c = chunk(index, length * 4);
+		if (c >= 0) {
+			storages[c].putInts(offsets[c] + index - starts[c], src, offset,
+					length);
+		} else {
+			final ByteBuffer bytes = ByteBuffer.allocate(length * 4).order(
+					ByteOrder.LITTLE_ENDIAN);
+			bytes.asIntBuffer().put(src, offset, length);
+			put(index, bytes.array(), 0, length * 4);
+		}
+	}
+
+	@Override
+	public void putLongs(final int index, final long[] src, final int offset,
+			final int length) {
+		final int c = chunk(index, length * 8);
+		if (c >= 0) {
+			storages[c].putLongs(offsets[c] + index - starts[c], src, offset,
+					length);
+		} else {
+			final ByteBuffer bytes = ByteBuffer.allocate(length * 8).order(
+					ByteOrder.LITTLE_ENDIAN);
+			bytes.asLongBuffer().put(src, offset, length);
+			put(index, bytes.array(), 0, length * 8);
+		}
+	}
+
+	@Override
+	public void putFloats(final int index, final float[] src,
+			final int offset, final int length) {
+		final int c = chunk(index, length * 4);
+		if (c >= 0) {
+			storages[c].putFloats(offsets[c] + index - starts[c], src, offset,
+					length);
+		} else {
+			final ByteBuffer bytes = ByteBuffer.allocate(length * 4).order(
+					ByteOrder.LITTLE_ENDIAN);
+			bytes.asFloatBuffer().put(src, offset, length);
+			put(index, bytes.array(), 0, length * 4);
+		}
+	}
+
+	@Override
+	public void putDoubles(final int index, final double[] src,
+			final int offset, final int length) {
+		final int c = chunk(index, length * 8);
+		if (c >= 0) {
+			storages[c].putDoubles(offsets[c] + index - starts[c], src,
+					offset, length);
+		} else {
+			final ByteBuffer bytes = ByteBuffer.allocate(length * 8).order(
+					ByteOrder.LITTLE_ENDIAN);
+			bytes.asDoubleBuffer().put(src, offset, length);
+			put(index, bytes.array(), 0, length * 8);
+		}
+	}
+
+}
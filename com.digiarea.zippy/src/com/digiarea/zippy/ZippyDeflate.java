@@ -0,0 +1,468 @@
+/*******************************************************************************
+ * Copyright (c) 2011 - 2014 DigiArea, Inc. and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     DigiArea, Inc. - initial API and implementation
+ *******************************************************************************/
+package com.digiarea.zippy;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Per-message compression for the zippy framing layer, compatible with the
+ * WebSocket permessage-deflate extension without context takeover: a message
+ * is compressed as raw DEFLATE data on its own and the frame carries the
+ * {@link ZippyWsFrame#RSV1} bit. A {@link ZippyBatchWriter} given a deflate
+ * compresses the batches reaching the threshold and a
+ * {@link ZippyWsFrameDecoder} given one inflates them back.
+ * <p>
+ * {@link Deflater} and {@link Inflater} instances, each with its scratch
+ * arrays, are pooled and reset between messages, so compressing a message
+ * allocates nothing. Messages shorter than the threshold are not worth it and
+ * stay raw. This class is thread-safe.
+ */
+public final class ZippyDeflate {
+
+	/** The default threshold. */
+	public static final int DEFAULT_THRESHOLD = 256;
+
+	/** The default maximum number of pooled deflaters and inflaters. */
+	public static final int DEFAULT_MAX_POOLED = 64;
+
+	/** The size of the scratch arrays. */
+	private static final int CHUNK_SIZE = 4096;
+
+	/** The trailer of a sync flush, removed by senders and restored here. */
+	private static final byte[] TRAILER = { 0x00, 0x00, (byte) 0xFF,
+			(byte) 0xFF };
+
+	/** The compression level. */
+	private final int level;
+
+	/** The threshold. */
+	private final int threshold;
+
+	/** The maximum number of pooled deflaters and inflaters. */
+	private final int maxPooled;
+
+	/** The free deflaters. */
+	private final ConcurrentLinkedQueue<Deflater> deflaters =
+			new ConcurrentLinkedQueue<Deflater>();
+
+	/** The free inflaters. */
+	private final ConcurrentLinkedQueue<Inflater> inflaters =
+			new ConcurrentLinkedQueue<Inflater>();
+
+	/** The free scratch arrays. */
+	private final ConcurrentLinkedQueue<byte[]> chunks =
+			new ConcurrentLinkedQueue<byte[]>();
+
+	/** The number of free deflaters. */
+	private final AtomicInteger pooledDeflaters = new AtomicInteger();
+
+	/** The number of free inflaters. */
+	private final AtomicInteger pooledInflaters = new AtomicInteger();
+
+	/** The number of free scratch arrays. */
+	private final AtomicInteger pooledChunks = new AtomicInteger();
+
+	/**
+	 * Instantiates a new zippy deflate with default settings.
+	 */
+	public ZippyDeflate() {
+		this(Deflater.DEFAULT_COMPRESSION, DEFAULT_THRESHOLD,
+				DEFAULT_MAX_POOLED);
+	}
+
+	/**
+	 * Instantiates a new zippy deflate.
+	 * 
+	 * @param level
+	 *            the compression level
+	 * @param threshold
+	 *            the length below which messages are not compressed
+	 * @param maxPooled
+	 *            the maximum number of free deflaters and inflaters kept
+	 */
+	public ZippyDeflate(final int level, final int threshold,
+			final int maxPooled) {
+		super();
+		this.level = level;
+		this.threshold = threshold;
+		this.maxPooled = maxPooled;
+	}
+
+	/**
+	 * Gets the threshold.
+	 * 
+	 * @return the threshold
+	 */
+	public int getThreshold() {
+		return threshold;
+	}
+
+	/**
+	 * Compresses the bytes written to a buffer, up to its position, if they
+	 * reach the threshold.
+	 * 
+	 * @param message
+	 *            the message, plain or segmented
+	 * @param out
+	 *            the buffer receiving the compressed bytes
+	 * @return true, if the message was compressed, false if it is below the
+	 *         threshold and nothing was written
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public boolean deflate(final ZippyBuffer message, final ZippyBuffer out)
+			throws IOException {
+		if (message.getWrittenSize() < threshold) {
+			return false;
+		}
+		return deflate(message.getSegments(), out);
+	}
+
+	/**
+	 * Compresses consecutive ranges as one message if they reach the
+	 * threshold, e.g. the packets of a batch.
+	 * 
+	 * @param segments
+	 *            the ranges of the message
+	 * @param out
+	 *            the buffer receiving the compressed bytes
+	 * @return true, if the message was compressed, false if it is below the
+	 *         threshold and nothing was written
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public boolean deflate(final List<ZippySegment> segments,
+			final ZippyBuffer out) throws IOException {
+		long length = 0;
+		for (int i = 0; i < segments.size(); i++) {
+			length += segments.get(i).getLength();
+		}
+		if (length < threshold) {
+			return false;
+		}
+		final Deflater deflater = acquireDeflater();
+		final byte[] chunk = acquireChunk();
+		try {
+			for (int i = 0; i < segments.size(); i++) {
+				final ZippySegment segment = segments.get(i);
+				deflate(deflater, segment.getStorage(), segment.getOffset(),
+						segment.getLength(), chunk, out);
+			}
+			finish(deflater, chunk, out);
+		} finally {
+			releaseChunk(chunk);
+			releaseDeflater(deflater);
+		}
+		return true;
+	}
+
+	/**
+	 * Compresses a range of a storage if it reaches the threshold.
+	 * 
+	 * @param src
+	 *            the source storage
+	 * @param offset
+	 *            the offset
+	 * @param length
+	 *            the length
+	 * @param out
+	 *            the buffer receiving the compressed bytes
+	 * @return true, if the range was compressed, false if it is below the
+	 *         threshold and nothing was written
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public boolean deflate(final ZippyStorage src, final int offset,
+			final int length, final ZippyBuffer out) throws IOException {
+		if (length < threshold) {
+			return false;
+		}
+		final Deflater deflater = acquireDeflater();
+		final byte[] chunk = acquireChunk();
+		try {
+			deflate(deflater, src, offset, length, chunk, out);
+			finish(deflater, chunk, out);
+		} finally {
+			releaseChunk(chunk);
+			releaseDeflater(deflater);
+		}
+		return true;
+	}
+
+	/**
+	 * Decompresses a range of a storage, e.g. the payload of a frame carrying
+	 * the {@link ZippyWsFrame#RSV1} bit.
+	 * 
+	 * @param src
+	 *            the source storage
+	 * @param offset
+	 *            the offset
+	 * @param length
+	 *            the length
+	 * @param out
+	 *            the buffer receiving the decompressed bytes
+	 * @param maxLength
+	 *            the maximum decompressed length
+	 * @return the decompressed length
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public int inflate(final ZippyStorage src, int offset, int length,
+			final ZippyBuffer out, final int maxLength) throws IOException {
+		final Inflater inflater = acquireInflater();
+		final byte[] input = acquireChunk();
+		final byte[] chunk = acquireChunk();
+		try {
+			int total = 0;
+			while (length > 0 && !inflater.finished()) {
+				final int size;
+				if (src.hasArray()) {
+					size = length;
+					inflater.setInput(src.array(), offset, size);
+				} else {
+					size = Math.min(length, input.length);
+					src.get(offset, input, 0, size);
+					inflater.setInput(input, 0, size);
+				}
+				total = inflate(inflater, chunk, out, total, maxLength);
+				offset += size;
+				length -= size;
+			}
+			if (!inflater.finished()) {
+				// Restore the trailer of a sync flush, it also serves as the
+				// extra byte a raw inflater wants after the data.
+				inflater.setInput(TRAILER);
+				total = inflate(inflater, chunk, out, total, maxLength);
+			}
+			return total;
+		} finally {
+			releaseChunk(chunk);
+			releaseChunk(input);
+			releaseInflater(inflater);
+		}
+	}
+
+	/**
+	 * Feeds a range to a deflater, writing whatever it outputs.
+	 * 
+	 * @param deflater
+	 *            the deflater
+	 * @param src
+	 *            the source storage
+	 * @param offset
+	 *            the offset
+	 * @param length
+	 *            the length
+	 * @param chunk
+	 *            the scratch array
+	 * @param out
+	 *            the output buffer
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	private void deflate(final Deflater deflater, final ZippyStorage src,
+			int offset, int length, final byte[] chunk, final ZippyBuffer out)
+			throws IOException {
+		if (src.hasArray()) {
+			deflater.setInput(src.array(), offset, length);
+			drain(deflater, chunk, out);
+			return;
+		}
+		final byte[] input = acquireChunk();
+		try {
+			while (length > 0) {
+				final int size = Math.min(length, input.length);
+				src.get(offset, input, 0, size);
+				deflater.setInput(input, 0, size);
+				drain(deflater, chunk, out);
+				offset += size;
+				length -= size;
+			}
+		} finally {
+			releaseChunk(input);
+		}
+	}
+
+	/**
+	 * Writes the output of a deflater until it needs more input.
+	 * 
+	 * @param deflater
+	 *            the deflater
+	 * @param chunk
+	 *            the scratch array
+	 * @param out
+	 *            the output buffer
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	private static void drain(final Deflater deflater, final byte[] chunk,
+			final ZippyBuffer out) throws IOException {
+		while (!deflater.needsInput()) {
+			out.writeRawBytes(chunk, 0, deflater.deflate(chunk));
+		}
+	}
+
+	/**
+	 * Finishes a deflater, writing the rest of its output.
+	 * 
+	 * @param deflater
+	 *            the deflater
+	 * @param chunk
+	 *            the scratch array
+	 * @param out
+	 *            the output buffer
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	private static void finish(final Deflater deflater, final byte[] chunk,
+			final ZippyBuffer out) throws IOException {
+		deflater.finish();
+		while (!deflater.finished()) {
+			out.writeRawBytes(chunk, 0, deflater.deflate(chunk));
+		}
+	}
+
+	/**
+	 * Writes the output of an inflater until it needs more input.
+	 * 
+	 * @param inflater
+	 *            the inflater
+	 * @param chunk
+	 *            the scratch array
+	 * @param out
+	 *            the output buffer
+	 * @param total
+	 *            the length decompressed so far
+	 * @param maxLength
+	 *            the maximum decompressed length
+	 * @return the length decompressed so far
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	private static int inflate(final Inflater inflater, final byte[] chunk,
+			final ZippyBuffer out, int total, final int maxLength)
+			throws IOException {
+		try {
+			while (!inflater.needsInput() && !inflater.finished()) {
+				final int size = inflater.inflate(chunk);
+				if (size == 0 && inflater.needsDictionary()) {
+					throw new IOException(
+							"ZippyDeflate needs a preset dictionary.");
+				}
+				total += size;
+				if (total > maxLength || total < 0) {
+					throw new IOException("ZippyDeflate too long message.");
+				}
+				out.writeRawBytes(chunk, 0, size);
+			}
+			return total;
+		} catch (final DataFormatException e) {
+			throw new IOException("ZippyDeflate malformed message.", e);
+		}
+	}
+
+	/**
+	 * Takes a deflater from the pool or creates one.
+	 * 
+	 * @return the deflater
+	 */
+	private Deflater acquireDeflater() {
+		final Deflater deflater = deflaters.poll();
+		if (deflater == null) {
+			return new Deflater(level, true);
+		}
+		pooledDeflaters.decrementAndGet();
+		return deflater;
+	}
+
+	/**
+	 * Resets a deflater and returns it to the pool, or frees it if the pool is
+	 * full.
+	 * 
+	 * @param deflater
+	 *            the deflater
+	 */
+	private void releaseDeflater(final Deflater deflater) {
+		if (pooledDeflaters.incrementAndGet() > maxPooled) {
+			pooledDeflaters.decrementAndGet();
+			deflater.end();
+			return;
+		}
+		deflater.reset();
+		deflaters.offer(deflater);
+	}
+
+	/**
+	 * Takes an inflater from the pool or creates one.
+	 * 
+	 * @return the inflater
+	 */
+	private Inflater acquireInflater() {
+		final Inflater inflater = inflaters.poll();
+		if (inflater == null) {
+			return new Inflater(true);
+		}
+		pooledInflaters.decrementAndGet();
+		return inflater;
+	}
+
+	/**
+	 * Resets an inflater and returns it to the pool, or frees it if the pool is
+	 * full.
+	 * 
+	 * @param inflater
+	 *            the inflater
+	 */
+	private void releaseInflater(final Inflater inflater) {
+		if (pooledInflaters.incrementAndGet() > maxPooled) {
+			pooledInflaters.decrementAndGet();
+			inflater.end();
+			return;
+		}
+		inflater.reset();
+		inflaters.offer(inflater);
+	}
+
+	/**
+	 * Takes a scratch array from the pool or allocates one.
+	 * 
+	 * @return the byte[]
+	 */
+	private byte[] acquireChunk() {
+		final byte[] chunk = chunks.poll();
+		if (chunk == null) {
+			return new byte[CHUNK_SIZE];
+		}
+		pooledChunks.decrementAndGet();
+		return chunk;
+	}
+
+	/**
+	 * Returns a scratch array to the pool.
+	 * 
+	 * @param chunk
+	 *            the chunk
+	 */
+	private void releaseChunk(final byte[] chunk) {
+		if (pooledChunks.incrementAndGet() > maxPooled * 3) {
+			pooledChunks.decrementAndGet();
+			return;
+		}
+		chunks.offer(chunk);
+	}
+
+}
@@ -0,0 +1,110 @@
+/*******************************************************************************
+ * Copyright (c) 2011 - 2014 DigiArea, Inc. and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     DigiArea, Inc. - initial API and implementation
+ *******************************************************************************/
+package com.digiarea.zippy;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * The {@link ZippyStorage} backed by a {@link ByteBuffer}, typically a direct
+ * one handed to or received from an NIO channel. Indexes are absolute indexes
+ * of the buffer, its position and limit are never changed.
+ */
+public final class ZippyDirectStorage extends ZippyStorage {
+
+	/** The buffer. */
+	private final ByteBuffer buffer;
+
+	/** The view used for bulk transfers. */
+	private final ByteBuffer view;
+
+	/**
+	 * Instantiates a new zippy direct storage.
+	 *
+	 * @param buffer
+	 *            the buffer
+	 */
+	public ZippyDirectStorage(final ByteBuffer buffer) {
+		super();
+		this.buffer = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+		this.buffer.clear();
+		view = this.buffer.duplicate();
+	}
+
+	/**
+	 * Gets the buffer.
+	 *
+	 * @return the buffer
+	 */
+	public ByteBuffer getBuffer() {
+		return buffer;
+	}
+
+	@Override
+	public int capacity() {
+		return buffer.capacity();
+	}
+
+	@Override
+	public byte get(final int index) {
+		return buffer.get(index);
+	}
+
+	@Override
+	public void put(final int index, final byte value) {
+		buffer.put(index, value);
+	}
+
+	@Override
+	public void get(final int index, final byte[] dst, final int offset,
+			final int length) {
+		view.clear();
+		view.position(index);
+		view.get(dst, offset, length);
+	}
+
+	@Override
+	public void put(final int index, final byte[] src, final int offset,
+			final int length) {
+		view.clear();
+		view.position(index);
+		view.put(src, offset, length);
+	}
+
+	@Override
+	public int getIntLE(final int index) {
+		return buffer.getInt(index);
+	}
+
+	@Override
+	public long getLongLE(final int index) {
+		return buffer.getLong(index);
+	}
+
+	@Override
+	public void putIntLE(final int index, final int value) {
+		buffer.putInt(index, value);
+	}
+
+	@Override
+	public void putLongLE(final int index, final long value) {
+		buffer.putLong(index, value);
+	}
+
+	@Override
+	public ByteBuffer toByteBuffer(final int index, final int length) {
+		final ByteBuffer result = buffer.duplicate();
+		result.limit(index + length);
+		result.position(index);
+		return result.slice();
+	}
+
+}
@@ -0,0 +1,103 @@
+/*******************************************************************************
+ * Copyright (c) 2011 - 2014 DigiArea, Inc. and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     DigiArea, Inc. - initial API and implementation
+ *******************************************************************************/
+package com.digiarea.zippy;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * The {@link ZippyStorage} backed by a heap byte array. Fixed-width values are
+ * accessed through a little-endian {@link ByteBuffer} view of the array, which
+ * current JVMs compile to a single unaligned load or store.
+ */
+public final class ZippyHeapStorage extends ZippyStorage {
+
+	/** The array. */
+	private final byte[] array;
+
+	/** The little-endian view of the array. */
+	private final ByteBuffer words;
+
+	/**
+	 * Instantiates a new zippy heap storage.
+	 *
+	 * @param array
+	 *            the array
+	 */
+	public ZippyHeapStorage(final byte[] array) {
+		super();
+		this.array = array;
+		words = ByteBuffer.wrap(array).order(ByteOrder.LITTLE_ENDIAN);
+	}
+
+	@Override
+	public int capacity() {
+		return array.length;
+	}
+
+	@Override
+	public byte get(final int index) {
+		return array[index];
+	}
+
+	@Override
+	public void put(final int index, final byte value) {
+		array[index] = value;
+	}
+
+	@Override
+	public void get(final int index, final byte[] dst, final int offset,
+			final int length) {
+		System.arraycopy(array, index, dst, offset, length);
+	}
+
+	@Override
+	public void put(final int index, final byte[] src, final int offset,
+			final int length) {
+		System.arraycopy(src, offset, array, index, length);
+	}
+
+	@Override
+	public int getIntLE(final int index) {
+		return words.getInt(index);
+	}
+
+	@Override
+	public long getLongLE(final int index) {
+		return words.getLong(index);
+	}
+
+	@Override
+	public void putIntLE(final int index, final int value) {
+		words.putInt(index, value);
+	}
+
+	@Override
+	public void putLongLE(final int index, final long value) {
+		words.putLong(index, value);
+	}
+
+	@Override
+	public ByteBuffer toByteBuffer(final int index, final int length) {
+		return ByteBuffer.wrap(array, index, length).slice();
+	}
+
+	@Override
+	public boolean hasArray() {
+		return true;
+	}
+
+	@Override
+	public byte[] array() {
+		return array;
+	}
+
+}
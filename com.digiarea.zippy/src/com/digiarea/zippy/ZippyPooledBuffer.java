@@ -0,0 +1,121 @@
+/*******************************************************************************
+ * Copyright (c) 2011 - 2014 DigiArea, Inc. and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     DigiArea, Inc. - initial API and implementation
+ *******************************************************************************/
+package com.digiarea.zippy;
+
+import java.lang.ref.WeakReference;
+
+/**
+ * A byte array and its {@link ZippyBuffer}, both recycled by a
+ * {@link ZippyBufferPool}. The buffer is reset on every
+ * {@link #writer()} or {@link #reader(int)} call instead of being allocated
+ * again. Neither may be used once the pooled buffer is released.
+ */
+public final class ZippyPooledBuffer {
+
+	/** The pool. */
+	private final ZippyBufferPool pool;
+
+	/** The size class. */
+	final int sizeClass;
+
+	/** The array. */
+	private final byte[] array;
+
+	/** The buffer. */
+	private final ZippyBuffer buffer;
+
+	/** Whether the pooled buffer is in use. */
+	boolean acquired;
+
+	/** The leak tracker, {@code null} unless sampled. */
+	WeakReference<ZippyPooledBuffer> tracker;
+
+	/**
+	 * Instantiates a new zippy pooled buffer.
+	 * 
+	 * @param pool
+	 *            the pool
+	 * @param sizeClass
+	 *            the size class, -1 if the array is not pooled
+	 * @param size
+	 *            the size
+	 */
+	ZippyPooledBuffer(final ZippyBufferPool pool, final int sizeClass,
+			final int size) {
+		super();
+		this.pool = pool;
+		this.sizeClass = sizeClass;
+		array = new byte[size];
+		buffer = new ZippyBuffer(array);
+	}
+
+	/**
+	 * Gets the array.
+	 * 
+	 * @return the array
+	 */
+	public byte[] array() {
+		return array;
+	}
+
+	/**
+	 * Gets the capacity, at least the requested size.
+	 * 
+	 * @return the capacity
+	 */
+	public int capacity() {
+		return array.length;
+	}
+
+	/**
+	 * Gets the buffer as it is.
+	 * 
+	 * @return the buffer
+	 */
+	public ZippyBuffer getBuffer() {
+		return buffer;
+	}
+
+	/**
+	 * Gets the buffer reset for writing over the whole array.
+	 * 
+	 * @return the zippy buffer
+	 */
+	public ZippyBuffer writer() {
+		buffer.recycle(array.length);
+		return buffer;
+	}
+
+	/**
+	 * Gets the buffer reset for reading the first bytes of the array, e.g.
+	 * after a packet was read into it.
+	 * 
+	 * @param length
+	 *            the number of bytes to read
+	 * @return the zippy buffer
+	 */
+	public ZippyBuffer reader(final int length) {
+		if (length < 0 || length > array.length) {
+			throw new IndexOutOfBoundsException(
+					"ZippyPooledBuffer is too small.");
+		}
+		buffer.recycle(length);
+		return buffer;
+	}
+
+	/**
+	 * Returns this buffer to its pool.
+	 */
+	public void release() {
+		pool.release(this);
+	}
+
+}
@@ -0,0 +1,163 @@
+/*******************************************************************************
+ * Copyright (c) 2011 - 2014 DigiArea, Inc. and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     DigiArea, Inc. - initial API and implementation
+ *******************************************************************************/
+package com.digiarea.zippy;
+
+import java.io.IOException;
+
+/**
+ * An optional table in front of a packet mapping sector numbers to their
+ * offsets, so a reader can jump straight to a sector instead of scanning the
+ * packet from its beginning.
+ * <p>
+ * The index is made of its entry count, as a VarInt, followed by fixed
+ * 8-byte entries: the sector number and the offset of the sector relative to
+ * the end of the index, both little-endian 32-bit integers. The writer
+ * reserves the entries up front and fills them in as the sectors are
+ * written; entries left unused have sector number zero and are ignored.
+ * <p>
+ * The offset points at the sector number or tag, so after
+ * {@link #seek(ZippyBuffer, int, int)} the sector is read as usual.
+ */
+public final class ZippySectorIndex {
+
+	/** The size of an entry. */
+	private static final int ENTRY_SIZE = 8;
+
+	/** The buffer. */
+	private final ZippyBuffer buffer;
+
+	/** The storage of the entries. */
+	private final ZippyStorage storage;
+
+	/** The index of the first entry. */
+	private final int index;
+
+	/** The number of entries. */
+	private final int capacity;
+
+	/** The written size at the end of the index. */
+	private final int base;
+
+	/** The number of entries used. */
+	private int count;
+
+	/**
+	 * Writes an empty index with room for a number of sectors at the current
+	 * position of a buffer.
+	 * 
+	 * @param buffer
+	 *            the buffer, plain or segmented
+	 * @param capacity
+	 *            the number of indexed sectors
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public ZippySectorIndex(final ZippyBuffer buffer, final int capacity)
+			throws IOException {
+		super();
+		this.buffer = buffer;
+		this.capacity = capacity;
+		buffer.writeRawVarInt(capacity);
+		index = buffer.reserve(capacity * ENTRY_SIZE);
+		storage = buffer.getStorage();
+		for (int i = 0; i < capacity; i++) {
+			storage.putLongLE(index + i * ENTRY_SIZE, 0L);
+		}
+		base = buffer.getWrittenSize();
+	}
+
+	/**
+	 * Computes the size of an index.
+	 * 
+	 * @param capacity
+	 *            the number of indexed sectors
+	 * @return the int
+	 */
+	public static int sizeOf(final int capacity) {
+		return ZippyBuffer.sizeOfRawVarInt(capacity) + capacity * ENTRY_SIZE;
+	}
+
+	/**
+	 * Records that a sector starts at the current position of the buffer; call
+	 * it right before writing the sector number or tag.
+	 * 
+	 * @param sectorNumber
+	 *            the sector number
+	 * @throws IOException
+	 *             if the index is full.
+	 */
+	public void mark(final int sectorNumber) throws IOException {
+		if (count == capacity) {
+			throw new IOException("ZippySectorIndex is full.");
+		}
+		final int entry = index + count * ENTRY_SIZE;
+		storage.putIntLE(entry, sectorNumber);
+		storage.putIntLE(entry + 4, buffer.getWrittenSize() - base);
+		count++;
+	}
+
+	/**
+	 * Moves to a sector of an indexed packet.
+	 * 
+	 * @param buffer
+	 *            the buffer
+	 * @param start
+	 *            the position of the index
+	 * @param sectorNumber
+	 *            the sector number
+	 * @return true, if the sector is indexed and the buffer is now positioned
+	 *         at its sector number or tag; false if the sector is not
+	 *         indexed and the buffer is positioned right after the index
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public static boolean seek(final ZippyBuffer buffer, final int start,
+			final int sectorNumber) throws IOException {
+		buffer.position(start);
+		final int entries = buffer.readRawVarInt();
+		final int first = buffer.position();
+		if (entries < 0 || entries > (buffer.limit() - first) / ENTRY_SIZE) {
+			throw new IOException("ZippySectorIndex is malformed.");
+		}
+		final int end = first + entries * ENTRY_SIZE;
+		final ZippyStorage storage = buffer.getStorage();
+		for (int entry = first; entry < end; entry += ENTRY_SIZE) {
+			if (storage.getIntLE(entry) == sectorNumber) {
+				final int offset = storage.getIntLE(entry + 4);
+				if (offset < 0 || offset > buffer.limit() - end) {
+					throw new IOException("ZippySectorIndex is malformed.");
+				}
+				buffer.position(end + offset);
+				return true;
+			}
+		}
+		buffer.position(end);
+		return false;
+	}
+
+	/**
+	 * Skips the index at the position of a buffer, e.g. to read the packet
+	 * sequentially.
+	 * 
+	 * @param buffer
+	 *            the buffer
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public static void skip(final ZippyBuffer buffer) throws IOException {
+		final int entries = buffer.readRawVarInt();
+		if (entries < 0 || entries > buffer.remaining() / ENTRY_SIZE) {
+			throw new IOException("ZippySectorIndex is malformed.");
+		}
+		buffer.skipRawBytes(entries * ENTRY_SIZE);
+	}
+
+}
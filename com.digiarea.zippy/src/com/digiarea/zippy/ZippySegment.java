@@ -0,0 +1,98 @@
+/*******************************************************************************
+ * Copyright (c) 2011 - 2014 DigiArea, Inc. and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     DigiArea, Inc. - initial API and implementation
+ *******************************************************************************/
+package com.digiarea.zippy;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A read-only range of bytes written by a {@link ZippyBuffer}. A segmented
+ * writer produces its output as a list of such ranges, each of them backed by
+ * a pooled segment array.
+ */
+public final class ZippySegment {
+
+	/** The storage. */
+	private final ZippyStorage storage;
+
+	/** The offset. */
+	private final int offset;
+
+	/** The length. */
+	private final int length;
+
+	/**
+	 * Instantiates a new zippy segment.
+	 *
+	 * @param storage
+	 *            the storage
+	 * @param offset
+	 *            the offset
+	 * @param length
+	 *            the length
+	 */
+	public ZippySegment(final ZippyStorage storage, final int offset,
+			final int length) {
+		super();
+		this.storage = storage;
+		this.offset = offset;
+		this.length = length;
+	}
+
+	/**
+	 * Gets the storage.
+	 *
+	 * @return the storage
+	 */
+	public ZippyStorage getStorage() {
+		return storage;
+	}
+
+	/**
+	 * Gets the offset.
+	 *
+	 * @return the offset
+	 */
+	public int getOffset() {
+		return offset;
+	}
+
+	/**
+	 * Gets the length.
+	 *
+	 * @return the length
+	 */
+	public int getLength() {
+		return length;
+	}
+
+	/**
+	 * Copies the segment into an array.
+	 *
+	 * @param dst
+	 *            the destination array
+	 * @param index
+	 *            the destination index
+	 */
+	public void copyTo(final byte[] dst, final int index) {
+		storage.get(offset, dst, index, length);
+	}
+
+	/**
+	 * Wraps the segment into a {@link ByteBuffer} ready to be written to a
+	 * channel. No bytes are copied.
+	 *
+	 * @return the byte buffer
+	 */
+	public ByteBuffer toByteBuffer() {
+		return storage.toByteBuffer(offset, length);
+	}
+
+}
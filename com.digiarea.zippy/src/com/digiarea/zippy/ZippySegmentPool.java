@@ -0,0 +1,114 @@
+/*******************************************************************************
+ * Copyright (c) 2011 - 2014 DigiArea, Inc. and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     DigiArea, Inc. - initial API and implementation
+ *******************************************************************************/
+package com.digiarea.zippy;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A thread-safe pool of fixed-size byte arrays used as segments by a
+ * segmented {@link ZippyBuffer} writer.
+ */
+public final class ZippySegmentPool {
+
+	/** The default segment size. */
+	public static final int DEFAULT_SEGMENT_SIZE = 4096;
+
+	/**
+	 * The minimum segment size, enough for any single value a writer never
+	 * splits across segments, e.g. a VarLong.
+	 */
+	public static final int MIN_SEGMENT_SIZE = 16;
+
+	/** The default maximum number of pooled segments. */
+	public static final int DEFAULT_MAX_POOLED = 256;
+
+	/** The segment size. */
+	private final int segmentSize;
+
+	/** The maximum number of pooled segments. */
+	private final int maxPooled;
+
+	/** The free segments. */
+	private final ConcurrentLinkedQueue<byte[]> free = new ConcurrentLinkedQueue<byte[]>();
+
+	/** The number of free segments. */
+	private final AtomicInteger pooled = new AtomicInteger();
+
+	/**
+	 * Instantiates a new zippy segment pool with default settings.
+	 */
+	public ZippySegmentPool() {
+		this(DEFAULT_SEGMENT_SIZE, DEFAULT_MAX_POOLED);
+	}
+
+	/**
+	 * Instantiates a new zippy segment pool.
+	 *
+	 * @param segmentSize
+	 *            the size of every segment, at least
+	 *            {@link #MIN_SEGMENT_SIZE}
+	 * @param maxPooled
+	 *            the maximum number of free segments kept by the pool
+	 */
+	public ZippySegmentPool(final int segmentSize, final int maxPooled) {
+		super();
+		if (segmentSize < MIN_SEGMENT_SIZE) {
+			throw new IllegalArgumentException(
+					"ZippySegmentPool segment size is too small.");
+		}
+		this.segmentSize = segmentSize;
+		this.maxPooled = maxPooled;
+	}
+
+	/**
+	 * Gets the segment size.
+	 *
+	 * @return the segment size
+	 */
+	public int getSegmentSize() {
+		return segmentSize;
+	}
+
+	/**
+	 * Takes a segment from the pool or allocates a new one if the pool is
+	 * empty.
+	 *
+	 * @return the segment
+	 */
+	public byte[] acquire() {
+		final byte[] segment = free.poll();
+		if (segment == null) {
+			return new byte[segmentSize];
+		}
+		pooled.decrementAndGet();
+		return segment;
+	}
+
+	/**
+	 * Returns a segment to the pool. Arrays of a foreign size and segments
+	 * exceeding the pool capacity are left to the garbage collector.
+	 *
+	 * @param segment
+	 *            the segment
+	 */
+	public void release(final byte[] segment) {
+		if (segment == null || segment.length != segmentSize) {
+			return;
+		}
+		if (pooled.incrementAndGet() > maxPooled) {
+			pooled.decrementAndGet();
+			return;
+		}
+		free.offer(segment);
+	}
+
+}
@@ -0,0 +1,137 @@
+/*******************************************************************************
+ * Copyright (c) 2011 - 2014 DigiArea, Inc. and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     DigiArea, Inc. - initial API and implementation
+ *******************************************************************************/
+package com.digiarea.zippy;
+
+/**
+ * Memoized sizes of nested length-prefixed packets. The sizing pass records
+ * the size of every nested packet once, in pre-order; the writing pass then
+ * takes them back in the very same order for the length prefixes instead of
+ * sizing every level again. A codec uses it as follows:
+ * 
+ * <pre>
+ * int sizeOf(Packet packet, ZippySizes sizes) {
+ * 	final int slot = sizes.begin();
+ * 	int size = ...; // own sectors
+ * 	size += ZippyBuffer.sizeOfTag(CHILD) + ZippySizes.sizeOfLengthPrefixed(
+ * 			sizeOf(packet.child, sizes));
+ * 	return sizes.end(slot, size);
+ * }
+ * 
+ * void write(Packet packet, ZippyBuffer buffer, ZippySizes sizes) {
+ * 	... // own sectors
+ * 	buffer.writeTag(CHILD, ZippyBuffer.WIRE_LENGTH_DELIMITED);
+ * 	buffer.writeRawVarInt(sizes.next());
+ * 	write(packet.child, buffer, sizes);
+ * }
+ * </pre>
+ * 
+ * The root is sized as well, so the first size taken back is its own: write
+ * it as the length prefix of the root or skip it with {@link #next()}. The
+ * instance is reusable after {@link #clear()} and is not thread-safe.
+ * 
+ * @see ZippyBuffer#beginLengthPrefixed()
+ */
+public final class ZippySizes {
+
+	/** The sizes, in pre-order. */
+	private int[] sizes;
+
+	/** The number of recorded sizes. */
+	private int count;
+
+	/** The index of the next size to take. */
+	private int next;
+
+	/**
+	 * Instantiates a new zippy sizes.
+	 */
+	public ZippySizes() {
+		this(16);
+	}
+
+	/**
+	 * Instantiates a new zippy sizes.
+	 * 
+	 * @param capacity
+	 *            the initial number of sizes
+	 */
+	public ZippySizes(final int capacity) {
+		super();
+		sizes = new int[Math.max(capacity, 1)];
+	}
+
+	/**
+	 * Computes the size of a length-prefixed value.
+	 * 
+	 * @param size
+	 *            the size of the value
+	 * @return the size with its prefix
+	 */
+	public static int sizeOfLengthPrefixed(final int size) {
+		return ZippyBuffer.sizeOfRawVarInt(size) + size;
+	}
+
+	/**
+	 * Starts sizing a nested packet, before sizing its own nested packets.
+	 * 
+	 * @return the slot of its size
+	 */
+	public int begin() {
+		if (count == sizes.length) {
+			final int[] grown = new int[count * 2];
+			System.arraycopy(sizes, 0, grown, 0, count);
+			sizes = grown;
+		}
+		return count++;
+	}
+
+	/**
+	 * Records the size of a nested packet.
+	 * 
+	 * @param slot
+	 *            the slot returned by {@link #begin()}
+	 * @param size
+	 *            the size
+	 * @return the size
+	 */
+	public int end(final int slot, final int size) {
+		sizes[slot] = size;
+		return size;
+	}
+
+	/**
+	 * Takes the next recorded size while writing.
+	 * 
+	 * @return the size
+	 */
+	public int next() {
+		if (next == count) {
+			throw new IllegalStateException("ZippySizes has no more sizes.");
+		}
+		return sizes[next++];
+	}
+
+	/**
+	 * Goes back to the first recorded size, to write the same packet again.
+	 */
+	public void rewind() {
+		next = 0;
+	}
+
+	/**
+	 * Forgets all recorded sizes.
+	 */
+	public void clear() {
+		count = 0;
+		next = 0;
+	}
+
+}
@@ -0,0 +1,393 @@
+/*******************************************************************************
+ * Copyright (c) 2011 - 2014 DigiArea, Inc. and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     DigiArea, Inc. - initial API and implementation
+ *******************************************************************************/
+package com.digiarea.zippy;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * The storage behind a {@link ZippyBuffer}. All indexes are absolute and no
+ * bounds are checked here: {@link ZippyBuffer} keeps its position within its
+ * limit and only then touches the storage.
+ * <p>
+ * Bulk transfers of primitive arrays use little-endian views of
+ * {@link #toByteBuffer(int, int)}, so any storage whose byte buffers share its
+ * memory gets them for free; other storages must override them.
+ */
+public abstract class ZippyStorage {
+
+	/**
+	 * Wraps a byte array.
+	 *
+	 * @param array
+	 *            the array
+	 * @return the zippy storage
+	 */
+	public static ZippyStorage wrap(final byte[] array) {
+		return new ZippyHeapStorage(array);
+	}
+
+	/**
+	 * Wraps a byte buffer. Only the buffer content is shared, neither its
+	 * position nor its limit are used. Prefer
+	 * {@link ZippyBuffer#ZippyBuffer(ByteBuffer)} which takes care of array
+	 * offsets and positions.
+	 *
+	 * @param buffer
+	 *            the buffer
+	 * @return the zippy storage
+	 */
+	public static ZippyStorage wrap(final ByteBuffer buffer) {
+		if (buffer.hasArray() && buffer.arrayOffset() == 0) {
+			return new ZippyHeapStorage(buffer.array());
+		}
+		return new ZippyDirectStorage(buffer);
+	}
+
+	/**
+	 * Returns the number of bytes of this storage.
+	 *
+	 * @return the capacity
+	 */
+	public abstract int capacity();
+
+	/**
+	 * Reads one byte.
+	 *
+	 * @param index
+	 *            the index
+	 * @return the byte
+	 */
+	public abstract byte get(int index);
+
+	/**
+	 * Writes one byte.
+	 *
+	 * @param index
+	 *            the index
+	 * @param value
+	 *            the value
+	 */
+	public abstract void put(int index, byte value);
+
+	/**
+	 * Copies bytes from this storage into an array.
+	 *
+	 * @param index
+	 *            the index
+	 * @param dst
+	 *            the destination array
+	 * @param offset
+	 *            the destination offset
+	 * @param length
+	 *            the length
+	 */
+	public abstract void get(int index, byte[] dst, int offset, int length);
+
+	/**
+	 * Copies bytes from an array into this storage.
+	 *
+	 * @param index
+	 *            the index
+	 * @param src
+	 *            the source array
+	 * @param offset
+	 *            the source offset
+	 * @param length
+	 *            the length
+	 */
+	public abstract void put(int index, byte[] src, int offset, int length);
+
+	/**
+	 * Copies bytes from another storage into this storage.
+	 * 
+	 * @param index
+	 *            the index
+	 * @param src
+	 *            the source storage
+	 * @param offset
+	 *            the source offset
+	 * @param length
+	 *            the length
+	 */
+	public void put(final int index, final ZippyStorage src, final int offset,
+			final int length) {
+		if (src.hasArray()) {
+			put(index, src.array(), offset, length);
+		} else if (hasArray()) {
+			src.get(offset, array(), index, length);
+		} else {
+			toByteBuffer(index, length).put(src.toByteBuffer(offset, length));
+		}
+	}
+
+	/**
+	 * Moves bytes within this storage; the ranges may overlap.
+	 * 
+	 * @param from
+	 *            the source index
+	 * @param to
+	 *            the destination index
+	 * @param length
+	 *            the length
+	 */
+	public void move(final int from, final int to, final int length) {
+		if (hasArray()) {
+			final byte[] array = array();
+			System.arraycopy(array, from, array, to, length);
+		} else if (to < from) {
+			for (int i = 0; i < length; i++) {
+				put(to + i, get(from + i));
+			}
+		} else {
+			for (int i = length - 1; i >= 0; i--) {
+				put(to + i, get(from + i));
+			}
+		}
+	}
+
+	/**
+	 * Returns a byte buffer sharing the given range of this storage, ready to
+	 * be written to or read from a channel.
+	 *
+	 * @param index
+	 *            the index
+	 * @param length
+	 *            the length
+	 * @return the byte buffer
+	 */
+	public abstract ByteBuffer toByteBuffer(int index, int length);
+
+	/**
+	 * Reads a little-endian 32-bit integer. Storages able to load a whole word
+	 * at once override this byte by byte fallback.
+	 *
+	 * @param index
+	 *            the index
+	 * @return the int
+	 */
+	public int getIntLE(final int index) {
+		return (((int) get(index) & 0xff))
+				| (((int) get(index + 1) & 0xff) << 8)
+				| (((int) get(index + 2) & 0xff) << 16)
+				| (((int) get(index + 3) & 0xff) << 24);
+	}
+
+	/**
+	 * Reads a little-endian 64-bit integer. Storages able to load a whole word
+	 * at once override this byte by byte fallback.
+	 *
+	 * @param index
+	 *            the index
+	 * @return the long
+	 */
+	public long getLongLE(final int index) {
+		return (((long) getIntLE(index) & 0xffffffffL))
+				| (((long) getIntLE(index + 4)) << 32);
+	}
+
+	/**
+	 * Writes a little-endian 32-bit integer. Storages able to store a whole
+	 * word at once override this byte by byte fallback.
+	 *
+	 * @param index
+	 *            the index
+	 * @param value
+	 *            the value
+	 */
+	public void putIntLE(final int index, final int value) {
+		put(index, (byte) value);
+		put(index + 1, (byte) (value >> 8));
+		put(index + 2, (byte) (value >> 16));
+		put(index + 3, (byte) (value >> 24));
+	}
+
+	/**
+	 * Writes a little-endian 64-bit integer. Storages able to store a whole
+	 * word at once override this byte by byte fallback.
+	 *
+	 * @param index
+	 *            the index
+	 * @param value
+	 *            the value
+	 */
+	public void putLongLE(final int index, final long value) {
+		putIntLE(index, (int) value);
+		putIntLE(index + 4, (int) (value >> 32));
+	}
+
+	/**
+	 * Copies {@code int} values from this storage in little-endian order.
+	 *
+	 * @param index
+	 *            the index
+	 * @param dst
+	 *            the destination array
+	 * @param offset
+	 *            the destination offset
+	 * @param length
+	 *            the number of values
+	 */
+	public void getInts(final int index, final int[] dst, final int offset,
+			final int length) {
+		toByteBuffer(index, length * 4).order(ByteOrder.LITTLE_ENDIAN)
+				.asIntBuffer().get(dst, offset, length);
+	}
+
+	/**
+	 * Copies {@code int} values into this storage in little-endian order.
+	 *
+	 * @param index
+	 *            the index
+	 * @param src
+	 *            the source array
+	 * @param offset
+	 *            the source offset
+	 * @param length
+	 *            the number of values
+	 */
+	public void putInts(final int index, final int[] src, final int offset,
+			final int length) {
+		toByteBuffer(index, length * 4).order(ByteOrder.LITTLE_ENDIAN)
+				.asIntBuffer().put(src, offset, length);
+	}
+
+	/**
+	 * Copies {@code long} values from this storage in little-endian order.
+	 *
+	 * @param index
+	 *            the index
+	 * @param dst
+	 *            the destination array
+	 * @param offset
+	 *            the destination offset
+	 * @param length
+	 *            the number of values
+	 */
+	public void getLongs(final int index, final long[] dst, final int offset,
+			final int length) {
+		toByteBuffer(index, length * 8).order(ByteOrder.LITTLE_ENDIAN)
+				.asLongBuffer().get(dst, offset, length);
+	}
+
+	/**
+	 * Copies {@code long} values into this storage in little-endian order.
+	 *
+	 * @param index
+	 *            the index
+	 * @param src
+	 *            the source array
+	 * @param offset
+	 *            the source offset
+	 * @param length
+	 *            the number of values
+	 */
+	public void putLongs(final int index, final long[] src, final int offset,
+			final int length) {
+		toByteBuffer(index, length * 8).order(ByteOrder.LITTLE_ENDIAN)
+				.asLongBuffer().put(src, offset, length);
+	}
+
+	/**
+	 * Copies {@code float} values from this storage in little-endian order.
+	 *
+	 * @param index
+	 *            the index
+	 * @param dst
+	 *            the destination array
+	 * @param offset
+	 *            the destination offset
+	 * @param length
+	 *            the number of values
+	 */
+	public void getFloats(final int index, final float[] dst, final int offset,
+			final int length) {
+		toByteBuffer(index, length * 4).order(ByteOrder.LITTLE_ENDIAN)
+				.asFloatBuffer().get(dst, offset, length);
+	}
+
+	/**
+	 * Copies {@code float} values into this storage in little-endian order.
+	 *
+	 * @param index
+	 *            the index
+	 * @param src
+	 *            the source array
+	 * @param offset
+	 *            the source offset
+	 * @param length
+	 *            the number of values
+	 */
+	public void putFloats(final int index, final float[] src, final int offset,
+			final int length) {
+		toByteBuffer(index, length * 4).order(ByteOrder.LITTLE_ENDIAN)
+				.asFloatBuffer().put(src, offset, length);
+	}
+
+	/**
+	 * Copies {@code double} values from this storage in little-endian order.
+	 *
+	 * @param index
+	 *            the index
+	 * @param dst
+	 *            the destination array
+	 * @param offset
+	 *            the destination offset
+	 * @param length
+	 *            the number of values
+	 */
+	public void getDoubles(final int index, final double[] dst, final int offset,
+			final int length) {
+		toByteBuffer(index, length * 8).order(ByteOrder.LITTLE_ENDIAN)
+				.asDoubleBuffer().get(dst, offset, length);
+	}
+
+	/**
+	 * Copies {@code double} values into this storage in little-endian order.
+	 *
+	 * @param index
+	 *            the index
+	 * @param src
+	 *            the source array
+	 * @param offset
+	 *            the source offset
+	 * @param length
+	 *            the number of values
+	 */
+	public void putDoubles(final int index, final double[] src, final int offset,
+			final int length) {
+		toByteBuffer(index, length * 8).order(ByteOrder.LITTLE_ENDIAN)
+				.asDoubleBuffer().put(src, offset, length);
+	}
+
+	/**
+	 * Checks if this storage is backed by an accessible byte array whose
+	 * indexes are the storage indexes.
+	 *
+	 * @return true, if successful
+	 */
+	public boolean hasArray() {
+		return false;
+	}
+
+	/**
+	 * Returns the backing array.
+	 *
+	 * @return the byte[]
+	 * @throws UnsupportedOperationException
+	 *             if this storage is not backed by an array.
+	 */
+	public byte[] array() {
+		throw new UnsupportedOperationException(
+				"ZippyStorage is not backed by an array.");
+	}
+
+}
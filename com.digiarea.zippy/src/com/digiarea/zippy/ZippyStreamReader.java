@@ -0,0 +1,662 @@
+/*******************************************************************************
+ * Copyright (c) 2011 - 2014 DigiArea, Inc. and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     DigiArea, Inc. - initial API and implementation
+ *******************************************************************************/
+package com.digiarea.zippy;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * A zippy reader over an {@link InputStream} or a {@link ReadableByteChannel}
+ * that refills its buffer on demand, so packets split across reads are decoded
+ * as they arrive without a staging copy.
+ * <p>
+ * With a non-blocking channel a read throws {@link ZippyUnderflowException}
+ * when the channel has no more bytes for now. Nothing read so far is lost:
+ * a partially decoded varint keeps its state and a partially received string
+ * or bytes value keeps its size, so the very same read method must be called
+ * again once the channel is readable.
+ */
+public final class ZippyStreamReader {
+
+	/** The default initial capacity. */
+	public static final int DEFAULT_CAPACITY = 4096;
+
+	/** The default maximum capacity, the longest value the reader accepts. */
+	public static final int DEFAULT_MAX_CAPACITY = 16 * 1024 * 1024;
+
+	/** The stream. */
+	private final InputStream in;
+
+	/** The channel. */
+	private final ReadableByteChannel channel;
+
+	/** The maximum capacity. */
+	private final int maxCapacity;
+
+	/** The buffer. */
+	private byte[] buffer;
+
+	/** The channel view of the buffer. */
+	private ByteBuffer view;
+
+	/** The position. */
+	private int position;
+
+	/** The limit. */
+	private int limit;
+
+	/** The value of the varint being decoded. */
+	private long varValue;
+
+	/** The shift of the varint being decoded. */
+	private int varShift;
+
+	/** The size of the string or bytes being received, or -1. */
+	private int pendingSize = -1;
+
+	/**
+	 * Instantiates a new zippy stream reader.
+	 *
+	 * @param in
+	 *            the stream
+	 */
+	public ZippyStreamReader(final InputStream in) {
+		this(in, null, DEFAULT_CAPACITY, DEFAULT_MAX_CAPACITY);
+	}
+
+	/**
+	 * Instantiates a new zippy stream reader.
+	 *
+	 * @param channel
+	 *            the channel
+	 */
+	public ZippyStreamReader(final ReadableByteChannel channel) {
+		this(null, channel, DEFAULT_CAPACITY, DEFAULT_MAX_CAPACITY);
+	}
+
+	/**
+	 * Instantiates a new zippy stream reader.
+	 *
+	 * @param in
+	 *            the stream
+	 * @param capacity
+	 *            the initial capacity
+	 * @param maxCapacity
+	 *            the maximum capacity
+	 */
+	public ZippyStreamReader(final InputStream in, final int capacity,
+			final int maxCapacity) {
+		this(in, null, capacity, maxCapacity);
+	}
+
+	/**
+	 * Instantiates a new zippy stream reader.
+	 *
+	 * @param channel
+	 *            the channel
+	 * @param capacity
+	 *            the initial capacity
+	 * @param maxCapacity
+	 *            the maximum capacity
+	 */
+	public ZippyStreamReader(final ReadableByteChannel channel,
+			final int capacity, final int maxCapacity) {
+		this(null, channel, capacity, maxCapacity);
+	}
+
+	/**
+	 * Instantiates a new zippy stream reader.
+	 *
+	 * @param in
+	 *            the stream
+	 * @param channel
+	 *            the channel
+	 * @param capacity
+	 *            the initial capacity
+	 * @param maxCapacity
+	 *            the maximum capacity
+	 */
+	private ZippyStreamReader(final InputStream in,
+			final ReadableByteChannel channel, final int capacity,
+			final int maxCapacity) {
+		super();
+		this.in = in;
+		this.channel = channel;
+		this.maxCapacity = maxCapacity;
+		buffer = new byte[capacity];
+		view = ByteBuffer.wrap(buffer);
+	}
+
+	// ------------------------ BUFFER --------------------------
+
+	/**
+	 * Reads from the source once, after compacting the buffer.
+	 *
+	 * @return the number of bytes read, zero if a non-blocking channel has
+	 *         nothing to read, -1 at the end of the stream
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public int fill() throws IOException {
+		return fill(1);
+	}
+
+	/**
+	 * Reads from the source once, after making room for at least
+	 * {@code required} buffered bytes.
+	 *
+	 * @param required
+	 *            the number of bytes the pending read needs
+	 * @return the number of bytes read
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	private int fill(final int required) throws IOException {
+		if (position > 0) {
+			System.arraycopy(buffer, position, buffer, 0, limit - position);
+			limit -= position;
+			position = 0;
+		}
+		final int needed = Math.max(required, limit + 1);
+		if (needed > buffer.length) {
+			if (needed > maxCapacity) {
+				// Perhaps a malicious peer?
+				throw new IOException("ZippyStreamReader too long value.");
+			}
+			final long capacity = Math.max(buffer.length * 2L, needed);
+			final byte[] grown = new byte[(int) Math.min(capacity, maxCapacity)];
+			System.arraycopy(buffer, 0, grown, 0, limit);
+			buffer = grown;
+			view = ByteBuffer.wrap(buffer);
+		}
+		final int read;
+		if (in != null) {
+			read = in.read(buffer, limit, buffer.length - limit);
+		} else {
+			view.limit(buffer.length);
+			view.position(limit);
+			read = channel.read(view);
+		}
+		if (read > 0) {
+			limit += read;
+		}
+		return read;
+	}
+
+	/**
+	 * Makes sure {@code size} bytes are buffered, reading as much as needed.
+	 *
+	 * @param size
+	 *            the size
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	private void require(final int size) throws IOException {
+		while (limit - position < size) {
+			final int read = fill(size);
+			if (read < 0) {
+				throw new EOFException("ZippyStreamReader reached end of stream.");
+			} else if (read == 0) {
+				throw new ZippyUnderflowException();
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of buffered bytes not yet read.
+	 *
+	 * @return the int
+	 */
+	public int available() {
+		return limit - position;
+	}
+
+	/**
+	 * Returns a zippy buffer over the next {@code size} bytes, reading them
+	 * first if needed, and skips them. The returned buffer shares the reader
+	 * buffer and is valid until the next read.
+	 *
+	 * @param size
+	 *            the size
+	 * @return the zippy buffer
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public ZippyBuffer readBuffer(final int size) throws IOException {
+		require(size);
+		final ZippyBuffer result = new ZippyBuffer(buffer, position, size);
+		position += size;
+		return result;
+	}
+
+	// ------------------------ READER --------------------------
+
+	/**
+	 * Read a {@code double} field value from the stream.
+	 *
+	 * @return the double
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public double readDouble() throws IOException {
+		return Double.longBitsToDouble(readRawLittleEndianLong());
+	}
+
+	/**
+	 * Read a {@code float} field value from the stream.
+	 *
+	 * @return the float
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public float readFloat() throws IOException {
+		return Float.intBitsToFloat(readRawLittleEndianInt());
+	}
+
+	/**
+	 * Read an {@code Int} field value from the stream.
+	 *
+	 * @return the int
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public int readInt() throws IOException {
+		return readRawVarInt();
+	}
+
+	/**
+	 * Read an {@code Long} field value from the stream.
+	 *
+	 * @return the long
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public long readLong() throws IOException {
+		return readRawVarLong();
+	}
+
+	/**
+	 * Read a {@code FixedInt} field value from the stream.
+	 *
+	 * @return the int
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public int readFixedInt() throws IOException {
+		return readRawLittleEndianInt();
+	}
+
+	/**
+	 * Read a {@code FixedLong} field value from the stream.
+	 *
+	 * @return the long
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public long readFixedLong() throws IOException {
+		return readRawLittleEndianLong();
+	}
+
+	/**
+	 * Read a {@code UnsignedInt} field value from the stream.
+	 *
+	 * @return the int
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public int readUnsignedInt() throws IOException {
+		return readRawVarInt();
+	}
+
+	/**
+	 * Read a {@code UnsignedLong} field value from the stream.
+	 *
+	 * @return the long
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public long readUnsignedLong() throws IOException {
+		return readRawVarLong();
+	}
+
+	/**
+	 * Read an {@code UnsignedFixedInt} field value from the stream.
+	 *
+	 * @return the int
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public int readUnsignedFixedInt() throws IOException {
+		return readRawLittleEndianInt();
+	}
+
+	/**
+	 * Read an {@code UnsignedFixedLong} field value from the stream.
+	 *
+	 * @return the long
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public long readUnsignedFixedLong() throws IOException {
+		return readRawLittleEndianLong();
+	}
+
+	/**
+	 * Read an {@code SignedInt} field value from the stream.
+	 *
+	 * @return the int
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public int readSignedInt() throws IOException {
+		return ZippyBuffer.decodeZigZagInt(readRawVarInt());
+	}
+
+	/**
+	 * Read an {@code SignedLong} field value from the stream.
+	 *
+	 * @return the long
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public long readSignedLong() throws IOException {
+		return ZippyBuffer.decodeZigZagLong(readRawVarLong());
+	}
+
+	/**
+	 * Read an {@code SignedFixedInt} field value from the stream.
+	 *
+	 * @return the int
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public int readSignedFixedInt() throws IOException {
+		return readRawLittleEndianInt();
+	}
+
+	/**
+	 * Read an {@code SignedFixedLong} field value from the stream.
+	 *
+	 * @return the long
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public long readSignedFixedLong() throws IOException {
+		return readRawLittleEndianLong();
+	}
+
+	/**
+	 * Read a {@code bool} field value from the stream.
+	 *
+	 * @return true, if successful
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public boolean readBoolean() throws IOException {
+		return readRawVarInt() != 0;
+	}
+
+	/**
+	 * Read a {@code string} field value from the stream.
+	 *
+	 * @return the string
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public String readString() throws IOException {
+		final int size = readSize();
+		require(size);
+		final String result = new String(buffer, position, size,
+				ZippyUtf8.UTF_8);
+		position += size;
+		pendingSize = -1;
+		return result;
+	}
+
+	/**
+	 * Read a {@code bytes} field value from the stream.
+	 *
+	 * @return the byte[]
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public byte[] readBytes() throws IOException {
+		final int size = readSize();
+		final byte[] result = readRawBytes(size);
+		pendingSize = -1;
+		return result;
+	}
+
+	/**
+	 * Read the size of a string or bytes value, unless it was already read by
+	 * a previous attempt.
+	 *
+	 * @return the size
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	private int readSize() throws IOException {
+		if (pendingSize < 0) {
+			final int size = readRawVarInt();
+			if (size < 0) {
+				throw new IOException("ZippyStreamReader negative size.");
+			}
+			pendingSize = size;
+		}
+		return pendingSize;
+	}
+
+	/**
+	 * Attempt to read a sector, returning zero if we have reached the end of
+	 * the stream.
+	 *
+	 * @return the int
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public int readSector() throws IOException {
+		if (position == limit && varShift == 0) {
+			final int read = fill(1);
+			if (read < 0) {
+				return 0;
+			} else if (read == 0) {
+				throw new ZippyUnderflowException();
+			}
+		}
+		return readRawVarInt();
+	}
+
+	// -------------------------------------------------------------------
+
+	/**
+	 * Attempt to read a tag, returning zero if we have reached the end of the
+	 * stream.
+	 *
+	 * @return the tag, see {@link ZippyBuffer#getTagSector(int)} and
+	 *         {@link ZippyBuffer#getTagWireType(int)}
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public int readTag() throws IOException {
+		final int tag = readSector();
+		if (tag != 0 && ZippyBuffer.getTagSector(tag) == 0) {
+			throw new IOException(
+					"ZippyStreamReader encountered an invalid tag.");
+		}
+		return tag;
+	}
+
+	/**
+	 * Skips the value of a tagged sector.
+	 *
+	 * @param tag
+	 *            the tag
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public void skipSector(final int tag) throws IOException {
+		skipValue(ZippyBuffer.getTagWireType(tag));
+	}
+
+	/**
+	 * Skips a value of the given wire type without decoding it. A
+	 * length-prefixed value is skipped as it arrives, so it never has to fit in
+	 * the buffer.
+	 *
+	 * @param wireType
+	 *            the wire type
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public void skipValue(final int wireType) throws IOException {
+		switch (wireType) {
+		case ZippyBuffer.WIRE_VARINT:
+			readRawVarLong();
+			break;
+		case ZippyBuffer.WIRE_FIXED64:
+			require(8);
+			position += 8;
+			break;
+		case ZippyBuffer.WIRE_LENGTH_DELIMITED:
+			readSize();
+			while (pendingSize > 0) {
+				if (position == limit) {
+					require(1);
+				}
+				final int chunk = Math.min(pendingSize, limit - position);
+				position += chunk;
+				pendingSize -= chunk;
+			}
+			pendingSize = -1;
+			break;
+		case ZippyBuffer.WIRE_FIXED32:
+			require(4);
+			position += 4;
+			break;
+		default:
+			throw new IOException(
+					"ZippyStreamReader encountered an invalid wire type.");
+		}
+	}
+
+	/**
+	 * Read a raw VarInt from the stream. If larger than 32 bits, discard the
+	 * upper bits.
+	 *
+	 * @return the int
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public int readRawVarInt() throws IOException {
+		return (int) readRawVarLong();
+	}
+
+	/**
+	 * Read a raw VarLong from the stream. The bytes consumed before an
+	 * underflow are kept and the decoding resumes with the next call.
+	 *
+	 * @return the long
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public long readRawVarLong() throws IOException {
+		while (varShift < 64) {
+			if (position == limit) {
+				require(1);
+			}
+			final byte b = buffer[position++];
+			varValue |= (long) (b & 0x7F) << varShift;
+			if ((b & 0x80) == 0) {
+				final long result = varValue;
+				varValue = 0;
+				varShift = 0;
+				return result;
+			}
+			varShift += 7;
+		}
+		varValue = 0;
+		varShift = 0;
+		throw new IOException("ZippyBuffer encountered a malformed varint.");
+	}
+
+	/**
+	 * Read a 32-bit little-endian integer from the stream.
+	 *
+	 * @return the int
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public int readRawLittleEndianInt() throws IOException {
+		require(4);
+		final byte[] b = buffer;
+		final int i = position;
+		position += 4;
+		return (((int) b[i] & 0xff)) | (((int) b[i + 1] & 0xff) << 8)
+				| (((int) b[i + 2] & 0xff) << 16)
+				| (((int) b[i + 3] & 0xff) << 24);
+	}
+
+	/**
+	 * Read a 64-bit little-endian integer from the stream.
+	 *
+	 * @return the long
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public long readRawLittleEndianLong() throws IOException {
+		require(8);
+		final byte[] b = buffer;
+		final int i = position;
+		position += 8;
+		return (((long) b[i] & 0xff)) | (((long) b[i + 1] & 0xff) << 8)
+				| (((long) b[i + 2] & 0xff) << 16)
+				| (((long) b[i + 3] & 0xff) << 24)
+				| (((long) b[i + 4] & 0xff) << 32)
+				| (((long) b[i + 5] & 0xff) << 40)
+				| (((long) b[i + 6] & 0xff) << 48)
+				| (((long) b[i + 7] & 0xff) << 56);
+	}
+
+	/**
+	 * Read one byte from the stream.
+	 *
+	 * @return the byte
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public byte readRawByte() throws IOException {
+		if (position == limit) {
+			require(1);
+		}
+		return buffer[position++];
+	}
+
+	/**
+	 * Read a fixed size of bytes from the stream.
+	 *
+	 * @param size
+	 *            the size
+	 * @return the byte[]
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public byte[] readRawBytes(final int size) throws IOException {
+		require(size);
+		final byte[] bytes = new byte[size];
+		System.arraycopy(buffer, position, bytes, 0, size);
+		position += size;
+		return bytes;
+	}
+
+}
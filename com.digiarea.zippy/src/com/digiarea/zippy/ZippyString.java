@@ -0,0 +1,185 @@
+/*******************************************************************************
+ * Copyright (c) 2011 - 2014 DigiArea, Inc. and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     DigiArea, Inc. - initial API and implementation
+ *******************************************************************************/
+package com.digiarea.zippy;
+
+/**
+ * A UTF-8 string read from a {@link ZippyBuffer} without copying its bytes.
+ * The chars are only decoded, once, when a {@link CharSequence} method or
+ * {@link #toString()} needs them, while {@link #contentEquals(CharSequence)}
+ * and writing the string back through
+ * {@link ZippyBuffer#writeString(ZippyString)} work on the encoded bytes.
+ * <p>
+ * The view shares the storage of the buffer it was read from, so it is only
+ * valid as long as that storage is not reused.
+ */
+public final class ZippyString implements CharSequence {
+
+	/** The storage. */
+	private final ZippyStorage storage;
+
+	/** The offset of the encoded bytes. */
+	private final int offset;
+
+	/** The number of encoded bytes. */
+	private final int size;
+
+	/** The decoded value, {@code null} until needed. */
+	private String value;
+
+	/**
+	 * Instantiates a new zippy string.
+	 * 
+	 * @param storage
+	 *            the storage
+	 * @param offset
+	 *            the offset of the encoded bytes
+	 * @param size
+	 *            the number of encoded bytes
+	 */
+	public ZippyString(final ZippyStorage storage, final int offset,
+			final int size) {
+		super();
+		this.storage = storage;
+		this.offset = offset;
+		this.size = size;
+	}
+
+	/**
+	 * Gets the storage.
+	 * 
+	 * @return the storage
+	 */
+	public ZippyStorage getStorage() {
+		return storage;
+	}
+
+	/**
+	 * Gets the offset of the encoded bytes.
+	 * 
+	 * @return the offset
+	 */
+	public int getOffset() {
+		return offset;
+	}
+
+	/**
+	 * Gets the number of encoded bytes.
+	 * 
+	 * @return the size
+	 */
+	public int getSize() {
+		return size;
+	}
+
+	/**
+	 * Checks if the string has the same chars as a char sequence. ASCII chars
+	 * are compared with the encoded bytes, the string is only decoded once a
+	 * non-ASCII char shows up.
+	 * 
+	 * @param other
+	 *            the char sequence
+	 * @return true, if successful
+	 */
+	public boolean contentEquals(final CharSequence other) {
+		if (value != null) {
+			return value.contentEquals(other);
+		}
+		final int length = other.length();
+		if (length > size) {
+			// Every char takes at least one byte.
+			return false;
+		}
+		for (int i = 0; i < length; i++) {
+			final char c = other.charAt(i);
+			if (c >= 0x80) {
+				return toString().contentEquals(other);
+			}
+			if (storage.get(offset + i) != c) {
+				return false;
+			}
+		}
+		return length == size;
+	}
+
+	@Override
+	public int length() {
+		return toString().length();
+	}
+
+	@Override
+	public char charAt(final int index) {
+		return toString().charAt(index);
+	}
+
+	@Override
+	public CharSequence subSequence(final int start, final int end) {
+		return toString().subSequence(start, end);
+	}
+
+	@Override
+	public String toString() {
+		if (value == null) {
+			if (storage.hasArray()) {
+				value = new String(storage.array(), offset, size,
+						ZippyUtf8.UTF_8);
+			} else {
+				final byte[] bytes = new byte[size];
+				storage.get(offset, bytes, 0, size);
+				value = new String(bytes, ZippyUtf8.UTF_8);
+			}
+		}
+		return value;
+	}
+
+	/**
+	 * Compares the encoded bytes with another zippy string.
+	 * 
+	 * @param obj
+	 *            the obj
+	 * @return true, if successful
+	 */
+	@Override
+	public boolean equals(final Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (!(obj instanceof ZippyString)) {
+			return false;
+		}
+		final ZippyString other = (ZippyString) obj;
+		if (size != other.size) {
+			return false;
+		}
+		for (int i = 0; i < size; i++) {
+			if (storage.get(offset + i) != other.storage
+					.get(other.offset + i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Hashes the encoded bytes, so it differs from the hash code of the
+	 * decoded {@link String}.
+	 * 
+	 * @return the int
+	 */
+	@Override
+	public int hashCode() {
+		int result = 1;
+		for (int i = 0; i < size; i++) {
+			result = 31 * result + storage.get(offset + i);
+		}
+		return result;
+	}
+
+}
@@ -0,0 +1,32 @@
+/*******************************************************************************
+ * Copyright (c) 2011 - 2014 DigiArea, Inc. and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     DigiArea, Inc. - initial API and implementation
+ *******************************************************************************/
+package com.digiarea.zippy;
+
+import java.io.IOException;
+
+/**
+ * Signals that a non-blocking source has no more bytes for now. The decoder
+ * keeps what it has already consumed, so the same read can be retried once
+ * the source is readable again.
+ */
+public class ZippyUnderflowException extends IOException {
+
+	/** The Constant serialVersionUID. */
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * Instantiates a new zippy underflow exception.
+	 */
+	public ZippyUnderflowException() {
+		super("ZippyStreamReader needs more bytes.");
+	}
+
+}
@@ -0,0 +1,168 @@
+/*******************************************************************************
+ * Copyright (c) 2011 - 2014 DigiArea, Inc. and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     DigiArea, Inc. - initial API and implementation
+ *******************************************************************************/
+package com.digiarea.zippy;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * The sectors a decoder did not recognize, kept as ranges of the storage they
+ * were read from: each range holds whole sectors, tags included, exactly as
+ * they were received. A relay decoding packets of a newer schema writes them
+ * back verbatim after the sectors it knows, without decoding them and without
+ * copying them out of the input.
+ * <p>
+ * The ranges share the input storage, so they are only valid as long as the
+ * input is neither released nor overwritten. A holder may be reused once
+ * {@link #clear() cleared}.
+ */
+public final class ZippyUnknownSectors {
+
+	/** The initial number of ranges. */
+	private static final int INITIAL_RANGES = 4;
+
+	/** The storage of the ranges. */
+	private ZippyStorage storage;
+
+	/** The range offsets. */
+	private int[] offsets = new int[INITIAL_RANGES];
+
+	/** The range lengths. */
+	private int[] lengths = new int[INITIAL_RANGES];
+
+	/** The number of ranges. */
+	private int count;
+
+	/** The total number of bytes. */
+	private int size;
+
+	/**
+	 * Instantiates a new zippy unknown sectors.
+	 */
+	public ZippyUnknownSectors() {
+		super();
+	}
+
+	/**
+	 * Adds a range of whole sectors. A range following the last one is merged
+	 * into it.
+	 * 
+	 * @param storage
+	 *            the storage, the one of the ranges already added if any
+	 * @param offset
+	 *            the offset
+	 * @param length
+	 *            the length
+	 */
+	public void add(final ZippyStorage storage, final int offset,
+			final int length) {
+		if (count == 0) {
+			this.storage = storage;
+		} else if (this.storage != storage) {
+			throw new IllegalArgumentException(
+					"ZippyUnknownSectors ranges must share one storage.");
+		}
+		if (count > 0 && offsets[count - 1] + lengths[count - 1] == offset) {
+			lengths[count - 1] += length;
+		} else {
+			if (count == offsets.length) {
+				offsets = Arrays.copyOf(offsets, count * 2);
+				lengths = Arrays.copyOf(lengths, count * 2);
+			}
+			offsets[count] = offset;
+			lengths[count] = length;
+			count++;
+		}
+		size += length;
+	}
+
+	/**
+	 * Writes the sectors verbatim.
+	 * 
+	 * @param buffer
+	 *            the buffer
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public void writeTo(final ZippyBuffer buffer) throws IOException {
+		for (int i = 0; i < count; i++) {
+			buffer.writeRawBytes(storage, offsets[i], lengths[i]);
+		}
+	}
+
+	/**
+	 * Removes all the ranges.
+	 */
+	public void clear() {
+		storage = null;
+		count = 0;
+		size = 0;
+	}
+
+	/**
+	 * Checks if no sector is kept.
+	 * 
+	 * @return true, if is empty
+	 */
+	public boolean isEmpty() {
+		return count == 0;
+	}
+
+	/**
+	 * Gets the total number of bytes of the sectors.
+	 * 
+	 * @return the size
+	 */
+	public int getSize() {
+		return size;
+	}
+
+	/**
+	 * Gets the storage of the ranges.
+	 * 
+	 * @return the storage, null if no sector is kept
+	 */
+	public ZippyStorage getStorage() {
+		return storage;
+	}
+
+	/**
+	 * Gets the number of ranges.
+	 * 
+	 * @return the range count
+	 */
+	public int getRangeCount() {
+		return count;
+	}
+
+	/**
+	 * Gets the offset of a range.
+	 * 
+	 * @param index
+	 *            the range index
+	 * @return the offset
+	 */
+	public int getOffset(final int index) {
+		return offsets[index];
+	}
+
+	/**
+	 * Gets the length of a range.
+	 * 
+	 * @param index
+	 *            the range index
+	 * @return the length
+	 */
+	public int getLength(final int index) {
+		return lengths[index];
+	}
+
+}
@@ -0,0 +1,187 @@
+/*******************************************************************************
+ * Copyright (c) 2011 - 2014 DigiArea, Inc. and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     DigiArea, Inc. - initial API and implementation
+ *******************************************************************************/
+package com.digiarea.zippy;
+
+import java.nio.charset.Charset;
+
+/**
+ * Allocation-free UTF-8 sizing and encoding of character sequences. Unpaired
+ * surrogates are encoded as {@code '?'}, the same way
+ * {@link String#getBytes(String)} does, so the output is byte for byte the one
+ * of the JDK encoder.
+ */
+final class ZippyUtf8 {
+
+	/** The UTF-8 charset. */
+	static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	/** The replacement of unpaired surrogates. */
+	private static final byte REPLACEMENT = '?';
+
+	/**
+	 * Instantiates a new zippy utf8.
+	 */
+	private ZippyUtf8() {
+		super();
+	}
+
+	/**
+	 * Computes the number of bytes of the UTF-8 encoding of a sequence.
+	 *
+	 * @param value
+	 *            the value
+	 * @return the encoded length
+	 */
+	static int encodedLength(final CharSequence value) {
+		final int length = value.length();
+		int i = 0;
+		// ASCII fast path: one byte per char.
+		while (i < length && value.charAt(i) < 0x80) {
+			i++;
+		}
+		long size = length;
+		for (; i < length; i++) {
+			final char c = value.charAt(i);
+			if (c < 0x80) {
+				continue;
+			} else if (c < 0x800) {
+				size += 1;
+			} else if (isSurrogate(c)) {
+				if (Character.isHighSurrogate(c) && i + 1 < length
+						&& Character.isLowSurrogate(value.charAt(i + 1))) {
+					// Four bytes for two chars.
+					size += 2;
+					i++;
+				}
+				// Otherwise the replacement takes one byte.
+			} else {
+				size += 2;
+			}
+		}
+		if (size > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException(
+					"ZippyUtf8 encoded string is too long.");
+		}
+		return (int) size;
+	}
+
+	/**
+	 * Checks if a char is a surrogate.
+	 *
+	 * @param c
+	 *            the c
+	 * @return true, if is surrogate
+	 */
+	private static boolean isSurrogate(final char c) {
+		return c >= Character.MIN_SURROGATE && c <= Character.MAX_SURROGATE;
+	}
+
+	/**
+	 * Encodes a range of chars of a sequence into an array. The caller
+	 * guarantees enough room and that the range does not split a surrogate
+	 * pair.
+	 *
+	 * @param value
+	 *            the value
+	 * @param from
+	 *            the index of the first char
+	 * @param to
+	 *            the index after the last char
+	 * @param dst
+	 *            the destination array
+	 * @param index
+	 *            the index of the first byte
+	 * @return the index after the last byte
+	 */
+	static int encode(final CharSequence value, final int from, final int to,
+			final byte[] dst, int index) {
+		int i = from;
+		// ASCII fast path.
+		for (char c; i < to && (c = value.charAt(i)) < 0x80; i++) {
+			dst[index++] = (byte) c;
+		}
+		for (; i < to; i++) {
+			final char c = value.charAt(i);
+			if (c < 0x80) {
+				dst[index++] = (byte) c;
+			} else if (c < 0x800) {
+				dst[index++] = (byte) (0xC0 | (c >>> 6));
+				dst[index++] = (byte) (0x80 | (c & 0x3F));
+			} else if (isSurrogate(c)) {
+				if (Character.isHighSurrogate(c) && i + 1 < to
+						&& Character.isLowSurrogate(value.charAt(i + 1))) {
+					final int cp = Character.toCodePoint(c, value.charAt(++i));
+					dst[index++] = (byte) (0xF0 | (cp >>> 18));
+					dst[index++] = (byte) (0x80 | ((cp >>> 12) & 0x3F));
+					dst[index++] = (byte) (0x80 | ((cp >>> 6) & 0x3F));
+					dst[index++] = (byte) (0x80 | (cp & 0x3F));
+				} else {
+					dst[index++] = REPLACEMENT;
+				}
+			} else {
+				dst[index++] = (byte) (0xE0 | (c >>> 12));
+				dst[index++] = (byte) (0x80 | ((c >>> 6) & 0x3F));
+				dst[index++] = (byte) (0x80 | (c & 0x3F));
+			}
+		}
+		return index;
+	}
+
+	/**
+	 * Encodes a range of chars of a sequence into a storage. The caller
+	 * guarantees enough room and that the range does not split a surrogate
+	 * pair.
+	 *
+	 * @param value
+	 *            the value
+	 * @param from
+	 *            the index of the first char
+	 * @param to
+	 *            the index after the last char
+	 * @param dst
+	 *            the destination storage
+	 * @param index
+	 *            the index of the first byte
+	 * @return the index after the last byte
+	 */
+	static int encode(final CharSequence value, final int from, final int to,
+			final ZippyStorage dst, int index) {
+		if (dst.hasArray()) {
+			return encode(value, from, to, dst.array(), index);
+		}
+		for (int i = from; i < to; i++) {
+			final char c = value.charAt(i);
+			if (c < 0x80) {
+				dst.put(index++, (byte) c);
+			} else if (c < 0x800) {
+				dst.put(index++, (byte) (0xC0 | (c >>> 6)));
+				dst.put(index++, (byte) (0x80 | (c & 0x3F)));
+			} else if (isSurrogate(c)) {
+				if (Character.isHighSurrogate(c) && i + 1 < to
+						&& Character.isLowSurrogate(value.charAt(i + 1))) {
+					final int cp = Character.toCodePoint(c, value.charAt(++i));
+					dst.put(index++, (byte) (0xF0 | (cp >>> 18)));
+					dst.put(index++, (byte) (0x80 | ((cp >>> 12) & 0x3F)));
+					dst.put(index++, (byte) (0x80 | ((cp >>> 6) & 0x3F)));
+					dst.put(index++, (byte) (0x80 | (cp & 0x3F)));
+				} else {
+					dst.put(index++, REPLACEMENT);
+				}
+			} else {
+				dst.put(index++, (byte) (0xE0 | (c >>> 12)));
+				dst.put(index++, (byte) (0x80 | ((c >>> 6) & 0x3F)));
+				dst.put(index++, (byte) (0x80 | (c & 0x3F)));
+			}
+		}
+		return index;
+	}
+
+}
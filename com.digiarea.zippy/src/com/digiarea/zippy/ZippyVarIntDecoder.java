@@ -0,0 +1,246 @@
+/*******************************************************************************
+ * Copyright (c) 2011 - 2014 DigiArea, Inc. and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     DigiArea, Inc. - initial API and implementation
+ *******************************************************************************/
+package com.digiarea.zippy;
+
+import java.io.IOException;
+
+/**
+ * Bulk VarInt decoding for packed arrays. This class is the portable scalar
+ * decoder; {@link #getInstance()} returns the vectorized decoder of the
+ * {@code com.digiarea.zippy.vector} fragment instead when it is deployed and
+ * the JVM provides the {@code jdk.incubator.vector} module, which can be
+ * turned off with {@code -Dcom.digiarea.zippy.vector=false}.
+ * {@link #isVectorized()} tells which one is in use and
+ * {@link #getLoadFailure()} why the vectorized one is not.
+ */
+public class ZippyVarIntDecoder {
+
+	/** The class name of the vectorized decoder. */
+	public static final String VECTOR_DECODER =
+			"com.digiarea.zippy.vector.ZippyVectorVarIntDecoder";
+
+	/** The system property enabling the vectorized decoder. */
+	public static final String VECTOR_PROPERTY = "com.digiarea.zippy.vector";
+
+	/** The longest VarInt encoding. */
+	protected static final int MAX_VARINT_SIZE = 10;
+
+	/** The continuation bits of eight VarInt bytes read as one word. */
+	protected static final long STOP_BITS = 0x8080808080808080L;
+
+	/** Why the vectorized decoder could not be loaded, set by load(). */
+	private static Throwable loadFailure;
+
+	/** The instance. */
+	private static final ZippyVarIntDecoder INSTANCE = load();
+
+	/**
+	 * Instantiates a new scalar zippy var int decoder, prefer
+	 * {@link #getInstance()}.
+	 */
+	public ZippyVarIntDecoder() {
+		super();
+	}
+
+	/**
+	 * Gets the best decoder available.
+	 * 
+	 * @return the instance
+	 */
+	public static ZippyVarIntDecoder getInstance() {
+		return INSTANCE;
+	}
+
+	/**
+	 * Gets the reason the vectorized decoder could not be loaded, e.g. a
+	 * {@link ClassNotFoundException} when the fragment is not deployed or a
+	 * {@link LinkageError} when the JVM lacks the Vector API.
+	 * 
+	 * @return the failure, null if the vectorized decoder is in use or was
+	 *         turned off
+	 */
+	public static Throwable getLoadFailure() {
+		return loadFailure;
+	}
+
+	/**
+	 * Checks if this decoder uses SIMD instructions.
+	 * 
+	 * @return true, if vectorized
+	 */
+	public boolean isVectorized() {
+		return false;
+	}
+
+	/**
+	 * Loads the vectorized decoder, falling back to the scalar one whatever
+	 * goes wrong.
+	 * 
+	 * @return the zippy var int decoder
+	 */
+	private static ZippyVarIntDecoder load() {
+		final String enabled = System.getProperty(VECTOR_PROPERTY, "true");
+		if (!Boolean.parseBoolean(enabled)) {
+			return new ZippyVarIntDecoder();
+		}
+		try {
+			return (ZippyVarIntDecoder) Class.forName(VECTOR_DECODER, true,
+					ZippyVarIntDecoder.class.getClassLoader())
+					.getConstructor().newInstance();
+		} catch (final Throwable e) {
+			// Not deployed or no Vector API in this JVM: stay scalar.
+			loadFailure = e;
+			return new ZippyVarIntDecoder();
+		}
+	}
+
+	/**
+	 * Packs the 7-bit groups of up to eight little-endian VarInt bytes into
+	 * one value, dropping their continuation bits.
+	 * 
+	 * @param word
+	 *            the VarInt bytes, read as a little-endian word
+	 * @return the value of the groups
+	 */
+	protected static long compact(long word) {
+		word &= 0x7F7F7F7F7F7F7F7FL;
+		word = ((word & 0x7F007F007F007F00L) >>> 1)
+				| (word & 0x007F007F007F007FL);
+		word = ((word & 0x3FFF00003FFF0000L) >>> 2)
+				| (word & 0x00003FFF00003FFFL);
+		return ((word & 0x0FFFFFFF00000000L) >>> 4)
+				| (word & 0x000000000FFFFFFFL);
+	}
+
+	/**
+	 * Decodes VarInts into {@code int} values, keeping the low 32 bits of
+	 * longer values.
+	 * 
+	 * @param storage
+	 *            the storage
+	 * @param index
+	 *            the index of the first VarInt
+	 * @param limit
+	 *            the limit of the readable bytes
+	 * @param dst
+	 *            the destination array
+	 * @param offset
+	 *            the destination offset
+	 * @param length
+	 *            the number of values
+	 * @return the index after the last VarInt
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public int decodeInts(final ZippyStorage storage, int index,
+			final int limit, final int[] dst, final int offset,
+			final int length) throws IOException {
+		for (int i = offset; i < offset + length; i++) {
+			if (limit - index >= MAX_VARINT_SIZE) {
+				// Fast path: find the last byte in a single word.
+				final long word = storage.getLongLE(index);
+				final long stops = ~word & STOP_BITS;
+				if (stops != 0) {
+					final int bits = Long.numberOfTrailingZeros(stops) + 1;
+					dst[i] = (int) compact(word & (-1L >>> (64 - bits)));
+					index += bits >>> 3;
+					continue;
+				}
+			}
+			long value = 0;
+			int shift = 0;
+			byte b;
+			do {
+				index = check(index, limit, shift);
+				b = storage.get(index++);
+				value |= (long) (b & 0x7F) << shift;
+				shift += 7;
+			} while (b < 0);
+			dst[i] = (int) value;
+		}
+		return index;
+	}
+
+	/**
+	 * Decodes VarInts into {@code long} values.
+	 * 
+	 * @param storage
+	 *            the storage
+	 * @param index
+	 *            the index of the first VarInt
+	 * @param limit
+	 *            the limit of the readable bytes
+	 * @param dst
+	 *            the destination array
+	 * @param offset
+	 *            the destination offset
+	 * @param length
+	 *            the number of values
+	 * @return the index after the last VarInt
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public int decodeLongs(final ZippyStorage storage, int index,
+			final int limit, final long[] dst, final int offset,
+			final int length) throws IOException {
+		for (int i = offset; i < offset + length; i++) {
+			if (limit - index >= MAX_VARINT_SIZE) {
+				// Fast path: find the last byte in a single word.
+				final long word = storage.getLongLE(index);
+				final long stops = ~word & STOP_BITS;
+				if (stops != 0) {
+					final int bits = Long.numberOfTrailingZeros(stops) + 1;
+					dst[i] = compact(word & (-1L >>> (64 - bits)));
+					index += bits >>> 3;
+					continue;
+				}
+			}
+			long value = 0;
+			int shift = 0;
+			byte b;
+			do {
+				index = check(index, limit, shift);
+				b = storage.get(index++);
+				value |= (long) (b & 0x7F) << shift;
+				shift += 7;
+			} while (b < 0);
+			dst[i] = value;
+		}
+		return index;
+	}
+
+	/**
+	 * Checks that one more VarInt byte can be read.
+	 * 
+	 * @param index
+	 *            the index of the byte
+	 * @param limit
+	 *            the limit
+	 * @param shift
+	 *            the number of bits decoded so far
+	 * @return the index
+	 * @throws IOException
+	 *             if the byte is out of bounds or the VarInt is too long.
+	 */
+	private static int check(final int index, final int limit, final int shift)
+			throws IOException {
+		if (shift >= 64) {
+			throw new IOException(
+					"ZippyBuffer encountered a malformed varint.");
+		}
+		if (index >= limit) {
+			// out of space
+			throw new IOException("ZippyBuffer ran out of space.");
+		}
+		return index;
+	}
+
+}
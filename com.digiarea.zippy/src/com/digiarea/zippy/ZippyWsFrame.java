@@ -0,0 +1,405 @@
+/*******************************************************************************
+ * Copyright (c) 2011 - 2014 DigiArea, Inc. and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     DigiArea, Inc. - initial API and implementation
+ *******************************************************************************/
+package com.digiarea.zippy;
+
+import java.io.IOException;
+
+/**
+ * The header of an RFC 6455 WebSocket frame: the FIN and RSV bits, the
+ * opcode, the optional masking key and the payload length. A single instance
+ * can be reused for every frame of a connection.
+ * 
+ * @see ZippyBuffer#readWsFrameHeader(ZippyWsFrame)
+ * @see ZippyBuffer#writeWsFrameHeader(ZippyWsFrame)
+ */
+public final class ZippyWsFrame {
+
+	/** The continuation frame opcode. */
+	public static final int CONTINUATION = 0x0;
+
+	/** The text frame opcode. */
+	public static final int TEXT = 0x1;
+
+	/** The binary frame opcode. */
+	public static final int BINARY = 0x2;
+
+	/** The close frame opcode. */
+	public static final int CLOSE = 0x8;
+
+	/** The ping frame opcode. */
+	public static final int PING = 0x9;
+
+	/** The pong frame opcode. */
+	public static final int PONG = 0xA;
+
+	/** The RSV1 bit, set on compressed messages by per-message deflate. */
+	public static final int RSV1 = 0x40;
+
+	/** The RSV2 bit. */
+	public static final int RSV2 = 0x20;
+
+	/** The RSV3 bit. */
+	public static final int RSV3 = 0x10;
+
+	/** The maximum payload length of a control frame. */
+	public static final int MAX_CONTROL_LENGTH = 125;
+
+	/** The FIN bit. */
+	static final int FIN_BIT = 0x80;
+
+	/** The RSV1 to RSV3 bits. */
+	static final int RSV_BITS = 0x70;
+
+	/** The opcode bits. */
+	static final int OPCODE_BITS = 0x0F;
+
+	/** The MASK bit. */
+	static final int MASK_BIT = 0x80;
+
+	/** The 7-bit length announcing a 16-bit length. */
+	static final int LENGTH_16 = 126;
+
+	/** The 7-bit length announcing a 64-bit length. */
+	static final int LENGTH_64 = 127;
+
+	/** The fin. */
+	private boolean fin = true;
+
+	/** The RSV bits, already shifted to their header position. */
+	private int rsv;
+
+	/** The opcode. */
+	private int opcode = BINARY;
+
+	/** The masked. */
+	private boolean masked;
+
+	/** The masking key, its first byte on the wire in the highest bits. */
+	private int maskingKey;
+
+	/** The payload length. */
+	private long payloadLength;
+
+	/**
+	 * Instantiates a new zippy ws frame for a final unmasked binary frame.
+	 */
+	public ZippyWsFrame() {
+		super();
+	}
+
+	/**
+	 * Instantiates a new zippy ws frame.
+	 * 
+	 * @param fin
+	 *            the fin
+	 * @param opcode
+	 *            the opcode
+	 * @param payloadLength
+	 *            the payload length
+	 * @throws IllegalArgumentException
+	 *             if the payload length is negative.
+	 */
+	public ZippyWsFrame(final boolean fin, final int opcode,
+			final long payloadLength) {
+		super();
+		this.fin = fin;
+		this.opcode = opcode;
+		setPayloadLength(payloadLength);
+	}
+
+	/**
+	 * Checks if this is the final fragment of a message.
+	 * 
+	 * @return true, if is fin
+	 */
+	public boolean isFin() {
+		return fin;
+	}
+
+	/**
+	 * Sets the fin.
+	 * 
+	 * @param fin
+	 *            the new fin
+	 */
+	public void setFin(final boolean fin) {
+		this.fin = fin;
+	}
+
+	/**
+	 * Gets the RSV bits as the high nibble of the first header byte, i.e.
+	 * {@code 0x40} for RSV1, {@code 0x20} for RSV2 and {@code 0x10} for RSV3.
+	 * 
+	 * @return the rsv
+	 */
+	public int getRsv() {
+		return rsv;
+	}
+
+	/**
+	 * Sets the RSV bits, see {@link #getRsv()}.
+	 * 
+	 * @param rsv
+	 *            the new rsv
+	 */
+	public void setRsv(final int rsv) {
+		this.rsv = rsv & RSV_BITS;
+	}
+
+	/**
+	 * Gets the opcode.
+	 * 
+	 * @return the opcode
+	 */
+	public int getOpcode() {
+		return opcode;
+	}
+
+	/**
+	 * Sets the opcode.
+	 * 
+	 * @param opcode
+	 *            the new opcode
+	 */
+	public void setOpcode(final int opcode) {
+		this.opcode = opcode & OPCODE_BITS;
+	}
+
+	/**
+	 * Checks if this is a control frame: close, ping or pong.
+	 * 
+	 * @return true, if is control
+	 */
+	public boolean isControl() {
+		return (opcode & CLOSE) != 0;
+	}
+
+	/**
+	 * Checks if the payload is masked.
+	 * 
+	 * @return true, if is masked
+	 */
+	public boolean isMasked() {
+		return masked;
+	}
+
+	/**
+	 * Sets the masked.
+	 * 
+	 * @param masked
+	 *            the new masked
+	 */
+	public void setMasked(final boolean masked) {
+		this.masked = masked;
+	}
+
+	/**
+	 * Gets the masking key, the first key byte on the wire being the highest
+	 * byte.
+	 * 
+	 * @return the masking key
+	 */
+	public int getMaskingKey() {
+		return maskingKey;
+	}
+
+	/**
+	 * Sets the masking key and marks the frame as masked.
+	 * 
+	 * @param maskingKey
+	 *            the new masking key
+	 */
+	public void setMaskingKey(final int maskingKey) {
+		this.maskingKey = maskingKey;
+		masked = true;
+	}
+
+	/**
+	 * Gets the payload length.
+	 * 
+	 * @return the payload length
+	 */
+	public long getPayloadLength() {
+		return payloadLength;
+	}
+
+	/**
+	 * Sets the payload length.
+	 * 
+	 * @param payloadLength
+	 *            the new payload length
+	 * @throws IllegalArgumentException
+	 *             if the payload length is negative.
+	 */
+	public void setPayloadLength(final long payloadLength) {
+		if (payloadLength < 0) {
+			throw new IllegalArgumentException(
+					"ZippyWsFrame payload length is negative.");
+		}
+		this.payloadLength = payloadLength;
+	}
+
+	/**
+	 * Computes the header size of a frame.
+	 * 
+	 * @param masked
+	 *            whether the frame carries a masking key
+	 * @param payloadLength
+	 *            the payload length
+	 * @return the header size
+	 */
+	public static int sizeOfHeader(final boolean masked,
+			final long payloadLength) {
+		final int size = masked ? 6 : 2;
+		if (payloadLength < LENGTH_16) {
+			return size;
+		} else if (payloadLength <= 0xFFFF) {
+			return size + 2;
+		} else {
+			return size + 8;
+		}
+	}
+
+	/**
+	 * Decodes a frame header if it is complete.
+	 * 
+	 * @param storage
+	 *            the storage
+	 * @param index
+	 *            the index of the header
+	 * @param available
+	 *            the number of bytes available from the index
+	 * @param frame
+	 *            the frame to fill
+	 * @return the header size, or zero if more bytes are needed, in which
+	 *         case the frame is left unchanged
+	 * @throws IOException
+	 *             if the header is malformed.
+	 */
+	static int readHeader(final ZippyStorage storage, final int index,
+			final int available, final ZippyWsFrame frame) throws IOException {
+		if (available < 2) {
+			return 0;
+		}
+		final int b0 = storage.get(index) & 0xFF;
+		final int b1 = storage.get(index + 1) & 0xFF;
+		final boolean masked = (b1 & MASK_BIT) != 0;
+		long length = b1 & 0x7F;
+		int i = index + 2;
+		final int size = sizeOfHeader(masked, length == LENGTH_64 ? 0x10000
+				: length);
+		if (available < size) {
+			return 0;
+		}
+		if (length == LENGTH_16) {
+			length = (storage.get(i) & 0xFF) << 8 | (storage.get(i + 1) & 0xFF);
+			i += 2;
+		} else if (length == LENGTH_64) {
+			length = 0;
+			for (final int end = i + 8; i < end; i++) {
+				length = length << 8 | (storage.get(i) & 0xFF);
+			}
+			if (length < 0) {
+				throw new IOException(
+						"ZippyBufferReader to long WebSocket frame.");
+			}
+		}
+		if ((b0 & CLOSE) != 0
+				&& ((b0 & FIN_BIT) == 0 || length > MAX_CONTROL_LENGTH)) {
+			throw new IOException(
+					"ZippyBufferReader malformed WebSocket control frame.");
+		}
+		frame.fin = (b0 & FIN_BIT) != 0;
+		frame.rsv = b0 & RSV_BITS;
+		frame.opcode = b0 & OPCODE_BITS;
+		frame.masked = masked;
+		frame.maskingKey = masked ? (storage.get(i) & 0xFF) << 24
+				| (storage.get(i + 1) & 0xFF) << 16
+				| (storage.get(i + 2) & 0xFF) << 8
+				| (storage.get(i + 3) & 0xFF) : 0;
+		frame.payloadLength = length;
+		return size;
+	}
+
+	/**
+	 * Encodes a frame header without any bounds check.
+	 * 
+	 * @param storage
+	 *            the storage
+	 * @param index
+	 *            the index
+	 * @param frame
+	 *            the frame
+	 * @return the index after the header
+	 */
+	static int writeHeader(final ZippyStorage storage, int index,
+			final ZippyWsFrame frame) {
+		final long length = frame.payloadLength;
+		final int mask = frame.masked ? MASK_BIT : 0;
+		storage.put(index++, (byte) ((frame.fin ? FIN_BIT : 0) | frame.rsv
+				| frame.opcode));
+		if (length < LENGTH_16) {
+			storage.put(index++, (byte) (mask | length));
+		} else if (length <= 0xFFFF) {
+			storage.put(index++, (byte) (mask | LENGTH_16));
+			storage.put(index++, (byte) (length >>> 8));
+			storage.put(index++, (byte) length);
+		} else {
+			storage.put(index++, (byte) (mask | LENGTH_64));
+			for (int shift = 56; shift >= 0; shift -= 8) {
+				storage.put(index++, (byte) (length >>> shift));
+			}
+		}
+		if (frame.masked) {
+			final int key = frame.maskingKey;
+			storage.put(index++, (byte) (key >>> 24));
+			storage.put(index++, (byte) (key >>> 16));
+			storage.put(index++, (byte) (key >>> 8));
+			storage.put(index++, (byte) key);
+		}
+		return index;
+	}
+
+	/**
+	 * Masks or unmasks, as it is the same XOR, a range of a storage in place.
+	 * Whole 64-bit words are processed at once, only the tail goes byte by
+	 * byte.
+	 * 
+	 * @param storage
+	 *            the storage
+	 * @param index
+	 *            the index
+	 * @param length
+	 *            the length
+	 * @param maskingKey
+	 *            the masking key, rotated to the first byte of the range
+	 * @return the masking key rotated to the byte following the range, to
+	 *         continue with a payload received in several parts
+	 */
+	public static int mask(final ZippyStorage storage, int index,
+			final int length, int maskingKey) {
+		final int end = index + length;
+		if (length >= 8) {
+			final long word = (Integer.reverseBytes(maskingKey) & 0xFFFFFFFFL)
+					* 0x100000001L;
+			for (; end - index >= 8; index += 8) {
+				storage.putLongLE(index, storage.getLongLE(index) ^ word);
+			}
+		}
+		for (; index < end; index++) {
+			storage.put(index,
+					(byte) (storage.get(index) ^ (maskingKey >>> 24)));
+			maskingKey = Integer.rotateLeft(maskingKey, 8);
+		}
+		return maskingKey;
+	}
+
+}
@@ -0,0 +1,322 @@
+/*******************************************************************************
+ * Copyright (c) 2011 - 2014 DigiArea, Inc. and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     DigiArea, Inc. - initial API and implementation
+ *******************************************************************************/
+package com.digiarea.zippy;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * An incremental RFC 6455 WebSocket frame decoder for non-blocking reads. It
+ * accepts whatever a channel read returned, keeps its state between calls and
+ * passes complete headers and payload ranges to a {@link ZippyWsFrameHandler}
+ * without copying the payload. Only an incomplete header, at most 14 bytes,
+ * is kept by the decoder.
+ * <p>
+ * A typical selector loop wraps the read buffer of each connection once in a
+ * {@link ZippyStorage}, then after every read feeds the bytes read and clears
+ * the buffer:
+ * 
+ * <pre>
+ * channel.read(buffer);
+ * decoder.decode(storage, 0, buffer.position());
+ * buffer.clear();
+ * </pre>
+ * 
+ * With a {@link ZippyDeflate}, the payload of a frame carrying the
+ * {@link ZippyWsFrame#RSV1} bit is gathered and inflated once complete, then
+ * handed over as the payload of a frame without the bit. Compressed messages
+ * must fit in a single frame.
+ * <p>
+ * A decoder belongs to a single connection and is not thread-safe.
+ */
+public final class ZippyWsFrameDecoder {
+
+	/** The maximum header size. */
+	private static final int MAX_HEADER_SIZE = 14;
+
+	/** The handler. */
+	private final ZippyWsFrameHandler handler;
+
+	/** The maximum payload length. */
+	private final long maxPayloadLength;
+
+	/** The current frame. */
+	private final ZippyWsFrame frame = new ZippyWsFrame();
+
+	/** The incomplete header bytes. */
+	private final ZippyStorage header = new ZippyHeapStorage(
+			new byte[MAX_HEADER_SIZE]);
+
+	/** The number of incomplete header bytes. */
+	private int headerSize;
+
+	/** Whether the payload of the current frame is being received. */
+	private boolean inPayload;
+
+	/** The number of payload bytes still to be received. */
+	private long remaining;
+
+	/** The masking key, rotated to the next payload byte. */
+	private int maskingKey;
+
+	/** The decompression, {@code null} to leave compressed frames as is. */
+	private final ZippyDeflate deflate;
+
+	/** The pool of the compressed and inflated payloads. */
+	private final ZippySegmentPool pool;
+
+	/** The compressed payload of the current frame, {@code null} if none. */
+	private ZippyBuffer compressed;
+
+	/**
+	 * Instantiates a new zippy ws frame decoder without a payload limit.
+	 * 
+	 * @param handler
+	 *            the handler
+	 */
+	public ZippyWsFrameDecoder(final ZippyWsFrameHandler handler) {
+		this(handler, Long.MAX_VALUE);
+	}
+
+	/**
+	 * Instantiates a new zippy ws frame decoder.
+	 * 
+	 * @param handler
+	 *            the handler
+	 * @param maxPayloadLength
+	 *            the maximum payload length of a frame
+	 */
+	public ZippyWsFrameDecoder(final ZippyWsFrameHandler handler,
+			final long maxPayloadLength) {
+		this(handler, maxPayloadLength, null);
+	}
+
+	/**
+	 * Instantiates a new zippy ws frame decoder inflating compressed frames.
+	 * 
+	 * @param handler
+	 *            the handler
+	 * @param maxPayloadLength
+	 *            the maximum payload length of a frame, compressed or
+	 *            inflated
+	 * @param deflate
+	 *            the decompression, or {@code null} to hand compressed
+	 *            payloads over as they are
+	 */
+	public ZippyWsFrameDecoder(final ZippyWsFrameHandler handler,
+			final long maxPayloadLength, final ZippyDeflate deflate) {
+		super();
+		this.handler = handler;
+		this.maxPayloadLength = maxPayloadLength;
+		this.deflate = deflate;
+		pool = deflate == null ? null : new ZippySegmentPool();
+	}
+
+	/**
+	 * Decodes the remaining bytes of a buffer, which are all consumed.
+	 * 
+	 * @param buffer
+	 *            the buffer
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public void decode(final ZippyBuffer buffer) throws IOException {
+		decode(buffer.getStorage(), buffer.position(), buffer.remaining());
+		buffer.position(buffer.limit());
+	}
+
+	/**
+	 * Decodes a range of bytes, which are all consumed.
+	 * 
+	 * @param storage
+	 *            the storage
+	 * @param offset
+	 *            the offset
+	 * @param length
+	 *            the length
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public void decode(final ZippyStorage storage, int offset, int length)
+			throws IOException {
+		while (length > 0) {
+			if (inPayload) {
+				final int chunk = (int) Math.min(remaining, length);
+				if (frame.isMasked()) {
+					maskingKey = ZippyWsFrame.mask(storage, offset, chunk,
+							maskingKey);
+				}
+				remaining -= chunk;
+				if (compressed != null) {
+					compressed.writeRawBytes(storage, offset, chunk);
+				} else {
+					handler.onPayload(frame, storage, offset, chunk);
+				}
+				offset += chunk;
+				length -= chunk;
+				if (remaining == 0) {
+					endFrame();
+				}
+			} else {
+				final int consumed = decodeHeader(storage, offset, length);
+				offset += consumed;
+				length -= consumed;
+			}
+		}
+	}
+
+	/**
+	 * Decodes a header, directly from the storage when it is complete there,
+	 * otherwise through the incomplete header bytes.
+	 * 
+	 * @param storage
+	 *            the storage
+	 * @param offset
+	 *            the offset
+	 * @param length
+	 *            the length
+	 * @return the number of bytes consumed
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	private int decodeHeader(final ZippyStorage storage, final int offset,
+			final int length) throws IOException {
+		int size;
+		int consumed;
+		if (headerSize == 0) {
+			size = ZippyWsFrame.readHeader(storage, offset, length, frame);
+			consumed = size;
+		} else {
+			size = 0;
+			consumed = 0;
+		}
+		if (size == 0) {
+			final int previous = headerSize;
+			final int chunk = Math.min(MAX_HEADER_SIZE - headerSize, length);
+			header.put(headerSize, storage, offset, chunk);
+			headerSize += chunk;
+			size = ZippyWsFrame.readHeader(header, 0, headerSize, frame);
+			if (size == 0) {
+				return chunk;
+			}
+			consumed = size - previous;
+			headerSize = 0;
+		}
+		startFrame();
+		return consumed;
+	}
+
+	/**
+	 * Starts the payload of a decoded frame.
+	 * 
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	private void startFrame() throws IOException {
+		remaining = frame.getPayloadLength();
+		if (remaining > maxPayloadLength) {
+			throw new IOException(
+					"ZippyWsFrameDecoder too long WebSocket frame.");
+		}
+		maskingKey = frame.getMaskingKey();
+		if (deflate != null && (frame.getRsv() & ZippyWsFrame.RSV1) != 0) {
+			if (!frame.isFin() || frame.getOpcode() == ZippyWsFrame.CONTINUATION
+					|| frame.getOpcode() >= ZippyWsFrame.CLOSE) {
+				throw new IOException(
+						"ZippyWsFrameDecoder bad compressed WebSocket frame.");
+			}
+			compressed = new ZippyBuffer(pool);
+		} else {
+			handler.onFrameStart(frame);
+		}
+		if (remaining == 0) {
+			endFrame();
+		} else {
+			inPayload = true;
+		}
+	}
+
+	/**
+	 * Ends the current frame.
+	 * 
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	private void endFrame() throws IOException {
+		inPayload = false;
+		if (compressed != null) {
+			inflateFrame();
+		}
+		handler.onFrameEnd(frame);
+	}
+
+	/**
+	 * Inflates the compressed payload of the current frame and hands the
+	 * frame over without the RSV1 bit.
+	 * 
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	private void inflateFrame() throws IOException {
+		final ZippyBuffer inflated = new ZippyBuffer(pool);
+		try {
+			final int length = deflate.inflate(new ZippyCompositeStorage(
+					compressed.getSegments()), 0, compressed.getWrittenSize(),
+					inflated, (int) Math.min(maxPayloadLength,
+							Integer.MAX_VALUE));
+			frame.setRsv(frame.getRsv() & ~ZippyWsFrame.RSV1);
+			frame.setPayloadLength(length);
+			handler.onFrameStart(frame);
+			final List<ZippySegment> segments = inflated.getSegments();
+			for (int i = 0; i < segments.size(); i++) {
+				final ZippySegment segment = segments.get(i);
+				if (segment.getLength() > 0) {
+					handler.onPayload(frame, segment.getStorage(),
+							segment.getOffset(), segment.getLength());
+				}
+			}
+		} finally {
+			inflated.release();
+			releaseCompressed();
+		}
+	}
+
+	/**
+	 * Releases the compressed payload of the current frame, if any.
+	 */
+	private void releaseCompressed() {
+		if (compressed != null) {
+			compressed.release();
+			compressed = null;
+		}
+	}
+
+	/**
+	 * Checks if the decoder is between two frames, i.e. it holds no part of a
+	 * header or a payload.
+	 * 
+	 * @return true, if is idle
+	 */
+	public boolean isIdle() {
+		return !inPayload && headerSize == 0;
+	}
+
+	/**
+	 * Drops any partially decoded frame.
+	 */
+	public void reset() {
+		headerSize = 0;
+		inPayload = false;
+		remaining = 0;
+		releaseCompressed();
+	}
+
+}
@@ -0,0 +1,59 @@
+/*******************************************************************************
+ * Copyright (c) 2011 - 2014 DigiArea, Inc. and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     DigiArea, Inc. - initial API and implementation
+ *******************************************************************************/
+package com.digiarea.zippy;
+
+import java.io.IOException;
+
+/**
+ * Receives the frames decoded by a {@link ZippyWsFrameDecoder}. Payloads are
+ * handed over as ranges of the storage the decoder was fed with, already
+ * unmasked, and are only valid until the call returns.
+ */
+public interface ZippyWsFrameHandler {
+
+	/**
+	 * Called once the header of a frame has been decoded.
+	 * 
+	 * @param frame
+	 *            the frame header
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	void onFrameStart(ZippyWsFrame frame) throws IOException;
+
+	/**
+	 * Called for every part of the payload, as it arrives.
+	 * 
+	 * @param frame
+	 *            the frame header
+	 * @param storage
+	 *            the storage holding the part
+	 * @param offset
+	 *            the offset of the part
+	 * @param length
+	 *            the length of the part
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	void onPayload(ZippyWsFrame frame, ZippyStorage storage, int offset,
+			int length) throws IOException;
+
+	/**
+	 * Called once the whole payload has been delivered.
+	 * 
+	 * @param frame
+	 *            the frame header
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	void onFrameEnd(ZippyWsFrame frame) throws IOException;
+
+}